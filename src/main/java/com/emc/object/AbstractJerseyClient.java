@@ -35,6 +35,7 @@ import com.sun.jersey.api.client.config.ClientConfig;
 import com.sun.jersey.client.apache4.config.ApacheHttpClient4Config;
 
 import java.net.URI;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -140,10 +141,10 @@ public abstract class AbstractJerseyClient {
 
         WebResource.Builder builder = resource.getRequestBuilder();
 
-        // set headers
-        for (String name : request.getHeaders().keySet()) {
-            for (Object value : request.getHeaders().get(name)) {
-                builder = builder.header(name, value);
+        // set headers (getHeaders() builds a new map on every call, so only call it once)
+        for (Map.Entry<String, List<Object>> header : request.getHeaders().entrySet()) {
+            for (Object value : header.getValue()) {
+                builder = builder.header(header.getKey(), value);
             }
         }
 
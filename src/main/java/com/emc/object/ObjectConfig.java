@@ -153,20 +153,19 @@ public abstract class ObjectConfig<T extends ObjectConfig<T>> {
      * of a paremeter value
      */
     public URI resolvePath(String subPath, String rawQuery) {
-        String path = "";
+        // relative path
+        String path = subPath == null ? "" : subPath;
 
-        // rootContext should be cleaned by setter
-        if (rootContext != null && rootContext.length() > 0) path += rootContext;
+        // prepend context (rootContext should be cleaned by setter)
+        if (rootContext != null && rootContext.length() > 0) path = rootContext + path;
 
-        // add relative path to context
-        path += subPath;
         if (path.isEmpty()) path = "/";
 
         try {
             URI uri = RestUtil.buildUri(protocol.toString().toLowerCase(), resolveHost().getName(), port, path, rawQuery, null);
 
-            log.debug("raw path & query: " + path + "?" + rawQuery);
-            log.debug("resolved URI: " + uri);
+            log.debug("raw path & query: {}?{}", path, rawQuery);
+            log.debug("resolved URI: {}", uri);
 
             return uri;
         } catch (URISyntaxException e) {
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Optional controller for {@link LargeFileUploader} and {@link LargeFileDownloader} that tunes the number of parts
+ * in flight and the size of parts that have not yet been scheduled, based on the throughput and latency of parts as
+ * they complete.
+ * <p>
+ * Concurrency is tuned by hill-climbing: after each window of completed parts, the aggregate throughput of the
+ * window is compared to the previous window. If it improved, concurrency keeps moving in the same direction; if it
+ * dropped, the direction is reversed; if it is flat, concurrency holds. A failed part halves concurrency.
+ * Part size is doubled when parts complete faster than half of {@link #setTargetPartTimeMs(long) targetPartTimeMs}
+ * and halved when they take more than twice as long. The transfer will always enforce its own part size limits (i.e.
+ * the minimum part size and the 10,000 part limit for uploads).
+ * <p>
+ * After a transfer completes, {@link #getConcurrency()} and {@link #getPartSize()} report the settings the controller
+ * settled on, which can be used to configure future transfers (or to seed a new controller).
+ * <p>
+ * Note: a controller instance holds state for a single transfer and must not be shared by concurrent transfers.
+ */
+public class AdaptiveTransferController {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveTransferController.class);
+
+    public static final int DEFAULT_MIN_CONCURRENCY = 1;
+    public static final int DEFAULT_MAX_CONCURRENCY = 32;
+    public static final long DEFAULT_MAX_PART_SIZE = 1024 * 1024 * 1024; // 1GB
+    public static final long DEFAULT_TARGET_PART_TIME_MS = 10000; // 10 seconds
+
+    // a change in throughput smaller than this is considered flat
+    private static final double THROUGHPUT_TOLERANCE = 0.05;
+
+    private int minConcurrency = DEFAULT_MIN_CONCURRENCY;
+    private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+    private long minPartSize = 0;
+    private long maxPartSize = DEFAULT_MAX_PART_SIZE;
+    private long targetPartTimeMs = DEFAULT_TARGET_PART_TIME_MS;
+
+    private int concurrency;
+    private long partSize;
+
+    // a lock (rather than a monitor) is used so that waiting for a slot does not pin a virtual thread
+    private final Lock lock = new ReentrantLock();
+    private final Condition slotAvailable = lock.newCondition();
+
+    // transfer state
+    private int inFlight;
+    private int direction = 1;
+    private double lastThroughput;
+    private long windowStartNanos;
+    private long windowBytes;
+    private final List<Long> windowPartNanos = new ArrayList<>();
+
+    /**
+     * Called by the transfer before scheduling any parts. If concurrency or part size have not been set, the
+     * transfer's configured values are used as the starting point.
+     */
+    public void start(int defaultConcurrency, long defaultPartSize) {
+        lock.lock();
+        try {
+            if (concurrency <= 0) concurrency = defaultConcurrency;
+            if (partSize <= 0) partSize = defaultPartSize;
+            concurrency = clamp(concurrency, minConcurrency, maxConcurrency);
+            partSize = clamp(partSize, minPartSize, maxPartSize);
+            inFlight = 0;
+            direction = 1;
+            lastThroughput = 0;
+            resetWindow();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until the number of parts in flight is below the current concurrency, then reserves a slot for a part.
+     * Every call must be paired with a call to {@link #releaseSlot()}.
+     */
+    public void acquireSlot() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= concurrency) slotAvailable.await();
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void releaseSlot() {
+        lock.lock();
+        try {
+            inFlight--;
+            slotAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a successfully transferred part, which may trigger an adjustment of concurrency and part size.
+     */
+    public void partCompleted(long bytes, long durationNanos) {
+        lock.lock();
+        try {
+            windowBytes += bytes;
+            windowPartNanos.add(durationNanos);
+
+            // evaluate once we have seen a full round of parts at the current concurrency
+            if (windowPartNanos.size() >= Math.max(2, concurrency)) {
+                long elapsedNanos = System.nanoTime() - windowStartNanos;
+                double throughput = elapsedNanos > 0 ? windowBytes * 1000000000d / elapsedNanos : 0;
+                adjustConcurrency(throughput);
+                adjustPartSize(median(windowPartNanos) / 1000000);
+                lastThroughput = throughput;
+                resetWindow();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a failed part. Concurrency is halved, in case the failure was caused by overloading the target.
+     */
+    public void partFailed() {
+        lock.lock();
+        try {
+            int newConcurrency = clamp(concurrency / 2, minConcurrency, maxConcurrency);
+            if (newConcurrency != concurrency) log.info("part failed; reducing concurrency to {}", newConcurrency);
+            concurrency = newConcurrency;
+            direction = 1;
+            lastThroughput = 0;
+            resetWindow();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adjustConcurrency(double throughput) {
+        if (lastThroughput > 0) {
+            if (throughput < lastThroughput * (1 - THROUGHPUT_TOLERANCE)) {
+                // things got worse - go back the other way
+                direction = -direction;
+            } else if (throughput < lastThroughput * (1 + THROUGHPUT_TOLERANCE)) {
+                // no significant change - hold here
+                log.debug("throughput is flat ({}/s); holding concurrency at {}", (long) throughput, concurrency);
+                return;
+            }
+        }
+        int step = Math.max(1, concurrency / 4);
+        int newConcurrency = clamp(concurrency + direction * step, minConcurrency, maxConcurrency);
+        if (newConcurrency != concurrency)
+            log.debug("throughput: {}/s; changing concurrency from {} to {}", (long) throughput, concurrency, newConcurrency);
+        concurrency = newConcurrency;
+        slotAvailable.signalAll();
+    }
+
+    private void adjustPartSize(long medianPartTimeMs) {
+        long newPartSize = partSize;
+        if (medianPartTimeMs < targetPartTimeMs / 2) newPartSize = partSize * 2;
+        else if (medianPartTimeMs > targetPartTimeMs * 2) newPartSize = partSize / 2;
+        newPartSize = clamp(newPartSize, minPartSize, maxPartSize);
+        if (newPartSize != partSize)
+            log.debug("median part time: {}ms; changing part size from {} to {}", medianPartTimeMs, partSize, newPartSize);
+        partSize = newPartSize;
+    }
+
+    private void resetWindow() {
+        windowStartNanos = System.nanoTime();
+        windowBytes = 0;
+        windowPartNanos.clear();
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * The current (or settled) number of parts to transfer in parallel
+     */
+    public int getConcurrency() {
+        lock.lock();
+        try {
+            return concurrency;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the starting concurrency. If not set, the transfer's configured thread count is used
+     */
+    public void setConcurrency(int concurrency) {
+        lock.lock();
+        try {
+            this.concurrency = concurrency;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The current (or settled) size of parts that are not yet scheduled
+     */
+    public long getPartSize() {
+        lock.lock();
+        try {
+            return partSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the starting part size. If not set, the transfer's configured part size is used
+     */
+    public void setPartSize(long partSize) {
+        lock.lock();
+        try {
+            this.partSize = partSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMinConcurrency() {
+        return minConcurrency;
+    }
+
+    public void setMinConcurrency(int minConcurrency) {
+        this.minConcurrency = minConcurrency;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Sets the maximum number of parts in flight. Note that transfers using an internal thread pool will size the
+     * pool to this value. Default is {@link #DEFAULT_MAX_CONCURRENCY}
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public long getMinPartSize() {
+        return minPartSize;
+    }
+
+    /**
+     * Sets the minimum part size the controller will choose. Regardless of this setting, the transfer's own minimum
+     * part size is enforced
+     */
+    public void setMinPartSize(long minPartSize) {
+        this.minPartSize = minPartSize;
+    }
+
+    public long getMaxPartSize() {
+        return maxPartSize;
+    }
+
+    /**
+     * Sets the maximum part size the controller will choose. Note that for uploads, a larger part size may be used if
+     * necessary to stay within the 10,000 part limit. Default is {@link #DEFAULT_MAX_PART_SIZE}
+     */
+    public void setMaxPartSize(long maxPartSize) {
+        this.maxPartSize = maxPartSize;
+    }
+
+    public long getTargetPartTimeMs() {
+        return targetPartTimeMs;
+    }
+
+    /**
+     * Sets the ideal time for a single part transfer. Part size is adjusted to keep the median part time within a
+     * factor of 2 of this value. Default is {@link #DEFAULT_TARGET_PART_TIME_MS}
+     */
+    public void setTargetPartTimeMs(long targetPartTimeMs) {
+        this.targetPartTimeMs = targetPartTimeMs;
+    }
+
+    public AdaptiveTransferController withConcurrency(int concurrency) {
+        setConcurrency(concurrency);
+        return this;
+    }
+
+    public AdaptiveTransferController withPartSize(long partSize) {
+        setPartSize(partSize);
+        return this;
+    }
+
+    public AdaptiveTransferController withMinConcurrency(int minConcurrency) {
+        setMinConcurrency(minConcurrency);
+        return this;
+    }
+
+    public AdaptiveTransferController withMaxConcurrency(int maxConcurrency) {
+        setMaxConcurrency(maxConcurrency);
+        return this;
+    }
+
+    public AdaptiveTransferController withMinPartSize(long minPartSize) {
+        setMinPartSize(minPartSize);
+        return this;
+    }
+
+    public AdaptiveTransferController withMaxPartSize(long maxPartSize) {
+        setMaxPartSize(maxPartSize);
+        return this;
+    }
+
+    public AdaptiveTransferController withTargetPartTimeMs(long targetPartTimeMs) {
+        setTargetPartTimeMs(targetPartTimeMs);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return "AdaptiveTransferController{" +
+                    "concurrency=" + concurrency +
+                    ", partSize=" + partSize +
+                    '}';
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.object.s3.jersey.S3JerseyClient;
+import com.emc.object.s3.request.PutObjectRequest;
+import com.emc.object.util.BandwidthLimiter;
+import com.emc.object.util.ProgressInputStream;
+import com.emc.object.util.ProgressListener;
+import com.emc.object.util.VirtualThreadSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Convenience class to upload a local directory tree using a single, bounded pool of threads. The tree is walked
+ * incrementally, and files are uploaded as they are found, so memory use does not depend on the number of files.
+ * Files below <code>largeFileThreshold</code> are sent as single PUTs (one per thread); larger files are sent through
+ * {@link LargeFileUploader}, with their parts transferred by the same thread pool.
+ * <p>
+ * A failure to upload a file does not stop the transfer; failures are collected and available from
+ * {@link #getFailures()} after the upload completes. Object keys are the path of each file relative to the directory
+ * (using <code>/</code> as the separator), prepended with <code>prefix</code>.
+ */
+public class DirectoryUploader implements Runnable, ProgressListener {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectoryUploader.class);
+
+    public static final int DEFAULT_THREADS = 16;
+    public static final long DEFAULT_LARGE_FILE_THRESHOLD = LargeFileUploader.DEFAULT_MPU_THRESHOLD;
+
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String prefix;
+    private final File directory;
+
+    private int threads = DEFAULT_THREADS;
+    private boolean useVirtualThreads = false;
+    private long largeFileThreshold = DEFAULT_LARGE_FILE_THRESHOLD;
+    private long partSize = LargeFileUploader.DEFAULT_PART_SIZE;
+    private ExecutorService executorService;
+    private ProgressListener progressListener;
+
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong bytesTransferred = new AtomicLong();
+    private final AtomicLong filesCompleted = new AtomicLong();
+    private final Map<File, Throwable> failures = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new DirectoryUploader instance that will use <code>s3Client</code> to upload all files under
+     * <code>directory</code> to <code>bucket</code>, prefixing each key with <code>prefix</code> (may be null).
+     */
+    public DirectoryUploader(S3Client s3Client, String bucket, String prefix, File directory) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.prefix = prefix == null ? "" : prefix;
+        this.directory = directory;
+    }
+
+    @Override
+    public void progress(long completed, long total) {
+    }
+
+    @Override
+    public void transferred(long size) {
+        long totalTransferred = bytesTransferred.addAndGet(size);
+
+        if (progressListener != null) {
+            progressListener.transferred(size);
+            progressListener.progress(totalTransferred, totalBytes.get());
+        }
+    }
+
+    @Override
+    public void run() {
+        upload();
+    }
+
+    /**
+     * Uploads the directory tree and waits for all files to complete. Per-file failures are collected in
+     * {@link #getFailures()}.
+     *
+     * @throws RuntimeException if the directory cannot be walked or the upload is interrupted
+     */
+    public void upload() {
+        if (!directory.isDirectory())
+            throw new IllegalArgumentException("not a directory: " + directory.getPath());
+
+        // set up thread pool
+        boolean shutdownThreadPool = false;
+        if (executorService == null) {
+            executorService = useVirtualThreads ? VirtualThreadSupport.newBoundedExecutor(threads) : Executors.newFixedThreadPool(threads);
+            shutdownThreadPool = true;
+        }
+
+        // bounds the number of small-file uploads that are queued or running
+        int maxQueued = threads * 2;
+        Semaphore queueSlots = new Semaphore(maxQueued);
+
+        try {
+            final Path root = directory.toPath();
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
+                    if (!attrs.isRegularFile()) return FileVisitResult.CONTINUE;
+
+                    File file = path.toFile();
+                    String key = prefix + root.relativize(path).toString().replace(File.separatorChar, '/');
+                    totalBytes.addAndGet(attrs.size());
+
+                    if (attrs.size() >= largeFileThreshold) {
+                        // parts are transferred by the pool; this thread only coordinates the upload
+                        uploadLargeFile(file, key);
+                    } else {
+                        try {
+                            queueSlots.acquire();
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException("interrupted while uploading directory", e);
+                        }
+                        executorService.execute(() -> {
+                            try {
+                                uploadSmallFile(file, key, attrs.size());
+                            } finally {
+                                queueSlots.release();
+                            }
+                        });
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path path, IOException e) {
+                    log.warn("could not read {}", path, e);
+                    failures.put(path.toFile(), e);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+
+            // wait for all queued uploads to finish
+            queueSlots.acquire(maxQueued);
+        } catch (IOException e) {
+            throw new RuntimeException("error walking directory " + directory.getPath(), e);
+        } catch (InterruptedException e) {
+            throw new RuntimeException("interrupted while uploading directory", e);
+        } finally {
+            // make sure all spawned threads are shut down
+            if (shutdownThreadPool) executorService.shutdown();
+        }
+
+        if (!failures.isEmpty()) log.warn("{} file(s) failed to upload from {}", failures.size(), directory.getPath());
+    }
+
+    protected void uploadSmallFile(File file, String key, long size) {
+        try (InputStream is = new ProgressInputStream(new FileInputStream(file), this, getEffectiveBandwidthLimiter())) {
+            S3ObjectMetadata metadata = new S3ObjectMetadata().withContentLength(size);
+            s3Client.putObject(new PutObjectRequest(bucket, key, is).withObjectMetadata(metadata));
+            filesCompleted.incrementAndGet();
+        } catch (Exception e) {
+            log.warn("failed to upload {} to {}/{}", file.getPath(), bucket, key, e);
+            failures.put(file, e);
+        }
+    }
+
+    protected void uploadLargeFile(File file, String key) {
+        try {
+            LargeFileUploader uploader = new LargeFileUploader(s3Client, bucket, key, file)
+                    .withPartSize(partSize).withMpuThreshold(largeFileThreshold)
+                    .withExecutorService(executorService).withProgressListener(this);
+            uploader.upload();
+            filesCompleted.incrementAndGet();
+        } catch (Exception e) {
+            log.warn("failed to upload {} to {}/{}", file.getPath(), bucket, key, e);
+            failures.put(file, e);
+        }
+    }
+
+    /*
+     * use the client's limiter, if configured, same as LargeFileUploader
+     */
+    private BandwidthLimiter getEffectiveBandwidthLimiter() {
+        if (s3Client instanceof S3JerseyClient) return ((S3JerseyClient) s3Client).getS3Config().getBandwidthLimiter();
+        return null;
+    }
+
+    public S3Client getS3Client() {
+        return s3Client;
+    }
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Total size of all files found so far (this grows as the directory tree is walked)
+     */
+    public long getTotalBytes() {
+        return totalBytes.get();
+    }
+
+    public long getBytesTransferred() {
+        return bytesTransferred.get();
+    }
+
+    public long getFilesCompleted() {
+        return filesCompleted.get();
+    }
+
+    /**
+     * Files that could not be read or uploaded, along with the cause of each failure
+     */
+    public Map<File, Throwable> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads to use for transferring files and parts. This is the maximum number of concurrent
+     * requests. Default is {@link #DEFAULT_THREADS}
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public long getLargeFileThreshold() {
+        return largeFileThreshold;
+    }
+
+    /**
+     * Sets the size at or above which files are uploaded with {@link LargeFileUploader} (multipart). Smaller files
+     * are sent as single PUTs. Default is {@link #DEFAULT_LARGE_FILE_THRESHOLD}
+     */
+    public void setLargeFileThreshold(long largeFileThreshold) {
+        this.largeFileThreshold = largeFileThreshold;
+    }
+
+    public long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * Sets the part size used for large files. Default is {@link LargeFileUploader#DEFAULT_PART_SIZE}
+     */
+    public void setPartSize(long partSize) {
+        this.partSize = partSize;
+    }
+
+    public boolean isUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+    /**
+     * Set to true to run file and part uploads on virtual threads when the runtime supports them (Java 21+). The number of
+     * requests running at once is still limited by <code>threads</code>. On older runtimes, a pool of platform
+     * threads is used. This does not apply if you provide an executor service. Default is false
+     *
+     * @see VirtualThreadSupport
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Allows for providing a custom thread executor (i.e. for custom thread factories). Note that if
+     * you set a custom executor service, the <code>threads</code> property will be ignored, and the executor will not
+     * be shut down.
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    public ProgressListener getProgressListener() {
+        return progressListener;
+    }
+
+    /**
+     * Receives aggregate progress for all files. Note that the total reported is the size of all files found so far
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public DirectoryUploader withThreads(int threads) {
+        setThreads(threads);
+        return this;
+    }
+
+    public DirectoryUploader withLargeFileThreshold(long largeFileThreshold) {
+        setLargeFileThreshold(largeFileThreshold);
+        return this;
+    }
+
+    public DirectoryUploader withPartSize(long partSize) {
+        setPartSize(partSize);
+        return this;
+    }
+
+    public DirectoryUploader withUseVirtualThreads(boolean useVirtualThreads) {
+        setUseVirtualThreads(useVirtualThreads);
+        return this;
+    }
+
+    public DirectoryUploader withExecutorService(ExecutorService executorService) {
+        setExecutorService(executorService);
+        return this;
+    }
+
+    public DirectoryUploader withProgressListener(ProgressListener progressListener) {
+        setProgressListener(progressListener);
+        return this;
+    }
+}
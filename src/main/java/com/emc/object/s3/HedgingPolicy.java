@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.object.util.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in request hedging for idempotent reads ({@link S3Client#getObject(com.emc.object.s3.request.GetObjectRequest,
+ * Class) getObject}, {@link S3Client#getObjectMetadata(com.emc.object.s3.request.GetObjectMetadataRequest)
+ * getObjectMetadata} and {@link S3Client#listObjects(com.emc.object.s3.request.ListObjectsRequest) listObjects}).
+ * If the first attempt of a request has not received response headers within the hedge delay, a second attempt is
+ * sent (to a different host, when the smart client has one available). Whichever attempt responds first is used, and
+ * the other is cancelled.
+ * <p>
+ * The hedge delay is either {@link #setHedgeDelayMs(long) fixed}, or {@link #setDelayPercentile(double) derived} from
+ * a live percentile of recent response times (the fixed delay is used until enough responses have been seen). To keep
+ * hedging from amplifying load during an incident, hedges are limited to {@link #setMaxHedgePercent(double)
+ * maxHedgePercent} of hedgeable requests (with a small allowance for bursts).
+ * <p>
+ * A policy holds live statistics; share one instance between clients that target the same cluster, or use one per
+ * client.
+ */
+public class HedgingPolicy {
+    public static final long DEFAULT_HEDGE_DELAY_MS = 100;
+    public static final double DEFAULT_MAX_HEDGE_PERCENT = 5.0;
+
+    // percentile delays are computed over a rolling window of response times
+    static final long PERCENTILE_WINDOW_MS = 60000; // 1 minute
+    static final long MIN_PERCENTILE_SAMPLES = 100;
+    // hedges that can be sent back-to-back before the budget has to refill
+    static final int MAX_HEDGE_BURST = 10;
+
+    private static final long MILLI_TOKENS = 1000;
+
+    private long hedgeDelayMs = DEFAULT_HEDGE_DELAY_MS;
+    private double delayPercentile;
+    private double maxHedgePercent = DEFAULT_MAX_HEDGE_PERCENT;
+
+    // hedge budget (token bucket, in thousandths of a hedge)
+    private final AtomicLong hedgeMilliTokens = new AtomicLong(MAX_HEDGE_BURST * MILLI_TOKENS);
+
+    // response times (current and previous window)
+    private volatile LatencyHistogram currentWindow = new LatencyHistogram();
+    private volatile LatencyHistogram previousWindow;
+    private volatile long windowStartNanos = System.nanoTime();
+
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder hedgeCount = new LongAdder();
+    private final LongAdder hedgeWinCount = new LongAdder();
+
+    /**
+     * Called once for every hedgeable request. Each request adds <code>maxHedgePercent</code>/100 of a hedge to the
+     * budget
+     */
+    public void requestStarted() {
+        requestCount.increment();
+        long increment = Math.round(maxHedgePercent * MILLI_TOKENS / 100);
+        long max = MAX_HEDGE_BURST * MILLI_TOKENS;
+        long tokens;
+        do {
+            tokens = hedgeMilliTokens.get();
+            if (tokens >= max) return;
+        } while (!hedgeMilliTokens.compareAndSet(tokens, Math.min(tokens + increment, max)));
+    }
+
+    /**
+     * Takes one hedge from the budget. Returns false if the budget is exhausted (the request is not hedged)
+     */
+    public boolean tryAcquireHedge() {
+        long tokens;
+        do {
+            tokens = hedgeMilliTokens.get();
+            if (tokens < MILLI_TOKENS) return false;
+        } while (!hedgeMilliTokens.compareAndSet(tokens, tokens - MILLI_TOKENS));
+        hedgeCount.increment();
+        return true;
+    }
+
+    /**
+     * Records the time it took a (first) attempt to receive response headers
+     */
+    public void recordResponseTime(long durationNanos) {
+        recordResponseTime(durationNanos, System.nanoTime());
+    }
+
+    void recordResponseTime(long durationNanos, long nowNanos) {
+        if (nowNanos - windowStartNanos > TimeUnit.MILLISECONDS.toNanos(PERCENTILE_WINDOW_MS)) rotateWindow(nowNanos);
+        currentWindow.record(durationNanos);
+    }
+
+    /**
+     * Records a request that was answered by its hedge
+     */
+    public void hedgeWon() {
+        hedgeWinCount.increment();
+    }
+
+    /**
+     * Returns the current hedge delay. If a delay percentile is set, this is that percentile of the response times in
+     * the previous (complete) window, or the current window if the previous one does not have enough samples
+     */
+    public long getHedgeDelayNanos() {
+        if (delayPercentile > 0) {
+            LatencyHistogram window = previousWindow;
+            if (window == null || window.getCount() < MIN_PERCENTILE_SAMPLES) window = currentWindow;
+            if (window.getCount() >= MIN_PERCENTILE_SAMPLES) return window.getPercentileNanos(delayPercentile);
+        }
+        return TimeUnit.MILLISECONDS.toNanos(hedgeDelayMs);
+    }
+
+    /* a sample recorded into the old window during rotation is not lost; it counts as part of the previous window */
+    private synchronized void rotateWindow(long nowNanos) {
+        if (nowNanos - windowStartNanos <= TimeUnit.MILLISECONDS.toNanos(PERCENTILE_WINDOW_MS)) return;
+        previousWindow = currentWindow;
+        currentWindow = new LatencyHistogram();
+        windowStartNanos = nowNanos;
+    }
+
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    /**
+     * Returns the number of hedges sent
+     */
+    public long getHedgeCount() {
+        return hedgeCount.sum();
+    }
+
+    /**
+     * Returns the number of requests that were answered by their hedge
+     */
+    public long getHedgeWinCount() {
+        return hedgeWinCount.sum();
+    }
+
+    public long getHedgeDelayMs() {
+        return hedgeDelayMs;
+    }
+
+    /**
+     * Sets the time to wait for response headers before sending a hedge. If a delay percentile is set, this delay is
+     * only used until enough response times have been recorded. Default is 100ms
+     */
+    public void setHedgeDelayMs(long hedgeDelayMs) {
+        if (hedgeDelayMs < 0) throw new IllegalArgumentException("hedgeDelayMs must be >= 0");
+        this.hedgeDelayMs = hedgeDelayMs;
+    }
+
+    public double getDelayPercentile() {
+        return delayPercentile;
+    }
+
+    /**
+     * Sets the percentile (i.e. 95.0) of recent response times to use as the hedge delay. 0 uses the fixed hedge
+     * delay. Default is 0
+     */
+    public void setDelayPercentile(double delayPercentile) {
+        if (delayPercentile < 0 || delayPercentile > 100)
+            throw new IllegalArgumentException("delayPercentile must be between 0 and 100");
+        this.delayPercentile = delayPercentile;
+    }
+
+    public double getMaxHedgePercent() {
+        return maxHedgePercent;
+    }
+
+    /**
+     * Sets the maximum percentage of hedgeable requests that may be hedged. Default is 5.0
+     */
+    public void setMaxHedgePercent(double maxHedgePercent) {
+        if (maxHedgePercent < 0 || maxHedgePercent > 100)
+            throw new IllegalArgumentException("maxHedgePercent must be between 0 and 100");
+        this.maxHedgePercent = maxHedgePercent;
+    }
+
+    public HedgingPolicy withHedgeDelayMs(long hedgeDelayMs) {
+        setHedgeDelayMs(hedgeDelayMs);
+        return this;
+    }
+
+    public HedgingPolicy withDelayPercentile(double delayPercentile) {
+        setDelayPercentile(delayPercentile);
+        return this;
+    }
+
+    public HedgingPolicy withMaxHedgePercent(double maxHedgePercent) {
+        setMaxHedgePercent(maxHedgePercent);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "HedgingPolicy{" +
+                "hedgeDelayMs=" + hedgeDelayMs +
+                ", delayPercentile=" + delayPercentile +
+                ", maxHedgePercent=" + maxHedgePercent +
+                '}';
+    }
+}
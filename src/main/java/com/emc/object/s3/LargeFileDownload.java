@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A handle to a download started by {@link LargeFileDownloader#downloadAsync()}. Note that only parallel downloads
+ * can be paused or cancelled; a single-GET download will run to completion.
+ */
+public interface LargeFileDownload {
+    /**
+     * Blocks until the download is complete (or paused).
+     *
+     * @throws java.util.concurrent.CancellationException if the download was cancelled
+     */
+    void waitForCompletion();
+
+    /**
+     * Waits if necessary for at most the given time for the download to complete (or pause).
+     *
+     * @param timeout     the maximum time to wait
+     * @param timeoutUnit the time unit of the timeout argument
+     * @throws TimeoutException if the wait timed out
+     */
+    void waitForCompletion(long timeout, TimeUnit timeoutUnit) throws TimeoutException;
+
+    /**
+     * Pauses this download. This method first prevents any parts that have not yet started transferring from
+     * starting, then waits for parts that are currently in-transfer to complete. If a
+     * {@link LargeFileDownloader#setCheckpointFile(java.io.File) checkpoint file} is configured, it will record every
+     * completed part, and a new download of the same object to the same file will only transfer the missing parts.
+     */
+    void pause();
+
+    /**
+     * Stops download activity and deletes the partially downloaded file and its checkpoint. Parts in-transfer (or the
+     * single stream of a download below the parallel threshold) stop at their next read. This method returns
+     * immediately.
+     */
+    void cancel();
+
+    /**
+     * Returns timing, host and retry statistics for the parts transferred so far. This can be called while the
+     * download is running.
+     */
+    TransferStatistics getTransferStatistics();
+}
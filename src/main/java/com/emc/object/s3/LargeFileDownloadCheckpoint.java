@@ -0,0 +1,264 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A small sidecar file that records which parts of a parallel download have been written to disk, so the download can
+ * be resumed after it is paused, fails or the process is terminated, without transferring the completed parts again.
+ * <p>
+ * The checkpoint holds a header line with the object ETag, part size and object size, followed by a bitmap with one
+ * bit per part. The bitmap is allocated when the checkpoint is started and each completed part updates a single byte
+ * in place, which is forced to disk before the part is considered complete. If the object's ETag or size no longer
+ * match, the checkpoint must be discarded. Any string that identifies the object version can be used in place of the
+ * ETag; if there is none, only the size is checked.
+ * <p>
+ * This class is used internally by {@link LargeFileDownloader} (see
+ * {@link LargeFileDownloader#setCheckpointFile(File)}).
+ */
+public class LargeFileDownloadCheckpoint implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(LargeFileDownloadCheckpoint.class);
+
+    private static final String HEADER_RECORD = "download";
+    private static final String SEPARATOR = "\t";
+
+    private final File file;
+    private String eTag;
+    private long partSize;
+    private long objectSize;
+    private BitSet completedParts = new BitSet();
+    private long bitmapOffset;
+    private FileChannel channel;
+    // bits are forced to disk while holding this lock, so it must not be a monitor (that would pin virtual threads)
+    private final Lock lock = new ReentrantLock();
+
+    public LargeFileDownloadCheckpoint(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads an existing checkpoint file. Returns true if a valid checkpoint was found, or false if the file does not
+     * exist, is empty or is not a complete checkpoint (i.e. the process was terminated while it was being created).
+     *
+     * @throws IOException if the checkpoint file cannot be read
+     */
+    public boolean load() throws IOException {
+        lock.lock();
+        try {
+            eTag = null;
+            completedParts = new BitSet();
+            if (!file.exists() || file.length() == 0) return false;
+
+            byte[] content = Files.readAllBytes(file.toPath());
+            int headerEnd = 0;
+            while (headerEnd < content.length && content[headerEnd] != '\n') headerEnd++;
+            String[] fields = new String(content, 0, headerEnd, StandardCharsets.UTF_8).split(SEPARATOR, -1);
+            try {
+                if (headerEnd == content.length || fields.length != 4 || !HEADER_RECORD.equals(fields[0]))
+                    throw new NumberFormatException("invalid header");
+                long partSize = Long.parseLong(fields[2]), objectSize = Long.parseLong(fields[3]);
+                bitmapOffset = headerEnd + 1;
+                if (partSize <= 0 || content.length - bitmapOffset != bitmapLength(partSize, objectSize))
+                    throw new NumberFormatException("invalid bitmap length");
+                this.eTag = fields[1];
+                this.partSize = partSize;
+                this.objectSize = objectSize;
+            } catch (NumberFormatException e) {
+                log.warn("ignoring invalid checkpoint {} ({})", file.getPath(), e.getMessage());
+                return false;
+            }
+            completedParts = BitSet.valueOf(ByteBuffer.wrap(content, (int) bitmapOffset, content.length - (int) bitmapOffset));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static long bitmapLength(long partSize, long objectSize) {
+        long partCount = (objectSize + partSize - 1) / partSize;
+        return (partCount + 7) / 8;
+    }
+
+    /**
+     * Returns true if the checkpoint was recorded for the specified version (ETag) and size of the object
+     */
+    public boolean matches(String eTag, long objectSize) {
+        lock.lock();
+        try {
+            return this.eTag != null && this.eTag.equals(eTag == null ? "" : eTag) && this.objectSize == objectSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts a new checkpoint for the specified object, replacing any existing content in the checkpoint file. If
+     * <code>eTag</code> is null, the checkpoint can only be matched by the object size
+     */
+    public void start(String eTag, long partSize, long objectSize) throws IOException {
+        if (eTag == null) {
+            log.warn("no ETag or version for checkpoint {}; only the object size will be checked when resuming",
+                    file.getPath());
+            eTag = "";
+        }
+        lock.lock();
+        try {
+            close();
+            byte[] header = (HEADER_RECORD + SEPARATOR + eTag + SEPARATOR + partSize + SEPARATOR + objectSize + "\n")
+                    .getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.allocate(header.length + (int) bitmapLength(partSize, objectSize));
+            buffer.put(header).rewind();
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(false);
+            this.eTag = eTag;
+            this.partSize = partSize;
+            this.objectSize = objectSize;
+            this.bitmapOffset = header.length;
+            completedParts = new BitSet();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a completed part (part numbers start at 1). The part data must already be on disk; the checkpoint is on
+     * disk when this method returns
+     */
+    public void partCompleted(int partNumber) throws IOException {
+        lock.lock();
+        try {
+            if (eTag == null) throw new IllegalStateException("checkpoint has not been started");
+            int bit = partNumber - 1;
+            completedParts.set(bit);
+            if (channel == null) channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+            // bit n is stored as bit (n % 8) of byte (n / 8), which is the order BitSet.valueOf() reads
+            byte bits = 0;
+            for (int i = bit & ~7; i < (bit & ~7) + 8; i++) {
+                if (completedParts.get(i)) bits |= 1 << (i & 7);
+            }
+            channel.write(ByteBuffer.wrap(new byte[]{bits}), bitmapOffset + bit / 8);
+            channel.force(false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isPartCompleted(int partNumber) {
+        lock.lock();
+        try {
+            return completedParts.get(partNumber - 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCompletedPartCount() {
+        lock.lock();
+        try {
+            return completedParts.cardinality();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes and deletes the checkpoint file (i.e. when the download is complete or cancelled)
+     */
+    public void delete() throws IOException {
+        lock.lock();
+        try {
+            close();
+            Files.deleteIfExists(file.toPath());
+            eTag = null;
+            completedParts = new BitSet();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getETag() {
+        lock.lock();
+        try {
+            return eTag;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getPartSize() {
+        lock.lock();
+        try {
+            return partSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getObjectSize() {
+        lock.lock();
+        try {
+            return objectSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.object.util.ChecksumError;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Verifies a parallel download against the object's ETag while it is in progress. The object is split into
+ * segments that match the ETag: one segment for a single-part object (the ETag is the MD5 of the object), or one
+ * segment per uploaded part for a multipart object (the ETag is <code>&lt;md5 of part MD5s&gt;-&lt;part count&gt;</code>,
+ * as produced by {@link LargeFileUploader#getMpuETag(java.util.List)}).
+ * <p>
+ * When a downloaded part lines up exactly with a segment, its MD5 is calculated as it streams and reported with
+ * {@link #segmentHashed(long, byte[])}. Any other segment is hashed in order as the ranges covering it are written
+ * (see {@link #hashWritten(FileChannel)}), reading the data back while it is still in the page cache. This covers
+ * single-part objects, part sizes that do not line up and parts completed before a download was resumed.
+ * <p>
+ * Multipart ETags do not record the part size, so it must be known. It is assumed to be the first of the candidate
+ * sizes passed to {@link #forObject(String, long, long...)} that results in the ETag's part count.
+ * <p>
+ * This class is used internally by {@link LargeFileDownloader} (see
+ * {@link LargeFileDownloader#setVerifyChecksum(boolean)}).
+ */
+public class LargeFileDownloadVerifier {
+
+    private static final Logger log = LoggerFactory.getLogger(LargeFileDownloadVerifier.class);
+
+    private static final Pattern ETAG_PATTERN = Pattern.compile("\"?([0-9a-fA-F]{32})(?:-([0-9]+))?\"?");
+
+    private static final int READ_BUFFER_SIZE = 1024 * 1024; // 1MB
+
+    /**
+     * Returns a verifier for an object with the given ETag and size, or null if the ETag cannot be verified (i.e. it is
+     * not an MD5, or none of the <code>partSizeCandidates</code> match its part count).
+     */
+    public static LargeFileDownloadVerifier forObject(String eTag, long objectSize, long... partSizeCandidates) {
+        Matcher matcher = eTag == null ? null : ETAG_PATTERN.matcher(eTag);
+        if (matcher == null || !matcher.matches()) {
+            log.warn("ETag {} is not an MD5; the download cannot be verified", eTag);
+            return null;
+        }
+        String md5 = matcher.group(1).toLowerCase();
+        if (matcher.group(2) == null) return new LargeFileDownloadVerifier(md5, objectSize, objectSize, 0);
+
+        int partCount = Integer.parseInt(matcher.group(2));
+        for (long partSize : partSizeCandidates) {
+            if (partSize > 0 && (objectSize + partSize - 1) / partSize == partCount)
+                return new LargeFileDownloadVerifier(md5, objectSize, partSize, partCount);
+        }
+        log.warn("cannot determine the part size of a {}-part object of {} bytes; the download cannot be verified",
+                partCount, objectSize);
+        return null;
+    }
+
+    private final String expectedMd5;
+    private final long objectSize;
+    private final long segmentSize;
+    private final int partCount;
+    private final byte[][] segmentDigests;
+    // written ranges that have not been hashed yet (start -> end), merged as they are added
+    private final TreeMap<Long, Long> writtenRanges = new TreeMap<>();
+    private final MessageDigest digest = DigestUtils.getMd5Digest();
+    private long hashedOffset = 0;
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Use {@link #forObject(String, long, long...)}. A <code>partCount</code> of 0 means a single-part object
+     */
+    LargeFileDownloadVerifier(String expectedMd5, long objectSize, long segmentSize, int partCount) {
+        this.expectedMd5 = expectedMd5;
+        this.objectSize = objectSize;
+        this.segmentSize = Math.max(segmentSize, 1);
+        this.partCount = partCount;
+        this.segmentDigests = new byte[(int) ((objectSize + this.segmentSize - 1) / this.segmentSize)][];
+    }
+
+    /**
+     * Returns true if the given range is exactly one segment, so it can be hashed as it streams
+     */
+    public boolean isSegment(long offset, long length) {
+        return offset % segmentSize == 0 && length == Math.min(segmentSize, objectSize - offset);
+    }
+
+    /**
+     * Records the MD5 of the segment at <code>offset</code>, calculated as the data was streamed. Must be called
+     * before the segment is marked as written
+     */
+    public void segmentHashed(long offset, byte[] md5) {
+        lock.lock();
+        try {
+            segmentDigests[(int) (offset / segmentSize)] = md5;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks a range of the file as written. It will be hashed by the next call to {@link #hashWritten(FileChannel)}
+     * (unless it was already hashed as it streamed)
+     */
+    public void markWritten(long offset, long length) {
+        if (length <= 0) return;
+        lock.lock();
+        try {
+            long start = offset, end = offset + length;
+            Map.Entry<Long, Long> previous = writtenRanges.floorEntry(start);
+            if (previous != null && previous.getValue() >= start) {
+                start = previous.getKey();
+                end = Math.max(end, previous.getValue());
+            }
+            Long nextEnd = writtenRanges.get(end);
+            if (nextEnd != null) {
+                writtenRanges.remove(end);
+                end = nextEnd;
+            }
+            writtenRanges.put(start, end);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hashes data that is contiguous with what was already hashed. If another thread is already hashing, this returns
+     * immediately (that thread will pick up anything that is written in the meantime, or {@link #verify(FileChannel)}
+     * will)
+     */
+    public void hashWritten(FileChannel channel) throws IOException {
+        if (!lock.tryLock()) return;
+        try {
+            hashContiguous(channel);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hashes any remaining data and compares the result with the ETag. Call this after all ranges have been written.
+     *
+     * @throws ChecksumError if the downloaded data does not match the ETag
+     * @throws IllegalStateException if any part of the object was not written
+     */
+    public void verify(FileChannel channel) throws IOException {
+        lock.lock();
+        try {
+            hashContiguous(channel);
+            if (hashedOffset < objectSize)
+                throw new IllegalStateException("cannot verify download; data after offset " + hashedOffset + " was not written");
+
+            String actualMd5;
+            if (partCount == 0) {
+                actualMd5 = Hex.encodeHexString(segmentDigests.length == 0 ? digest.digest() : segmentDigests[0]);
+            } else {
+                MessageDigest mpuDigest = DigestUtils.getMd5Digest();
+                for (byte[] segmentDigest : segmentDigests) {
+                    mpuDigest.update(segmentDigest);
+                }
+                actualMd5 = Hex.encodeHexString(mpuDigest.digest());
+            }
+            if (!expectedMd5.equals(actualMd5))
+                throw new ChecksumError("Checksum failure while downloading object", getExpectedETag(), getETag(actualMd5));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * must hold the lock
+     */
+    private void hashContiguous(FileChannel channel) throws IOException {
+        ByteBuffer buffer = null;
+        Map.Entry<Long, Long> range;
+        while ((range = writtenRanges.floorEntry(hashedOffset)) != null && range.getValue() > hashedOffset) {
+            writtenRanges.remove(range.getKey());
+            long end = range.getValue();
+            while (hashedOffset < end) {
+                int segment = (int) (hashedOffset / segmentSize);
+                long segmentEnd = Math.min((segment + 1) * segmentSize, objectSize);
+                if (segmentDigests[segment] != null) {
+                    // already hashed as it streamed (the whole segment was written in one range, so this stays in range)
+                    hashedOffset = segmentEnd;
+                    continue;
+                }
+                if (buffer == null) buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+                long chunkEnd = Math.min(segmentEnd, end);
+                while (hashedOffset < chunkEnd) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), chunkEnd - hashedOffset));
+                    int read = channel.read(buffer, hashedOffset);
+                    if (read < 0) throw new IOException("unexpected end of file at offset " + hashedOffset);
+                    digest.update(buffer.array(), 0, read);
+                    hashedOffset += read;
+                }
+                if (hashedOffset == segmentEnd) segmentDigests[segment] = digest.digest(); // also resets the digest
+            }
+        }
+    }
+
+    private String getETag(String md5) {
+        return partCount == 0 ? md5 : md5 + "-" + partCount;
+    }
+
+    public String getExpectedETag() {
+        return getETag(expectedMd5);
+    }
+
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    public int getPartCount() {
+        return partCount;
+    }
+}
@@ -27,22 +27,44 @@
 package com.emc.object.s3;
 
 import com.emc.object.Range;
+import com.emc.object.s3.bean.GetObjectResult;
+import com.emc.object.s3.jersey.GeoPinningRule;
+import com.emc.object.s3.jersey.S3JerseyClient;
+import com.emc.object.s3.request.GetObjectRequest;
+import com.emc.object.util.BandwidthLimiter;
+import com.emc.object.util.ChecksumAlgorithm;
+import com.emc.object.util.ChecksummedInputStream;
 import com.emc.object.util.ProgressInputStream;
 import com.emc.object.util.ProgressListener;
 import com.emc.object.util.ProgressOutputStream;
+import com.emc.object.util.RestUtil;
+import com.emc.object.util.RunningChecksum;
+import com.emc.object.util.VirtualThreadSupport;
+import com.emc.rest.smart.ecs.Vdc;
 import com.emc.rest.util.StreamUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -60,18 +82,47 @@ public class LargeFileDownloader implements Runnable, ProgressListener {
 
     public static final int DEFAULT_THREADS = 8;
 
+    public static final int DEFAULT_WRITE_BUFFER_SIZE = 1024 * 1024; // 1MB
+
+    public static final int DEFAULT_PART_RETRY_LIMIT = 3;
+    public static final long DEFAULT_INITIAL_PART_RETRY_DELAY = 1000; // ms
+
     private S3Client s3Client;
     private String bucket;
     private String key;
     private File file;
     private Long objectSize;
+    private String objectETag;
+    private Date objectLastModified;
     private AtomicLong bytesTransferred = new AtomicLong();
 
     private long parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
     private long partSize = DEFAULT_PART_SIZE;
     private int threads = DEFAULT_THREADS;
+    private boolean useVirtualThreads = false;
+    private int writeBufferSize = DEFAULT_WRITE_BUFFER_SIZE;
+    private boolean useMemoryMappedWrites = false;
+    private final Queue<ByteBuffer> writeBuffers = new ConcurrentLinkedQueue<>();
     private ExecutorService executorService;
     private ProgressListener progressListener;
+    private PartTransferListener partTransferListener;
+    private final TransferStatistics transferStatistics = new TransferStatistics();
+    private AdaptiveTransferController transferController;
+    private BandwidthLimiter bandwidthLimiter;
+    private File checkpointFile;
+    private LargeFileDownloadCheckpoint checkpoint;
+    private boolean verifyChecksum = false;
+    private Long uploadPartSize;
+    private LargeFileDownloadVerifier verifier;
+    private boolean skipHeadRequest = false;
+    private GetObjectResult<InputStream> firstPart;
+    private long firstPartLength;
+    private boolean stripeAcrossVdcs = false;
+    private int partRetryLimit = DEFAULT_PART_RETRY_LIMIT;
+    private long initialPartRetryDelay = DEFAULT_INITIAL_PART_RETRY_DELAY;
+    private VdcStripeBalancer vdcStripeBalancer;
+    private final AtomicBoolean active = new AtomicBoolean(false);
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
 
     /**
      * Creates a new LargeFileDownloader instance that will use <code>s3Client</code> to download
@@ -112,24 +163,199 @@ public class LargeFileDownloader implements Runnable, ProgressListener {
      */
     public void download() {
         try {
-            // get object metadata (for size)
-            S3ObjectMetadata metadata = s3Client.getObjectMetadata(bucket, key);
-            objectSize = metadata.getContentLength();
+            firstPart = skipHeadRequest ? getFirstPart() : null;
+            if (firstPart == null) {
+                // get object metadata (for size)
+                S3ObjectMetadata metadata = s3Client.getObjectMetadata(bucket, key);
+                objectSize = metadata.getContentLength();
+                objectETag = metadata.getETag();
+                objectLastModified = metadata.getLastModified();
+            }
             if (objectSize >= parallelThreshold)
                 doParallelDownload();
             else
                 doSingleDownload();
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("error downloading file", e);
+        } finally {
+            // the first part may not have been used (i.e. a resumed checkpoint has a different part size)
+            closeFirstPart();
+        }
+    }
+
+    /*
+     * learns the object size and ETag from a ranged GET of the first part, instead of a HEAD request. returns null if
+     * the size cannot be determined this way (i.e. the object is empty, so the range cannot be satisfied)
+     */
+    private GetObjectResult<InputStream> getFirstPart() {
+        GetObjectRequest request = new GetObjectRequest(bucket, key)
+                .withRange(Range.fromOffsetLength(0, Math.max(partSize, MIN_PART_SIZE)));
+        GetObjectResult<InputStream> result;
+        try {
+            result = s3Client.getObject(request, InputStream.class);
+        } catch (S3Exception e) {
+            if (e.getHttpCode() == 416) return null;
+            throw e;
+        }
+
+        S3ObjectMetadata metadata = result.getObjectMetadata();
+        firstPartLength = metadata.getContentLength();
+        objectETag = metadata.getETag();
+        objectLastModified = metadata.getLastModified();
+
+        // Content-Range is "bytes <first>-<last>/<total>" (if the range was ignored, the whole object is returned)
+        String contentRange = RestUtil.getFirstAsString(result.getHeaders(), RestUtil.HEADER_CONTENT_RANGE);
+        if (contentRange == null) {
+            objectSize = firstPartLength;
+        } else {
+            try {
+                objectSize = Long.parseLong(contentRange.substring(contentRange.lastIndexOf('/') + 1).trim());
+            } catch (NumberFormatException e) {
+                log.debug("unknown object size in Content-Range: {}; falling back to a HEAD request", contentRange);
+                closeStream(result.getObject());
+                return null;
+            }
+        }
+        log.debug("bucket {} key {} size {} and ETag {} read from first part", bucket, key, objectSize, objectETag);
+        return result;
+    }
+
+    private void closeFirstPart() {
+        if (firstPart == null) return;
+        closeStream(firstPart.getObject());
+        firstPart = null;
+    }
+
+    private void closeStream(InputStream is) {
+        try {
+            is.close();
+        } catch (Throwable t) {
+            log.warn("could not close object stream", t);
         }
     }
 
+    /*
+     * a GET with If-Match returns null when the ETag does not match
+     */
+    private GetObjectResult<InputStream> getObjectMatchingETag(GetObjectRequest request) {
+        GetObjectResult<InputStream> result = s3Client.getObject(request, InputStream.class);
+        if (result == null)
+            throw new RuntimeException("object " + bucket + "/" + key + " was modified during the download (ETag no longer matches)");
+        return result;
+    }
+
+    /**
+     * This async version of download() will start the download process in the background and immediately return a
+     * {@link LargeFileDownload} instance.
+     * This allows pausing or cancelling the download in the middle, or you can use <code>waitForCompletion()</code>
+     * to block until the download is complete.
+     *
+     * @see #download()
+     */
+    public LargeFileDownload downloadAsync() {
+        cancelled.set(false);
+
+        // start a background thread
+        ExecutorService executor = useVirtualThreads ? VirtualThreadSupport.newBoundedExecutor(1) : Executors.newSingleThreadExecutor();
+        Future<?> future = executor.submit(this::download);
+        executor.shutdown();
+
+        return new LargeFileDownload() {
+            @Override
+            public void waitForCompletion() {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                    throw new RuntimeException(e.getCause());
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public void waitForCompletion(long timeout, TimeUnit timeoutUnit) throws TimeoutException {
+                try {
+                    future.get(timeout, timeoutUnit);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                    throw new RuntimeException(e.getCause());
+                } catch (RuntimeException | TimeoutException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public void pause() {
+                active.set(false); // all part downloads that have not started yet should effectively become no-ops
+                waitForCompletion(); // only waits for parts that are currently downloading
+            }
+
+            @Override
+            public void cancel() {
+                active.set(false); // all part downloads that have not started yet should effectively become no-ops
+                cancelled.set(true); // parts in-transfer will stop at their next read
+            }
+
+            @Override
+            public TransferStatistics getTransferStatistics() {
+                return transferStatistics;
+            }
+        };
+    }
+
+    /*
+     * a limiter set on this instance takes precedence over one configured on the client
+     */
+    private BandwidthLimiter getEffectiveBandwidthLimiter() {
+        if (bandwidthLimiter != null) return bandwidthLimiter;
+        if (s3Client instanceof S3JerseyClient) return ((S3JerseyClient) s3Client).getS3Config().getBandwidthLimiter();
+        return null;
+    }
+
     protected void doSingleDownload() throws IOException {
         OutputStream os = new FileOutputStream(file);
 
-        os = new ProgressOutputStream(os, this);
+        os = new ProgressOutputStream(os, this, getEffectiveBandwidthLimiter());
+
+        InputStream is;
+        if (firstPart != null) {
+            // continue after the first part, making sure the rest comes from the same version of the object
+            is = firstPart.getObject();
+            firstPart = null;
+            if (firstPartLength < objectSize) {
+                GetObjectRequest request = new GetObjectRequest(bucket, key)
+                        .withRange(Range.fromOffset(firstPartLength)).withIfMatch(objectETag);
+                is = new SequenceInputStream(is, getObjectMatchingETag(request).getObject());
+            }
+        } else {
+            is = s3Client.readObjectStream(bucket, key, null);
+        }
+
+        // cancel() stops the copy at its next read
+        is = new FilterInputStream(is) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (cancelled.get()) throw new CancellationException();
+                return super.read(b, off, len);
+            }
+        };
+        try {
+            StreamUtil.copy(is, os, objectSize);
+        } catch (CancellationException e) {
+            // the partial file is deleted below
+        } finally {
+            closeStream(is);
+            os.close();
+        }
 
-        StreamUtil.copy(s3Client.readObjectStream(bucket, key, null), os, objectSize);
+        throwIfCancelled();
     }
 
     protected void doParallelDownload() throws Exception {
@@ -137,46 +363,273 @@ public class LargeFileDownloader implements Runnable, ProgressListener {
         if (file.exists() && !file.canWrite())
             throw new IllegalArgumentException("cannot write to file: " + file.getPath());
 
+        if (checkpointFile != null && transferController != null)
+            throw new UnsupportedOperationException("a checkpoint cannot be used with a transfer controller (part sizes must be fixed)");
+
+        if (writeBufferSize <= 0) throw new IllegalArgumentException("writeBufferSize must be positive");
+
         if (partSize < MIN_PART_SIZE) {
             log.warn(String.format("%,dk is below the minimum part size (%,dk). the minimum will be used instead",
                     partSize / 1024, MIN_PART_SIZE / 1024));
             partSize = MIN_PART_SIZE;
         }
 
+        verifier = null;
+        if (verifyChecksum) createVerifier();
+
+        vdcStripeBalancer = stripeAcrossVdcs ? createVdcStripeBalancer() : null;
+
+        checkpoint = null;
+        if (checkpointFile != null) loadCheckpoint();
+        active.set(true);
+
         // set up thread pool
         boolean shutdownThreadPool = false;
         if (executorService == null) {
-            executorService = Executors.newFixedThreadPool(threads);
+            int poolSize = transferController != null ? transferController.getMaxConcurrency() : threads;
+            executorService = useVirtualThreads ? VirtualThreadSupport.newBoundedExecutor(poolSize) : Executors.newFixedThreadPool(poolSize);
             shutdownThreadPool = true;
         }
         List<Future<Void>> futures = new ArrayList<Future<Void>>();
 
-        try {
-            // open file for random write
-            RandomAccessFile raFile = new RandomAccessFile(file, "rw");
+        // the first part is only used by the fixed-size part plan below
+        if (transferController != null) closeFirstPart();
+
+        // open file for random write
+        try (RandomAccessFile raFile = new RandomAccessFile(file, "rw")) {
             raFile.setLength(objectSize);
             FileChannel channel = raFile.getChannel();
 
-
-            // submit all download tasks
-            long offset = 0, length = partSize;
-            while (offset < objectSize) {
-                if (offset + length > objectSize) length = objectSize - offset;
-                futures.add(executorService.submit(new DownloadPartTask(Range.fromOffsetLength(offset, length), channel)));
-                offset += length;
+            if (transferController != null) {
+                // part sizes and concurrency are chosen by the controller as parts complete
+                submitAdaptiveParts(futures, channel);
+            } else {
+                // submit all download tasks
+                long offset = 0, length = partSize;
+                for (int partNumber = 1; offset < objectSize; partNumber++) {
+                    if (offset + length > objectSize) length = objectSize - offset;
+                    // skip parts that were completed before the download was resumed
+                    if (checkpoint == null || !checkpoint.isPartCompleted(partNumber)) {
+                        DownloadPartTask task = new DownloadPartTask(partNumber, Range.fromOffsetLength(offset, length), channel);
+                        // the first part may already be streaming (if it was used to get the object size)
+                        if (partNumber == 1 && firstPart != null && length == firstPartLength) {
+                            task.prefetchedResult = firstPart;
+                            firstPart = null;
+                        }
+                        futures.add(executorService.submit(task));
+                    } else if (verifier != null) verifier.markWritten(offset, length);
+                    offset += length;
+                }
             }
 
             // wait for threads to finish
             for (Future<Void> future : futures) {
-                future.get();
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // CancellationException is only thrown when we are paused or cancelled - cancelled tasks will just be ignored
+                    if (!(e.getCause() instanceof CancellationException)) {
+                        // the file is about to be closed, so the other parts should stop (and not resume)
+                        active.set(false);
+                        throw e;
+                    }
+                }
             }
 
-            // close file
-            raFile.close();
+            if (vdcStripeBalancer != null) log.debug("bucket {} key {} striped download: {}", bucket, key, vdcStripeBalancer);
+
+            // if we were not paused or cancelled, all parts are complete
+            if (active.get()) {
+                try {
+                    if (verifier != null) verifier.verify(channel);
+                } finally {
+                    // a download that fails verification must start over
+                    deleteCheckpoint();
+                }
+            }
         } finally {
+            active.set(false);
 
             // make sure all spawned threads are shut down
             if (shutdownThreadPool) executorService.shutdown();
+
+            // do not hold on to write buffers between downloads
+            writeBuffers.clear();
+
+            closeCheckpoint();
+        }
+
+        throwIfCancelled();
+    }
+
+    /*
+     * a cancel only applies to the download in progress
+     */
+    private void throwIfCancelled() {
+        if (cancelled.getAndSet(false)) {
+            deleteCheckpoint();
+            if (!file.delete()) log.warn("could not delete partial file {}", file.getPath());
+            throw new CancellationException("download of " + bucket + "/" + key + " was cancelled");
+        }
+    }
+
+    /*
+     * the uploaded part size is not recorded in a multipart ETag, so try the configured sizes. if a checkpoint is resumed,
+     * its part size takes precedence, and parts that do not line up are hashed by reading them back
+     */
+    private void createVerifier() {
+        long[] partSizeCandidates = uploadPartSize != null ? new long[]{uploadPartSize}
+                : new long[]{partSize, LargeFileUploader.DEFAULT_PART_SIZE};
+        verifier = LargeFileDownloadVerifier.forObject(objectETag, objectSize, partSizeCandidates);
+
+        // line parts up with the uploaded parts, so each one can be hashed as it streams
+        if (verifier != null && verifier.getPartCount() > 0 && verifier.getSegmentSize() >= MIN_PART_SIZE
+                && partSize != verifier.getSegmentSize()) {
+            log.debug("using upload part size {} to verify {}/{}", verifier.getSegmentSize(), bucket, key);
+            partSize = verifier.getSegmentSize();
+        }
+    }
+
+    /*
+     * the VDC pin is applied by the smart client's load balancer, so striping needs the smart client and several VDCs
+     */
+    private VdcStripeBalancer createVdcStripeBalancer() {
+        if (s3Client instanceof S3JerseyClient) {
+            S3Config s3Config = ((S3JerseyClient) s3Client).getS3Config();
+            if (s3Config.isSmartClient() && s3Config.getVdcs() != null && s3Config.getVdcs().size() > 1)
+                return new VdcStripeBalancer(s3Config.getVdcs());
+        }
+        log.warn("striping across VDCs requires the smart client and more than one VDC; parts will not be striped");
+        return null;
+    }
+
+    /*
+     * resumes from the checkpoint if it matches the object and the target file, otherwise starts a new one
+     */
+    private void loadCheckpoint() throws IOException {
+        checkpoint = new LargeFileDownloadCheckpoint(checkpointFile);
+        String objectVersion = getCheckpointVersion();
+        if (checkpoint.load()) {
+            if (checkpoint.matches(objectVersion, objectSize) && file.length() == objectSize) {
+                log.info("resuming download of {}/{} from checkpoint {} ({} parts complete)",
+                        bucket, key, checkpointFile.getPath(), checkpoint.getCompletedPartCount());
+                // parts must line up with the checkpoint
+                partSize = checkpoint.getPartSize();
+                return;
+            }
+            log.info("checkpoint {} does not match {}/{} (the object or file has changed); starting over",
+                    checkpointFile.getPath(), bucket, key);
+        }
+        checkpoint.start(objectVersion, partSize, objectSize);
+    }
+
+    /*
+     * the checkpoint identifies the version of the object by its ETag. some objects have no ETag (i.e. behind some
+     * proxies), so the last-modified time is used instead (the size is always checked as well)
+     */
+    private String getCheckpointVersion() {
+        if (objectETag != null) return objectETag;
+        if (objectLastModified != null) {
+            log.info("{}/{} has no ETag; the checkpoint will identify it by its size and last-modified time", bucket, key);
+            return "last-modified:" + objectLastModified.getTime();
+        }
+        return null;
+    }
+
+    /*
+     * the part data is forced to disk before it is marked complete, so the checkpoint never covers data lost in a crash
+     */
+    private void checkpointPart(int partNumber, FileChannel channel) throws IOException {
+        if (checkpoint == null) return;
+        channel.force(false);
+        checkpoint.partCompleted(partNumber);
+    }
+
+    private void deleteCheckpoint() {
+        if (checkpoint == null) return;
+        try {
+            checkpoint.delete();
+        } catch (IOException e) {
+            log.warn("could not delete checkpoint " + checkpointFile.getPath(), e);
+        }
+    }
+
+    private void closeCheckpoint() {
+        if (checkpoint == null) return;
+        try {
+            checkpoint.close();
+        } catch (IOException e) {
+            log.warn("could not close checkpoint " + checkpointFile.getPath(), e);
+        }
+    }
+
+    /*
+     * submits parts one at a time as the controller allows, sizing each part when it is submitted
+     */
+    private void submitAdaptiveParts(List<Future<Void>> futures, FileChannel channel) throws InterruptedException {
+        AtomicBoolean partFailed = new AtomicBoolean(false);
+        transferController.start(threads, partSize);
+
+        long offset = 0;
+        for (int partNumber = 1; offset < objectSize; partNumber++) {
+            transferController.acquireSlot();
+
+            // stop submitting parts if we were paused/cancelled, or a part failed
+            if (!active.get() || partFailed.get()) {
+                transferController.releaseSlot();
+                break;
+            }
+
+            long length = Math.max(transferController.getPartSize(), MIN_PART_SIZE);
+            if (offset + length > objectSize) length = objectSize - offset;
+
+            DownloadPartTask task = new DownloadPartTask(partNumber, Range.fromOffsetLength(offset, length), channel);
+            long partLength = length;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                long startTime = System.nanoTime();
+                try {
+                    task.call();
+                    transferController.partCompleted(partLength, System.nanoTime() - startTime);
+                    return null;
+                } catch (Exception e) {
+                    if (!(e instanceof CancellationException)) {
+                        partFailed.set(true);
+                        transferController.partFailed();
+                    }
+                    if (e instanceof RuntimeException) throw (RuntimeException) e;
+                    throw new RuntimeException(e);
+                } finally {
+                    transferController.releaseSlot();
+                }
+            }, executorService));
+
+            offset += length;
+        }
+        log.debug("bucket {} key {} adaptive download settled on {}", bucket, key, transferController);
+    }
+
+    /*
+     * write buffers are large, so they are pooled (the pool grows to the number of concurrent parts). they are heap
+     * buffers, because the object stream can only be read into an array; the stream is read straight into the
+     * buffer's array, so there is no copy between the stream and the buffer
+     */
+    private ByteBuffer takeWriteBuffer() {
+        ByteBuffer buffer = writeBuffers.poll();
+        if (buffer == null || buffer.capacity() != writeBufferSize) buffer = ByteBuffer.allocate(writeBufferSize);
+        buffer.clear();
+        return buffer;
+    }
+
+    /*
+     * a misbehaving listener should not fail the download
+     */
+    private void recordPart(PartTransferMetrics partMetrics) {
+        transferStatistics.partTransferred(partMetrics);
+        if (partTransferListener == null) return;
+        try {
+            partTransferListener.partTransferred(partMetrics);
+        } catch (RuntimeException e) {
+            log.warn("part transfer listener failed", e);
         }
     }
 
@@ -241,13 +694,55 @@ public class LargeFileDownloader implements Runnable, ProgressListener {
         this.threads = threads;
     }
 
+    public boolean isUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+    /**
+     * Set to true to run part downloads on virtual threads when the runtime supports them (Java 21+). The number of
+     * parts running at once is still limited by <code>threads</code>. On older runtimes, a pool of platform
+     * threads is used. This does not apply if you provide an executor service. Default is false
+     *
+     * @see VirtualThreadSupport
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
+    public int getWriteBufferSize() {
+        return writeBufferSize;
+    }
+
+    /**
+     * Sets the size of the (pooled) buffer each part is read into before it is written to the file. Larger buffers
+     * mean fewer write calls. For memory-mapped writes, this is the size of the chunks copied into the mapped region.
+     * Default is {@link #DEFAULT_WRITE_BUFFER_SIZE}
+     */
+    public void setWriteBufferSize(int writeBufferSize) {
+        this.writeBufferSize = writeBufferSize;
+    }
+
+    public boolean isUseMemoryMappedWrites() {
+        return useMemoryMappedWrites;
+    }
+
+    /**
+     * Set to true to copy each part into a memory-mapped region of the target file, which avoids a write call per
+     * buffer. The mapped regions are released by GC, so this is best suited to a dedicated download
+     * process with a large heap. Parts larger than 2GB are always written with the buffered path. Default is false
+     */
+    public void setUseMemoryMappedWrites(boolean useMemoryMappedWrites) {
+        this.useMemoryMappedWrites = useMemoryMappedWrites;
+    }
+
     public ExecutorService getExecutorService() {
         return executorService;
     }
 
     /**
      * Allows for providing a custom thread executor (i.e. for custom thread factories). Note that if
-     * you set a custom executor service, the <code>threads</code> property will be ignored.
+     * you set a custom executor service, the <code>threads</code> property will be ignored. To share a global limit on
+     * concurrent parts between transfers, use {@link TransferScheduler#newTransferExecutor()}.
      */
     public void setExecutorService(ExecutorService executorService) {
         this.executorService = executorService;
@@ -261,6 +756,172 @@ public class LargeFileDownloader implements Runnable, ProgressListener {
         this.progressListener = progressListener;
     }
 
+    public PartTransferListener getPartTransferListener() {
+        return partTransferListener;
+    }
+
+    /**
+     * Sets a listener that is notified with timing, host and retry details as each part of a parallel download
+     * completes or fails. These details are also rolled up in {@link #getTransferStatistics()}
+     *
+     * @see PartTransferMetrics
+     */
+    public void setPartTransferListener(PartTransferListener partTransferListener) {
+        this.partTransferListener = partTransferListener;
+    }
+
+    /**
+     * Returns statistics for the parts downloaded so far by this instance (empty for a single-GET download)
+     */
+    public TransferStatistics getTransferStatistics() {
+        return transferStatistics;
+    }
+
+    public AdaptiveTransferController getTransferController() {
+        return transferController;
+    }
+
+    /**
+     * Sets a controller that adjusts concurrency and part size during a parallel download, based on the observed
+     * throughput of each part. The configured <code>threads</code> and <code>partSize</code> are used as starting
+     * values (unless the controller specifies its own), and the controller will report the values it settled on
+     * after the download. Default is null (fixed part size and concurrency)
+     *
+     * @see AdaptiveTransferController
+     */
+    public void setTransferController(AdaptiveTransferController transferController) {
+        this.transferController = transferController;
+    }
+
+    public BandwidthLimiter getBandwidthLimiter() {
+        return bandwidthLimiter;
+    }
+
+    /**
+     * Sets a bandwidth limiter for this download. Share the same limiter between transfers to limit their combined
+     * rate. If not set, the limiter configured in the client's {@link S3Config#setBandwidthLimiter(BandwidthLimiter)
+     * S3Config} (if any) is used
+     */
+    public void setBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+        this.bandwidthLimiter = bandwidthLimiter;
+    }
+
+    public File getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * Sets a file used to checkpoint a parallel download, so it can be resumed after it is paused, fails or the
+     * process is terminated. When resuming, only the parts missing from the checkpoint are transferred, and the
+     * configured <code>partSize</code> is replaced with the part size in the checkpoint. If the object (its ETag or
+     * size, or its last-modified time if it has no ETag) or the target file has changed, the checkpoint is discarded
+     * and the download starts over. The checkpoint
+     * is deleted when the download completes. Cannot be used with a transfer controller. Default is null (no
+     * checkpoint)
+     *
+     * @see LargeFileDownloadCheckpoint
+     */
+    public void setCheckpointFile(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    public boolean isVerifyChecksum() {
+        return verifyChecksum;
+    }
+
+    /**
+     * Set to true to verify a parallel download against the object's ETag as it downloads. For a multipart object,
+     * the download parts are lined up with the uploaded parts and each one is hashed as it streams. For a single-part
+     * object, the data is hashed in order as parts complete, while it is still in the page cache. A
+     * {@link com.emc.object.util.ChecksumError} is thrown if the data does not match. Objects with an ETag that is not
+     * an MD5 (or whose upload part size cannot be determined) are not verified. Default is false
+     *
+     * @see #setUploadPartSize(Long)
+     */
+    public void setVerifyChecksum(boolean verifyChecksum) {
+        this.verifyChecksum = verifyChecksum;
+    }
+
+    public Long getUploadPartSize() {
+        return uploadPartSize;
+    }
+
+    /**
+     * Sets the part size that was used to upload the object, which is needed to verify a multipart ETag. If not set,
+     * the configured <code>partSize</code> and then {@link LargeFileUploader#DEFAULT_PART_SIZE} are tried, and the
+     * first one that results in the ETag's part count is used. Default is null
+     */
+    public void setUploadPartSize(Long uploadPartSize) {
+        this.uploadPartSize = uploadPartSize;
+    }
+
+    public boolean isSkipHeadRequest() {
+        return skipHeadRequest;
+    }
+
+    /**
+     * Set to true to start the download with a ranged GET for the first part, instead of a HEAD request. The object
+     * size and ETag are read from the response headers, so data starts moving one round-trip sooner. The remaining
+     * parts are requested with <code>If-Match</code> on that ETag, so the download fails if the object is overwritten
+     * during the download (instead of mixing both versions). If the first part does not fit the download (i.e. a
+     * resumed checkpoint uses a different part size), it is discarded. Empty objects fall back to a HEAD request.
+     * Default is false
+     */
+    public void setSkipHeadRequest(boolean skipHeadRequest) {
+        this.skipHeadRequest = skipHeadRequest;
+    }
+
+    public boolean isStripeAcrossVdcs() {
+        return stripeAcrossVdcs;
+    }
+
+    /**
+     * Set to true to spread the parts of a parallel download across all VDCs configured in the client, so the
+     * bandwidth of each site adds up. Only use this for objects that are replicated to every VDC. The throughput of
+     * each VDC is measured as parts complete, and slower sites are given fewer parts (see {@link VdcStripeBalancer}).
+     * Requires the smart client and more than one VDC (otherwise, parts are not striped). Note that this overrides
+     * geo-pinning for the download. Default is false
+     *
+     * @see #getVdcStripeBalancer()
+     */
+    public void setStripeAcrossVdcs(boolean stripeAcrossVdcs) {
+        this.stripeAcrossVdcs = stripeAcrossVdcs;
+    }
+
+    /**
+     * Returns the per-VDC statistics of the last striped download (null if the last download was not striped)
+     */
+    public VdcStripeBalancer getVdcStripeBalancer() {
+        return vdcStripeBalancer;
+    }
+
+    public int getPartRetryLimit() {
+        return partRetryLimit;
+    }
+
+    /**
+     * Sets the number of times a part is resumed when its data stream breaks (i.e. the connection is reset after
+     * some of the part has been received). A resumed part only requests the bytes after the last one written to the
+     * file, so data already received is not transferred again. This is separate from the client's retries (see
+     * {@link S3Config#setRetryLimit(int)}), which only apply before a response is received. Set to 0 to fail the part
+     * instead. Default is {@link #DEFAULT_PART_RETRY_LIMIT}
+     */
+    public void setPartRetryLimit(int partRetryLimit) {
+        this.partRetryLimit = partRetryLimit;
+    }
+
+    public long getInitialPartRetryDelay() {
+        return initialPartRetryDelay;
+    }
+
+    /**
+     * Sets the delay (in milliseconds) before a broken part is first resumed. The delay doubles for each resume of
+     * the same part. Default is {@link #DEFAULT_INITIAL_PART_RETRY_DELAY}
+     */
+    public void setInitialPartRetryDelay(long initialPartRetryDelay) {
+        this.initialPartRetryDelay = initialPartRetryDelay;
+    }
+
     public LargeFileDownloader withParallelThreshold(long parallelThreshold) {
         setParallelThreshold(parallelThreshold);
         return this;
@@ -276,6 +937,21 @@ public class LargeFileDownloader implements Runnable, ProgressListener {
         return this;
     }
 
+    public LargeFileDownloader withUseVirtualThreads(boolean useVirtualThreads) {
+        setUseVirtualThreads(useVirtualThreads);
+        return this;
+    }
+
+    public LargeFileDownloader withWriteBufferSize(int writeBufferSize) {
+        setWriteBufferSize(writeBufferSize);
+        return this;
+    }
+
+    public LargeFileDownloader withUseMemoryMappedWrites(boolean useMemoryMappedWrites) {
+        setUseMemoryMappedWrites(useMemoryMappedWrites);
+        return this;
+    }
+
     public LargeFileDownloader withExecutorService(ExecutorService executorService) {
         setExecutorService(executorService);
         return this;
@@ -286,37 +962,249 @@ public class LargeFileDownloader implements Runnable, ProgressListener {
         return this;
     }
 
+    public LargeFileDownloader withPartTransferListener(PartTransferListener partTransferListener) {
+        setPartTransferListener(partTransferListener);
+        return this;
+    }
+
+    public LargeFileDownloader withBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+        setBandwidthLimiter(bandwidthLimiter);
+        return this;
+    }
+
+    public LargeFileDownloader withTransferController(AdaptiveTransferController transferController) {
+        setTransferController(transferController);
+        return this;
+    }
+
+    /**
+     * @see #setCheckpointFile(File)
+     */
+    public LargeFileDownloader withCheckpointFile(File checkpointFile) {
+        setCheckpointFile(checkpointFile);
+        return this;
+    }
+
+    public LargeFileDownloader withVerifyChecksum(boolean verifyChecksum) {
+        setVerifyChecksum(verifyChecksum);
+        return this;
+    }
+
+    public LargeFileDownloader withUploadPartSize(Long uploadPartSize) {
+        setUploadPartSize(uploadPartSize);
+        return this;
+    }
+
+    public LargeFileDownloader withSkipHeadRequest(boolean skipHeadRequest) {
+        setSkipHeadRequest(skipHeadRequest);
+        return this;
+    }
+
+    public LargeFileDownloader withStripeAcrossVdcs(boolean stripeAcrossVdcs) {
+        setStripeAcrossVdcs(stripeAcrossVdcs);
+        return this;
+    }
+
+    public LargeFileDownloader withPartRetryLimit(int partRetryLimit) {
+        setPartRetryLimit(partRetryLimit);
+        return this;
+    }
+
+    public LargeFileDownloader withInitialPartRetryDelay(long initialPartRetryDelay) {
+        setInitialPartRetryDelay(initialPartRetryDelay);
+        return this;
+    }
+
     protected class DownloadPartTask implements Callable<Void> {
         private Range range;
         private FileChannel channel;
+        private PartTransferMetrics partMetrics;
+        // a response that is already streaming this part
+        private GetObjectResult<InputStream> prefetchedResult;
+        // the next byte of the part to write (only used by the thread running the task)
+        private long position;
 
+        /**
+         * Assumes all parts are <code>partSize</code> (except the last one) to determine the part number
+         */
         public DownloadPartTask(Range range, FileChannel channel) {
+            this((int) (range.getFirst() / partSize) + 1, range, channel);
+        }
+
+        public DownloadPartTask(int partNumber, Range range, FileChannel channel) {
             this.range = range;
             this.channel = channel;
+            this.partMetrics = new PartTransferMetrics(partNumber, range.getFirst(), range.getLast() - range.getFirst() + 1);
         }
 
         @Override
         public Void call() throws Exception {
-            InputStream is = s3Client.readObjectStream(bucket, key, range);
+            // we were paused or cancelled, so should not start any more tasks
+            if (!active.get()) {
+                if (prefetchedResult != null) closeStream(prefetchedResult.getObject());
+                throw new CancellationException();
+            }
 
+            partMetrics.started();
+            long startTime = System.nanoTime();
+            long length = range.getLast() - range.getFirst() + 1;
+            Vdc vdc = null;
             try {
-                is = new ProgressInputStream(is, LargeFileDownloader.this);
+                if (vdcStripeBalancer != null && prefetchedResult == null) vdc = vdcStripeBalancer.acquire(length);
+
+                // a mapped region is filled in place, so its position is the number of bytes received
+                MappedByteBuffer mapped = null;
+                if (useMemoryMappedWrites && length <= Integer.MAX_VALUE)
+                    mapped = channel.map(FileChannel.MapMode.READ_WRITE, range.getFirst(), length);
+                RunningChecksum checksum = null;
+                if (verifier != null && verifier.isSegment(range.getFirst(), length))
+                    checksum = new RunningChecksum(ChecksumAlgorithm.MD5);
 
-                byte[] buffer = new byte[32 * 1024];
-                long pos = range.getFirst();
-                for (int r = 0; r != -1; r = is.read(buffer)) {
-                    channel.write(ByteBuffer.wrap(buffer, 0, r), pos);
-                    pos += r;
+                position = range.getFirst();
+                GetObjectResult<InputStream> result = prefetchedResult;
+                for (int resumes = 0; ; resumes++) {
+                    if (result == null) result = getRemainder(vdc, resumes > 0);
+                    try {
+                        readPart(result.getObject(), mapped, checksum);
+                        break;
+                    } catch (IOException e) {
+                        // the data up to position is safely in the file, so only the rest of the part is requested again
+                        // (a closed channel means the download already failed, so there is nothing to resume)
+                        if (cancelled.get() || e instanceof ClosedChannelException || resumes >= partRetryLimit) throw e;
+                        // we were paused, or another part failed
+                        if (!active.get()) throw new CancellationException();
+                        long retryDelay = initialPartRetryDelay * (1L << resumes);
+                        log.info("part {} of {}/{} broke at offset {} [{}], resuming in {}ms ({} of {})...",
+                                partMetrics.getPartNumber(), bucket, key, position, e, retryDelay, resumes + 1, partRetryLimit);
+                        partMetrics.resumed();
+                        if (retryDelay > 0) Thread.sleep(retryDelay);
+                        if (!active.get()) throw new CancellationException();
+                        result = null;
+                    }
                 }
+                if (mapped != null && checkpoint != null) mapped.force();
+                checkpointPart(partMetrics.getPartNumber(), channel);
 
+                if (verifier != null) {
+                    if (checksum != null) verifier.segmentHashed(range.getFirst(), checksum.getByteValue());
+                    verifier.markWritten(range.getFirst(), length);
+                    verifier.hashWritten(channel);
+                }
+
+                if (vdc != null) vdcStripeBalancer.partCompleted(vdc, length, System.nanoTime() - startTime);
+                partMetrics.completed(result.getObjectMetadata().getETag());
+                recordPart(partMetrics);
                 return null;
+            } catch (Exception e) {
+                if (vdc != null) {
+                    if (e instanceof CancellationException) vdcStripeBalancer.partCancelled(vdc, length);
+                    else vdcStripeBalancer.partFailed(vdc, length);
+                }
+                partMetrics.failed(e);
+                recordPart(partMetrics);
+                throw e;
+            }
+        }
+
+        /*
+         * requests the part from the current position to the end
+         */
+        private GetObjectResult<InputStream> getRemainder(Vdc vdc, boolean resumed) {
+            GetObjectRequest request = new GetObjectRequest(bucket, key).withRange(new Range(position, range.getLast()));
+            // make sure resumed parts (or parts after the first, if there was no HEAD) come from the same version of
+            // the object
+            if (checkpoint != null || skipHeadRequest || resumed) request.setIfMatch(objectETag);
+            request.property(PartTransferMetrics.PROP_PART_METRICS, partMetrics);
+            if (vdc != null) request.property(GeoPinningRule.PROP_GEO_PINNED_VDC, vdc);
+            return getObjectMatchingETag(request);
+        }
+
+        /*
+         * writes the stream to the file from the current position. if the stream breaks, everything received is
+         * written before the exception is thrown, so position is where the part should resume
+         */
+        private void readPart(InputStream is, MappedByteBuffer mapped, RunningChecksum checksum) throws IOException {
+            try {
+                is = new ProgressInputStream(is, partMetrics.monitor(LargeFileDownloader.this), getEffectiveBandwidthLimiter());
+                if (checksum != null) is = new ChecksummedInputStream(is, checksum);
+
+                if (mapped != null) {
+                    try {
+                        copyMapped(is, mapped);
+                    } finally {
+                        position = range.getFirst() + mapped.position();
+                    }
+                } else {
+                    writeBuffered(is);
+                }
+                if (position <= range.getLast())
+                    throw new IOException("unexpected end of part stream at offset " + position);
             } finally {
-                try {
-                    is.close();
-                } catch (Throwable t) {
-                    log.warn("could not close object stream", t);
+                closeStream(is);
+            }
+        }
+
+        /*
+         * fills a pooled buffer from the stream and writes it in one call, so there is one write per buffer instead
+         * of one per socket read
+         */
+        private void writeBuffered(InputStream is) throws IOException {
+            ByteBuffer buffer = takeWriteBuffer();
+            try {
+                boolean eof = false;
+                while (!eof) {
+                    buffer.clear();
+                    try {
+                        eof = fill(is, buffer);
+                    } finally {
+                        // also keeps what was received before a broken stream, so it does not need to be read again
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            position += channel.write(buffer, position);
+                        }
+                    }
                 }
+            } finally {
+                writeBuffers.offer(buffer);
+            }
+        }
+
+        /*
+         * copies the stream into the mapped region through a pooled buffer, a full buffer at a time. everything
+         * received is copied before an exception is thrown, so the region's position is where the part should resume
+         */
+        private void copyMapped(InputStream is, MappedByteBuffer mapped) throws IOException {
+            ByteBuffer buffer = takeWriteBuffer();
+            try {
+                boolean eof = false;
+                while (!eof && mapped.hasRemaining()) {
+                    buffer.clear();
+                    if (buffer.remaining() > mapped.remaining()) buffer.limit(mapped.remaining());
+                    try {
+                        eof = fill(is, buffer);
+                    } finally {
+                        buffer.flip();
+                        mapped.put(buffer);
+                    }
+                }
+            } finally {
+                writeBuffers.offer(buffer);
+            }
+        }
+
+        /*
+         * reads straight into the buffer's array until the buffer is full or the stream ends; returns true at the end
+         * of the stream
+         */
+        private boolean fill(InputStream is, ByteBuffer buffer) throws IOException {
+            byte[] array = buffer.array();
+            while (buffer.hasRemaining()) {
+                if (cancelled.get()) throw new CancellationException();
+                int count = is.read(array, buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                if (count == -1) return true;
+                buffer.position(buffer.position() + count);
             }
+            return false;
         }
     }
 }
@@ -29,15 +29,20 @@ package com.emc.object.s3;
 import com.emc.object.Range;
 import com.emc.object.s3.bean.*;
 import com.emc.object.s3.lfu.*;
+import com.emc.object.s3.jersey.S3JerseyClient;
 import com.emc.object.s3.request.*;
+import com.emc.object.util.BandwidthLimiter;
 import com.emc.object.util.ProgressInputStream;
 import com.emc.object.util.ProgressListener;
+import com.emc.object.util.VirtualThreadSupport;
 import com.emc.rest.util.SizedInputStream;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.xml.bind.DatatypeConverter;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FilterInputStream;
 import java.io.IOException;
@@ -45,6 +50,7 @@ import java.io.InputStream;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -67,6 +73,11 @@ public class LargeFileUploader implements Runnable, ProgressListener {
 
     public static final long MIN_PART_SIZE = 4 * 1024 * 1024; // 4MB
     public static final long DEFAULT_PART_SIZE = 128 * 1024 * 1024; // 128MB
+    public static final int DEFAULT_PART_RETRY_LIMIT = 3;
+    public static final long DEFAULT_INITIAL_PART_RETRY_DELAY = 1000; // ms
+
+    // how often to check for straggling parts while waiting for a speculative upload
+    private static final long STRAGGLER_CHECK_INTERVAL_MS = 250;
     public static final int MAX_PARTS = 10000;
 
     public static String getMpuETag(List<MultipartPartETag> partETags) {
@@ -96,27 +107,41 @@ public class LargeFileUploader implements Runnable, ProgressListener {
     private long mpuThreshold = DEFAULT_MPU_THRESHOLD;
     private Long partSize = DEFAULT_PART_SIZE;
     private int threads = DEFAULT_THREADS;
+    private boolean useVirtualThreads = false;
+    private long streamBufferSize = 0;
+    private AdaptiveTransferController transferController;
+    private StragglerDetector stragglerDetector;
+    private BandwidthLimiter bandwidthLimiter;
     private ExecutorService executorService;
     private boolean externalExecutorService;
     private ProgressListener progressListener;
+    private PartTransferListener partTransferListener;
+    private final TransferStatistics transferStatistics = new TransferStatistics();
     private final AtomicBoolean active = new AtomicBoolean(false);
+    // part futures of the current upload, so abort() can release anything waiting on them
+    private volatile List<Future<MultipartPartETag>> partFutures;
 
     private LargeFileUploaderResumeContext resumeContext;
     private Map<Integer, MultipartPartETag> existingMpuParts = null;
     private boolean abortMpuOnFailure = true;
+    private int partRetryLimit = DEFAULT_PART_RETRY_LIMIT;
+    private long initialPartRetryDelay = DEFAULT_INITIAL_PART_RETRY_DELAY;
+    private File journalFile;
+    private LargeFileUploadJournal journal;
 
     /**
      * Creates a new LargeFileUpload instance using the specified <code>s3Client</code> to upload
      * <code>file</code> to <code>bucket/key</code>.
      */
     public LargeFileUploader(S3Client s3Client, String bucket, String key, File file) {
-        this(s3Client, bucket, key, new LargeFileMultipartFileSource(file));
+        this(s3Client, bucket, key, new LargeFileMultipartChannelSource(file));
     }
 
     /**
      * Creates a new LargeFileUpload instance using the specified <code>s3Client</code> to upload
-     * from a single <code>stream</code> to <code>bucket/key</code>. Note that this type of upload is
-     * single-threaded and not very efficient.
+     * from a single <code>stream</code> to <code>bucket/key</code>. Note that by default, this type of upload is
+     * single-threaded and not very efficient. To upload parts from a stream in parallel, set a
+     * {@link #setStreamBufferSize(long) stream buffer size}.
      */
     public LargeFileUploader(S3Client s3Client, String bucket, String key, InputStream stream, long size) {
         this.s3Client = s3Client;
@@ -155,6 +180,17 @@ public class LargeFileUploader implements Runnable, ProgressListener {
         }
     }
 
+    /*
+     * takes back progress for data that was sent by a failed or abandoned attempt of a part, so the completed bytes
+     * never count the same data twice (transferred events are raw and are not taken back)
+     */
+    private void discardProgress(long size) {
+        if (size <= 0) return;
+        long totalTransferred = bytesTransferred.addAndGet(-size);
+
+        if (progressListener != null) progressListener.progress(totalTransferred, fullSize);
+    }
+
     @Override
     public void run() {
         upload();
@@ -198,8 +234,17 @@ public class LargeFileUploader implements Runnable, ProgressListener {
     }
 
     protected MultipartPartETag uploadPart(String uploadId, int partNumber, InputStream is, long length) {
+        return uploadPart(uploadId, partNumber, is, length, null);
+    }
+
+    /**
+     * If <code>partMetrics</code> is not null, it is passed to the client so it can record the host and retry count
+     */
+    protected MultipartPartETag uploadPart(String uploadId, int partNumber, InputStream is, long length,
+                                           PartTransferMetrics partMetrics) {
         UploadPartRequest request = new UploadPartRequest(bucket, key, uploadId, partNumber, is);
         request.setContentLength(length);
+        if (partMetrics != null) request.property(PartTransferMetrics.PROP_PART_METRICS, partMetrics);
 
         return s3Client.uploadPart(request);
     }
@@ -223,7 +268,7 @@ public class LargeFileUploader implements Runnable, ProgressListener {
      */
     public LargeFileUpload uploadAsync() {
         // start a background thread
-        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ExecutorService executor = useVirtualThreads ? VirtualThreadSupport.newBoundedExecutor(1) : Executors.newSingleThreadExecutor();
         Future<?> future = executor.submit(this::upload);
         executor.shutdown();
 
@@ -267,6 +312,12 @@ public class LargeFileUploader implements Runnable, ProgressListener {
                     resumeContext.setUploadedParts(null);
                 }
                 executorService.shutdownNow(); // immediately terminates thread pool and interrupts any running threads
+                cancelPartFutures();
+            }
+
+            @Override
+            public TransferStatistics getTransferStatistics() {
+                return transferStatistics;
             }
         };
     }
@@ -304,6 +355,14 @@ public class LargeFileUploader implements Runnable, ProgressListener {
         return is;
     }
 
+    /*
+     * if a part was read ahead from a stream source, its data will be in <code>buffer</code>
+     */
+    private InputStream getSourcePartDataStream(long offset, long length, byte[] buffer) throws IOException {
+        if (buffer != null) return new ByteArrayInputStream(buffer, 0, (int) length);
+        return getSourcePartDataStream(offset, length);
+    }
+
     private InputStream getSourcePartDataStream(long offset, long length) throws IOException {
         InputStream is;
         if (multipartSource != null) {
@@ -322,8 +381,132 @@ public class LargeFileUploader implements Runnable, ProgressListener {
         return is;
     }
 
+    /*
+     * a part can be read again if it comes from a multipart source (which reopens it) or a read-ahead buffer
+     */
+    private boolean isPartReopenable(byte[] buffer) {
+        return multipartSource != null || buffer != null;
+    }
+
+    /*
+     * same rules as RetryFilter: 50x errors (except 501) and I/O errors, wherever they are in the cause chain
+     */
+    private static boolean isRetryable(Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            if (t instanceof S3Exception) {
+                int httpCode = ((S3Exception) t).getHttpCode();
+                return httpCode >= 500 && httpCode != 501;
+            }
+            if (t instanceof IOException) return true;
+        }
+        return false;
+    }
+
+    /*
+     * speculative re-uploads must be able to reopen any part at any time, so are only used with a multipart source
+     */
+    private boolean isSpeculative() {
+        return stragglerDetector != null && multipartSource != null && transferController == null;
+    }
+
+    private boolean isStreamReadAhead() {
+        return stream != null && streamBufferSize > 0;
+    }
+
+    /*
+     * reads the next part from the source stream into a pooled buffer (blocks if all buffers are in use)
+     */
+    private byte[] readAheadPart(PartBufferPool bufferPool, long length) throws IOException, InterruptedException {
+        byte[] buffer;
+        while ((buffer = bufferPool.acquire(1, TimeUnit.SECONDS)) == null) {
+            // if the thread pool was shut down (i.e. we were aborted), buffers may never be released
+            if (executorService.isShutdown()) throw new CancellationException();
+        }
+        int total = 0;
+        while (total < length) {
+            int read = stream.read(buffer, total, (int) length - total);
+            if (read < 0) {
+                bufferPool.release(buffer);
+                throw new IOException(String.format("unexpected end of stream (expected %d more bytes)", length - total));
+            }
+            total += read;
+        }
+        return buffer;
+    }
+
+    /*
+     * returns a part's buffer to the pool when its task is done, and flags any failure so we can stop reading ahead
+     */
+    private <T> CompletableFuture<T> releaseWhenComplete(CompletableFuture<T> future, byte[] buffer,
+                                                         PartBufferPool bufferPool, AtomicBoolean failed) {
+        return future.whenComplete((result, t) -> {
+            bufferPool.release(buffer);
+            if (t != null && !(t.getCause() instanceof CancellationException)) failed.set(true);
+        });
+    }
+
+    private void closeSource() {
+        if (!closeStream) return;
+        try {
+            if (stream != null) stream.close();
+            else if (multipartSource instanceof Closeable) ((Closeable) multipartSource).close();
+        } catch (Throwable t) {
+            log.warn("could not close source", t);
+        }
+    }
+
     protected InputStream monitorStream(InputStream stream) {
-        return new ProgressInputStream(stream, this);
+        return new ProgressInputStream(stream, this, getEffectiveBandwidthLimiter());
+    }
+
+    private InputStream monitorStream(InputStream stream, PartTransferMetrics partMetrics) {
+        return new ProgressInputStream(stream, partMetrics.monitor(this), getEffectiveBandwidthLimiter());
+    }
+
+    /*
+     * waits for a part to complete, starting a duplicate upload of any parts the straggler detector flags meanwhile.
+     * once the upload is aborted, attempts still queued in the executor will never run, so nothing would complete the
+     * part result; in that case, the part is cancelled instead
+     */
+    private MultipartPartETag awaitPart(Future<MultipartPartETag> future, Map<Integer, UploadPartTask> speculativeTasks)
+            throws InterruptedException, ExecutionException {
+        while (true) {
+            try {
+                return future.get(STRAGGLER_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (!active.get()) {
+                    if (executorService.isShutdown()) future.cancel(true);
+                    continue;
+                }
+                for (int partNumber : stragglerDetector.findStragglers(speculativeTasks.size())) {
+                    log.info("part {} of {}/{} is straggling; starting a speculative upload of the same part",
+                            partNumber, bucket, key);
+                    executorService.submit(speculativeTasks.get(partNumber).duplicate());
+                }
+            }
+        }
+    }
+
+    /*
+     * a misbehaving listener should not fail the upload
+     */
+    private void recordPart(PartTransferMetrics partMetrics) {
+        transferStatistics.partTransferred(partMetrics);
+        if (partTransferListener == null) return;
+        try {
+            partTransferListener.partTransferred(partMetrics);
+        } catch (RuntimeException e) {
+            log.warn("part transfer listener failed", e);
+        }
+    }
+
+    /*
+     * a limiter set on this instance takes precedence over one configured on the client
+     */
+    private BandwidthLimiter getEffectiveBandwidthLimiter() {
+        if (bandwidthLimiter != null) return bandwidthLimiter;
+        if (s3Client instanceof S3JerseyClient) return ((S3JerseyClient) s3Client).getS3Config().getBandwidthLimiter();
+        return null;
     }
 
     public void doSinglePut() {
@@ -391,49 +574,87 @@ public class LargeFileUploader implements Runnable, ProgressListener {
         // make sure trusted part list is initialized (this will be updated as parts are uploaded)
         if (resumeContext.getUploadedParts() == null) resumeContext.setUploadedParts(new HashMap<>());
 
-        List<Future<MultipartPartETag>> futures = new ArrayList<>();
-        try {
-            // submit all upload tasks
-            int lastPart = (int) ((fullSize - 1) / partSize) + 1;
-            for (int partNumber = 1; partNumber <= lastPart; partNumber++) {
-                long offset = (partNumber - 1) * partSize;
-                long length = partSize;
-                if (offset + length > fullSize) length = fullSize - offset;
+        // record the upload in the journal (unless we are resuming from it)
+        if (journal != null && !resumeContext.getUploadId().equals(journal.getUploadId())) startJournal();
 
-                // if we already have a trusted part ETag, skip this part without verifying
-                if (resumeContext.getUploadedParts().containsKey(partNumber)) {
-                    log.debug("bucket {} key {} partNumber {} provided in resume context; will use the provided ETag and this part will not be verified",
-                            bucket, key, partNumber);
-
-                    // reuse existing MPU parts if found
-                } else if (existingMpuParts != null && existingMpuParts.containsKey(partNumber)) {
-                    log.debug("bucket {} key {} partNumber {} already exists, will be reused for multipart upload",
-                            bucket, key, partNumber);
-                    // verify source part if necessary
-                    if (resumeContext.isVerifyPartsFoundInTarget()) {
-                        futures.add(CompletableFuture // need to use CompletableFuture to allow chained execution
-                                // first, verify the part ETag by re-reading form source
-                                .supplyAsync(new VerifySourcePartTask(partNumber, offset, length, existingMpuParts.get(partNumber).getRawETag()), executorService)
-                                // then, if the part is invalid (throws PartMismatchException), re-upload it (if configured to do so)
-                                .exceptionally(partMismatchHandler(resumeContext.getUploadId(), partNumber, offset, length)));
+        // when reading ahead from a stream, parts are read in order (by this thread) into a bounded pool of buffers
+        PartBufferPool bufferPool = isStreamReadAhead() ? new PartBufferPool(partSize, streamBufferSize) : null;
+        AtomicBoolean readAheadFailed = new AtomicBoolean(false);
+
+        List<Future<MultipartPartETag>> futures = Collections.synchronizedList(new ArrayList<>());
+        partFutures = futures;
+        // parts that may be speculatively re-uploaded, by part number
+        Map<Integer, UploadPartTask> speculativeTasks = new HashMap<>();
+        if (isSpeculative()) stragglerDetector.start();
+        try {
+            if (transferController != null) {
+                // part sizes and concurrency are chosen by the controller as parts complete
+                submitAdaptiveParts(futures);
+            } else {
+                // submit all upload tasks
+                int lastPart = (int) ((fullSize - 1) / partSize) + 1;
+                for (int partNumber = 1; partNumber <= lastPart; partNumber++) {
+                    long offset = (partNumber - 1) * partSize;
+                    long length = partSize;
+                    if (offset + length > fullSize) length = fullSize - offset;
+
+                    // no sense in reading any more of the stream if we were paused/aborted, or a part failed
+                    if (bufferPool != null && (!active.get() || readAheadFailed.get())) break;
+
+                    // if we already have a trusted part ETag, skip this part without verifying
+                    if (resumeContext.getUploadedParts().containsKey(partNumber)) {
+                        log.debug("bucket {} key {} partNumber {} provided in resume context; will use the provided ETag and this part will not be verified",
+                                bucket, key, partNumber);
+                        // make sure skipped parts are consumed from the source stream
+                        if (bufferPool != null) bufferPool.release(readAheadPart(bufferPool, length));
+
+                        // reuse existing MPU parts if found
+                    } else if (existingMpuParts != null && existingMpuParts.containsKey(partNumber)) {
+                        log.debug("bucket {} key {} partNumber {} already exists, will be reused for multipart upload",
+                                bucket, key, partNumber);
+                        // verify source part if necessary
+                        if (resumeContext.isVerifyPartsFoundInTarget()) {
+                            byte[] buffer = bufferPool != null ? readAheadPart(bufferPool, length) : null;
+                            CompletableFuture<MultipartPartETag> future = CompletableFuture // need to use CompletableFuture to allow chained execution
+                                    // first, verify the part ETag by re-reading form source
+                                    .supplyAsync(new VerifySourcePartTask(partNumber, offset, length, existingMpuParts.get(partNumber).getRawETag(), buffer), executorService)
+                                    // then, if the part is invalid (throws PartMismatchException), re-upload it (if configured to do so)
+                                    .exceptionally(partMismatchHandler(resumeContext.getUploadId(), partNumber, offset, length, buffer));
+                            if (bufferPool != null) future = releaseWhenComplete(future, buffer, bufferPool, readAheadFailed);
+                            futures.add(future);
+                        } else {
+                            // calling code has specified *not* to verify existing parts found in the target, so we will
+                            // trust the existing part ETag
+                            log.debug("verifyPartsFoundInTarget is false; not verifying existing part data for partNumber {} (ETag: {})",
+                                    partNumber, existingMpuParts.get(partNumber).getETag());
+                            resumeContext.getUploadedParts().put(partNumber, new MultipartPartETag(partNumber, existingMpuParts.get(partNumber).getETag()));
+                            journalPart(resumeContext.getUploadedParts().get(partNumber));
+                        }
+
+                        // no existing part to use, so upload this part
+                    } else if (bufferPool != null) {
+                        byte[] buffer = readAheadPart(bufferPool, length);
+                        UploadPartTask task = new UploadPartTask(resumeContext.getUploadId(), partNumber, offset, length, buffer);
+                        futures.add(releaseWhenComplete(CompletableFuture.supplyAsync(task::call, executorService),
+                                buffer, bufferPool, readAheadFailed));
+                    } else if (isSpeculative()) {
+                        UploadPartTask task = new UploadPartTask(resumeContext.getUploadId(), partNumber, offset, length).speculative();
+                        speculativeTasks.put(partNumber, task);
+                        executorService.submit(task);
+                        futures.add(task.partResult);
                     } else {
-                        // calling code has specified *not* to verify existing parts found in the target, so we will
-                        // trust the existing part ETag
-                        log.debug("verifyPartsFoundInTarget is false; not verifying existing part data for partNumber {} (ETag: {})",
-                                partNumber, existingMpuParts.get(partNumber).getETag());
-                        resumeContext.getUploadedParts().put(partNumber, new MultipartPartETag(partNumber, existingMpuParts.get(partNumber).getETag()));
+                        futures.add(executorService.submit(new UploadPartTask(resumeContext.getUploadId(), partNumber, offset, length)));
                     }
-
-                    // no existing part to use, so upload this part
-                } else {
-                    futures.add(executorService.submit(new UploadPartTask(resumeContext.getUploadId(), partNumber, offset, length)));
                 }
             }
 
             // wait for threads to finish and gather parts
             for (Future<MultipartPartETag> future : futures) {
                 try {
-                    resumeContext.getUploadedParts().put(future.get().getPartNumber(), future.get());
+                    MultipartPartETag partETag = speculativeTasks.isEmpty() ? future.get() : awaitPart(future, speculativeTasks);
+                    resumeContext.getUploadedParts().put(partETag.getPartNumber(), partETag);
+                } catch (CancellationException e) {
+                    // the part was cancelled by abort() - cancelled tasks will just be ignored
                 } catch (ExecutionException e) { // unfortunately, we can't just catch CancellationException here
                     // get the root cause
                     Throwable t = e;
@@ -448,6 +669,7 @@ public class LargeFileUploader implements Runnable, ProgressListener {
                 CompleteMultipartUploadResult result = completeMpu(resumeContext.getUploadId(), new TreeSet<>(resumeContext.getUploadedParts().values()));
                 eTag = result.getRawETag();
                 versionId = result.getVersionId();
+                deleteJournal();
             }
 
         } catch (Exception e) {
@@ -458,6 +680,7 @@ public class LargeFileUploader implements Runnable, ProgressListener {
                     abortMpu(resumeContext.getUploadId());
                     resumeContext.setUploadId(null);
                     resumeContext.setUploadedParts(null);
+                    deleteJournal();
                 }
             } catch (Throwable t) {
                 log.warn("could not abort upload after failure", t);
@@ -466,29 +689,163 @@ public class LargeFileUploader implements Runnable, ProgressListener {
             throw new RuntimeException("error during upload", e);
         } finally {
             active.set(false);
+            partFutures = null;
 
             // make sure all spawned threads are shut down
             if (!externalExecutorService) executorService.shutdownNow();
 
             // make sure we close the input stream if necessary
-            if (stream != null && closeStream) {
+            closeSource();
+
+            closeJournal();
+        }
+    }
+
+    /*
+     * shutdownNow() drops parts that have not started, and nothing completes a dropped CompletableFuture task, so
+     * cancel them all (parts that already finished are unaffected)
+     */
+    private void cancelPartFutures() {
+        List<Future<MultipartPartETag>> futures = partFutures;
+        if (futures == null) return;
+        synchronized (futures) {
+            for (Future<MultipartPartETag> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /*
+     * returns the file backing the source, if there is one (used to identify the source in the journal)
+     */
+    private File getSourceFile() {
+        if (multipartSource instanceof LargeFileMultipartChannelSource)
+            return ((LargeFileMultipartChannelSource) multipartSource).getFile();
+        return null;
+    }
+
+    private void loadJournal() {
+        journal = new LargeFileUploadJournal(journalFile);
+        try {
+            // if calling code provided a resume context, that takes precedence (the journal will be restarted)
+            if (resumeContext == null && journal.load()) {
+                File sourceFile = getSourceFile();
+                if (!journal.matchesSource(sourceFile.getAbsolutePath(), fullSize, sourceFile.lastModified()))
+                    throw new IllegalArgumentException("journal " + journalFile.getPath() + " does not match the source data");
+
+                log.info("resuming uploadId {} from journal {} ({} parts complete)",
+                        journal.getUploadId(), journalFile.getPath(), journal.getParts().size());
+                // parts must line up with the journaled upload
+                partSize = journal.getPartSize();
+                resumeContext = new LargeFileUploaderResumeContext().withUploadId(journal.getUploadId())
+                        .withUploadedParts(journal.getParts());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("could not read journal " + journalFile.getPath(), e);
+        }
+    }
+
+    private void startJournal() {
+        File sourceFile = getSourceFile();
+        try {
+            journal.start(resumeContext.getUploadId(), partSize,
+                    sourceFile.getAbsolutePath(), fullSize, sourceFile.lastModified());
+            for (MultipartPartETag partETag : resumeContext.getUploadedParts().values()) {
+                journal.partCompleted(partETag);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("could not write journal " + journalFile.getPath(), e);
+        }
+    }
+
+    /*
+     * a part missing from the journal will simply be uploaded again on resume, so a failed write is not fatal
+     */
+    private void journalPart(MultipartPartETag partETag) {
+        if (journal == null) return;
+        try {
+            journal.partCompleted(partETag);
+        } catch (IOException | RuntimeException e) {
+            log.warn("could not record partNumber " + partETag.getPartNumber() + " in journal", e);
+        }
+    }
+
+    private void deleteJournal() {
+        if (journal == null) return;
+        try {
+            journal.delete();
+        } catch (IOException e) {
+            log.warn("could not delete journal " + journalFile.getPath(), e);
+        }
+    }
+
+    private void closeJournal() {
+        if (journal == null) return;
+        try {
+            // if the upload was aborted, the journal is no longer useful
+            if (resumeContext == null || resumeContext.getUploadId() == null) journal.delete();
+            else journal.close();
+        } catch (IOException e) {
+            log.warn("could not close journal " + journalFile.getPath(), e);
+        }
+    }
+
+    /*
+     * submits parts one at a time as the controller allows, sizing each part when it is submitted
+     */
+    private void submitAdaptiveParts(List<Future<MultipartPartETag>> futures) throws InterruptedException {
+        AtomicBoolean partFailed = new AtomicBoolean(false);
+        long minPartSize = Math.max(getMinPartSize(), fullSize / MAX_PARTS + 1);
+        transferController.start(threads, partSize);
+
+        long offset = 0;
+        for (int partNumber = 1; offset < fullSize; partNumber++) {
+            transferController.acquireSlot();
+
+            // stop submitting parts if we were paused/aborted, or a part failed
+            if (!active.get() || partFailed.get()) {
+                transferController.releaseSlot();
+                break;
+            }
+
+            long remaining = fullSize - offset;
+            long length = Math.max(transferController.getPartSize(), minPartSize);
+            // make sure the remaining data will fit within the part limit
+            length = Math.max(length, (remaining - 1) / (MAX_PARTS - partNumber + 1) + 1);
+            length = Math.min(length, remaining);
+
+            UploadPartTask task = new UploadPartTask(resumeContext.getUploadId(), partNumber, offset, length);
+            long partLength = length;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                long startTime = System.nanoTime();
                 try {
-                    stream.close();
-                } catch (Throwable t) {
-                    log.warn("could not close stream", t);
+                    MultipartPartETag partETag = task.call();
+                    transferController.partCompleted(partLength, System.nanoTime() - startTime);
+                    return partETag;
+                } catch (RuntimeException e) {
+                    if (!(e instanceof CancellationException)) {
+                        partFailed.set(true);
+                        transferController.partFailed();
+                    }
+                    throw e;
+                } finally {
+                    transferController.releaseSlot();
                 }
-            }
+            }, executorService));
+
+            offset += length;
         }
+        log.debug("bucket {} key {} adaptive upload settled on {}", bucket, key, transferController);
     }
 
-    private Function<Throwable, ? extends MultipartPartETag> partMismatchHandler(String uploadId, int partNumber, long offset, long length) {
+    private Function<Throwable, ? extends MultipartPartETag> partMismatchHandler(String uploadId, int partNumber, long offset, long length, byte[] buffer) {
         return throwable -> {
             // peel off the execution exception
             if (throwable instanceof CompletionException) throwable = throwable.getCause();
             if (resumeContext.isOverwriteMismatchedParts() && throwable instanceof PartMismatchException) {
                 log.warn(throwable.getMessage()); // log details about the part that was mismatched
                 log.info("overwriting partNumber {} due to ETag mismatch", partNumber);
-                return new UploadPartTask(uploadId, partNumber, offset, length).call();
+                return new UploadPartTask(uploadId, partNumber, offset, length, buffer).call();
             } else if (throwable instanceof RuntimeException) {
                 throw (RuntimeException) throwable;
             } else throw new RuntimeException(throwable);
@@ -505,6 +862,9 @@ public class LargeFileUploader implements Runnable, ProgressListener {
         request.setCannedAcl(cannedAcl);
         s3Client.putObject(request);
 
+        PartBufferPool bufferPool = isStreamReadAhead() ? new PartBufferPool(partSize, streamBufferSize) : null;
+        AtomicBoolean readAheadFailed = new AtomicBoolean(false);
+
         List<Future<String>> futures = new ArrayList<>();
         try {
             // submit all upload tasks
@@ -512,7 +872,15 @@ public class LargeFileUploader implements Runnable, ProgressListener {
             while (offset < fullSize) {
                 if (offset + length > fullSize) length = fullSize - offset;
 
-                futures.add(executorService.submit(new PutObjectTask(offset, length)));
+                if (bufferPool != null) {
+                    if (readAheadFailed.get()) break;
+                    byte[] buffer = readAheadPart(bufferPool, length);
+                    PutObjectTask task = new PutObjectTask(offset, length, buffer);
+                    futures.add(releaseWhenComplete(CompletableFuture.supplyAsync(task::call, executorService),
+                            buffer, bufferPool, readAheadFailed));
+                } else {
+                    futures.add(executorService.submit(new PutObjectTask(offset, length)));
+                }
 
                 offset += length;
             }
@@ -536,13 +904,7 @@ public class LargeFileUploader implements Runnable, ProgressListener {
             if (!externalExecutorService) executorService.shutdown();
 
             // make sure we close the input stream if necessary
-            if (stream != null && closeStream) {
-                try {
-                    stream.close();
-                } catch (Throwable t) {
-                    log.warn("could not close stream", t);
-                }
-            }
+            closeSource();
         }
     }
 
@@ -562,9 +924,14 @@ public class LargeFileUploader implements Runnable, ProgressListener {
             // If resuming from raw stream, make sure skipped parts are consumed from source stream
             if (resumeContext != null) resumeContext.setVerifyPartsFoundInTarget(true);
 
-            // must read stream sequentially
-            executorService = null;
-            threads = 1;
+            // must read stream sequentially (unless reading ahead into buffers)
+            if (streamBufferSize <= 0) {
+                if (externalExecutorService) {
+                    executorService = null;
+                    externalExecutorService = false;
+                }
+                threads = 1;
+            }
         } else {
             throw new IllegalArgumentException("must specify a file, stream, or multipartSource to read");
         }
@@ -572,6 +939,17 @@ public class LargeFileUploader implements Runnable, ProgressListener {
         // make sure content-length isn't set
         if (objectMetadata != null) objectMetadata.setContentLength(null);
 
+        if (journalFile != null) {
+            if (stream != null)
+                throw new UnsupportedOperationException("a journal is not supported for stream sources");
+            if (transferController != null)
+                throw new UnsupportedOperationException("a journal is not supported for adaptive transfers");
+            // without a file identity, a journal would match any other source of the same size
+            if (getSourceFile() == null)
+                throw new UnsupportedOperationException("a journal is only supported for file sources");
+            if (journal == null) loadJournal();
+        }
+
         long minPartSize = Math.max(getMinPartSize(), fullSize / MAX_PARTS + 1);
         log.debug(String.format("minimum part size calculated as %,dk", minPartSize / 1024));
 
@@ -582,6 +960,18 @@ public class LargeFileUploader implements Runnable, ProgressListener {
             partSize = minPartSize;
         }
 
+        if (isStreamReadAhead() && partSize > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(String.format("part size (%,d) is too large to buffer from a stream", partSize));
+        }
+
+        if (transferController != null) {
+            if (stream != null)
+                throw new UnsupportedOperationException("adaptive transfers are not supported for stream sources");
+            // part boundaries vary between runs, so existing parts cannot be matched
+            if (resumeContext != null)
+                throw new UnsupportedOperationException("adaptive transfers cannot be resumed");
+        }
+
         if (resumeContext != null) {
             // we can only resume an MPU if the size of the source is above the MPU threshold
             if (fullSize < mpuThreshold) {
@@ -594,11 +984,10 @@ public class LargeFileUploader implements Runnable, ProgressListener {
             }
         }
 
-        // set up thread pool
+        // set up thread pool (note: this method may be called more than once, so only create a pool if we need one)
         if (executorService == null) {
-            executorService = Executors.newFixedThreadPool(threads);
-        } else {
-            externalExecutorService = true;
+            int poolSize = transferController != null ? transferController.getMaxConcurrency() : threads;
+            executorService = useVirtualThreads ? VirtualThreadSupport.newBoundedExecutor(poolSize) : Executors.newFixedThreadPool(poolSize);
         }
     }
 
@@ -672,6 +1061,11 @@ public class LargeFileUploader implements Runnable, ProgressListener {
         return closeStream;
     }
 
+    /**
+     * Specifies whether the source stream is closed after the upload. If the source is a
+     * {@link LargeFileMultipartSource} that implements {@link Closeable} (i.e. {@link LargeFileMultipartChannelSource}),
+     * the source will be closed instead. Default is true
+     */
     public void setCloseStream(boolean closeStream) {
         this.closeStream = closeStream;
     }
@@ -714,16 +1108,96 @@ public class LargeFileUploader implements Runnable, ProgressListener {
         this.threads = threads;
     }
 
+    public long getStreamBufferSize() {
+        return streamBufferSize;
+    }
+
+    /**
+     * When uploading from a stream, sets the maximum amount of memory (in bytes) used to buffer parts that are read
+     * ahead of their upload. A single thread reads the stream in order, filling part-sized buffers, and the buffered
+     * parts are uploaded in parallel (up to <code>threads</code> at a time). At least one buffer is always used, so
+     * the effective limit is never less than the part size. Default is 0 (no read-ahead), in which case stream
+     * uploads are single-threaded.
+     */
+    public void setStreamBufferSize(long streamBufferSize) {
+        this.streamBufferSize = streamBufferSize;
+    }
+
+    public AdaptiveTransferController getTransferController() {
+        return transferController;
+    }
+
+    /**
+     * Sets a controller that adjusts concurrency and part size during a multipart upload, based on the observed
+     * throughput of each part. The configured <code>threads</code> and <code>partSize</code> are used as starting
+     * values (unless the controller specifies its own), and the controller will report the values it settled on
+     * after the upload. Not supported for stream sources or when resuming an upload. Default is null (fixed part
+     * size and concurrency)
+     *
+     * @see AdaptiveTransferController
+     */
+    public void setTransferController(AdaptiveTransferController transferController) {
+        this.transferController = transferController;
+    }
+
+    public StragglerDetector getStragglerDetector() {
+        return stragglerDetector;
+    }
+
+    /**
+     * Sets a detector that finds straggling parts during a multipart upload. Once most parts are complete, a part
+     * that runs well beyond the median part time is uploaded again in parallel (the smart client will normally send
+     * the new request to a different node), and whichever attempt finishes first is used to complete the upload.
+     * Duplicate attempts transfer extra data, which is included in transfer statistics (but not in progress). Only supported
+     * for file and multipart sources, and not used with a {@link #setTransferController(AdaptiveTransferController)
+     * transfer controller}. Default is null (no speculative uploads)
+     *
+     * @see StragglerDetector
+     */
+    public void setStragglerDetector(StragglerDetector stragglerDetector) {
+        this.stragglerDetector = stragglerDetector;
+    }
+
+    public BandwidthLimiter getBandwidthLimiter() {
+        return bandwidthLimiter;
+    }
+
+    /**
+     * Sets a bandwidth limiter for this upload. Share the same limiter between transfers to limit their combined
+     * rate. If not set, the limiter configured in the client's {@link S3Config#setBandwidthLimiter(BandwidthLimiter)
+     * S3Config} (if any) is used
+     */
+    public void setBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+        this.bandwidthLimiter = bandwidthLimiter;
+    }
+
+    public boolean isUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+    /**
+     * Set to true to run part uploads on virtual threads when the runtime supports them (Java 21+). The number of
+     * parts running at once is still limited by <code>threads</code>. On older runtimes, a pool of platform
+     * threads is used. This does not apply if you provide an executor service. Default is false
+     *
+     * @see VirtualThreadSupport
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
     public ExecutorService getExecutorService() {
         return executorService;
     }
 
     /**
      * Allows for providing a custom thread executor (i.e. for custom thread factories). Note that if
-     * you set a custom executor service, the <code>threads</code> property will be ignored.
+     * you set a custom executor service, the <code>threads</code> property will be ignored. To share a global limit on
+     * concurrent parts between transfers, use {@link TransferScheduler#newTransferExecutor()}.
      */
     public void setExecutorService(ExecutorService executorService) {
         this.executorService = executorService;
+        this.externalExecutorService = executorService != null;
     }
 
     public ProgressListener getProgressListener() {
@@ -734,6 +1208,28 @@ public class LargeFileUploader implements Runnable, ProgressListener {
         this.progressListener = progressListener;
     }
 
+    public PartTransferListener getPartTransferListener() {
+        return partTransferListener;
+    }
+
+    /**
+     * Sets a listener that is notified with timing, host and retry details as each part completes or fails. These
+     * details are also rolled up in {@link #getTransferStatistics()}
+     *
+     * @see PartTransferMetrics
+     */
+    public void setPartTransferListener(PartTransferListener partTransferListener) {
+        this.partTransferListener = partTransferListener;
+    }
+
+    /**
+     * Returns statistics for the parts transferred so far by this instance (parts skipped when resuming are not
+     * included)
+     */
+    public TransferStatistics getTransferStatistics() {
+        return transferStatistics;
+    }
+
     /**
      * During an upload operation, the <code>resumeContext</code> is kept up-to-date with the uploadId and list of
      * uploaded parts.
@@ -758,6 +1254,24 @@ public class LargeFileUploader implements Runnable, ProgressListener {
         this.resumeContext = resumeContext;
     }
 
+    public File getJournalFile() {
+        return journalFile;
+    }
+
+    /**
+     * Specifies a file used to journal the state of a multipart upload as each part completes (see
+     * {@link LargeFileUploadJournal}). If the file already contains a journal for the same source (path, size and
+     * modification time), the upload is resumed from it, trusting the journaled parts, without listing the upload
+     * parts or re-reading any source data. The journal is deleted when the upload completes or is aborted.
+     * Only supported for file sources (a {@link File} or {@link LargeFileMultipartChannelSource}), and not for
+     * adaptive transfers. If a resume context is also provided, it takes precedence and the journal is restarted.
+     *
+     * @throws IllegalArgumentException if the journal does not match the source
+     */
+    public void setJournalFile(File journalFile) {
+        this.journalFile = journalFile;
+    }
+
     public boolean isAbortMpuOnFailure() {
         return abortMpuOnFailure;
     }
@@ -773,6 +1287,34 @@ public class LargeFileUploader implements Runnable, ProgressListener {
         this.abortMpuOnFailure = abortMpuOnFailure;
     }
 
+    public int getPartRetryLimit() {
+        return partRetryLimit;
+    }
+
+    /**
+     * Sets the number of times a failed part is retried by reopening it from the source. The client's retries (see
+     * {@link S3Config#setRetryLimit(int)}) can only rewind a part stream that supports mark/reset, which file parts do
+     * not, so without this a single transient error fails the upload. Parts are reopened from the
+     * {@link LargeFileMultipartSource} (or the read-ahead buffer of a stream upload), so nothing extra is buffered.
+     * Parts read in series from a stream (with no stream buffer) cannot be reopened and are not retried. Only 50x
+     * errors (except 501) and I/O errors are retried. Set to 0 to disable. Default is {@link #DEFAULT_PART_RETRY_LIMIT}
+     */
+    public void setPartRetryLimit(int partRetryLimit) {
+        this.partRetryLimit = partRetryLimit;
+    }
+
+    public long getInitialPartRetryDelay() {
+        return initialPartRetryDelay;
+    }
+
+    /**
+     * Sets the delay (in milliseconds) before a failed part is first retried. The delay doubles for each retry of the
+     * same part. Default is {@link #DEFAULT_INITIAL_PART_RETRY_DELAY}
+     */
+    public void setInitialPartRetryDelay(long initialPartRetryDelay) {
+        this.initialPartRetryDelay = initialPartRetryDelay;
+    }
+
     public LargeFileUploader withObjectMetadata(S3ObjectMetadata objectMetadata) {
         setObjectMetadata(objectMetadata);
         return this;
@@ -808,6 +1350,46 @@ public class LargeFileUploader implements Runnable, ProgressListener {
         return this;
     }
 
+    /**
+     * @see #setStreamBufferSize(long)
+     */
+    public LargeFileUploader withStreamBufferSize(long streamBufferSize) {
+        setStreamBufferSize(streamBufferSize);
+        return this;
+    }
+
+    /**
+     * @see #setTransferController(AdaptiveTransferController)
+     */
+    public LargeFileUploader withTransferController(AdaptiveTransferController transferController) {
+        setTransferController(transferController);
+        return this;
+    }
+
+    /**
+     * @see #setStragglerDetector(StragglerDetector)
+     */
+    public LargeFileUploader withStragglerDetector(StragglerDetector stragglerDetector) {
+        setStragglerDetector(stragglerDetector);
+        return this;
+    }
+
+    /**
+     * @see #setUseVirtualThreads(boolean)
+     */
+    public LargeFileUploader withUseVirtualThreads(boolean useVirtualThreads) {
+        setUseVirtualThreads(useVirtualThreads);
+        return this;
+    }
+
+    /**
+     * @see #setBandwidthLimiter(BandwidthLimiter)
+     */
+    public LargeFileUploader withBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+        setBandwidthLimiter(bandwidthLimiter);
+        return this;
+    }
+
     public LargeFileUploader withExecutorService(ExecutorService executorService) {
         setExecutorService(executorService);
         return this;
@@ -818,6 +1400,14 @@ public class LargeFileUploader implements Runnable, ProgressListener {
         return this;
     }
 
+    /**
+     * @see #setPartTransferListener(PartTransferListener)
+     */
+    public LargeFileUploader withPartTransferListener(PartTransferListener partTransferListener) {
+        setPartTransferListener(partTransferListener);
+        return this;
+    }
+
     /**
      * @see #setResumeContext(LargeFileUploaderResumeContext)
      */
@@ -826,6 +1416,14 @@ public class LargeFileUploader implements Runnable, ProgressListener {
         return this;
     }
 
+    /**
+     * @see #setJournalFile(File)
+     */
+    public LargeFileUploader withJournalFile(File journalFile) {
+        setJournalFile(journalFile);
+        return this;
+    }
+
     /**
      * @see #setAbortMpuOnFailure(boolean)
      */
@@ -834,31 +1432,157 @@ public class LargeFileUploader implements Runnable, ProgressListener {
         return this;
     }
 
+    public LargeFileUploader withPartRetryLimit(int partRetryLimit) {
+        setPartRetryLimit(partRetryLimit);
+        return this;
+    }
+
+    public LargeFileUploader withInitialPartRetryDelay(long initialPartRetryDelay) {
+        setInitialPartRetryDelay(initialPartRetryDelay);
+        return this;
+    }
+
+    private static void sleepBeforeRetry(long retryDelay) {
+        try {
+            Thread.sleep(retryDelay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("interrupted while waiting to retry part");
+        }
+    }
+
     private class UploadPartTask implements Callable<MultipartPartETag> {
         private final String uploadId;
         private final int partNumber;
         private final long offset;
         private final long length;
+        private final byte[] buffer;
+        private final PartTransferMetrics partMetrics;
+        // shared by all attempts of a part that may be speculatively re-uploaded
+        private CompletableFuture<MultipartPartETag> partResult;
+        private AtomicInteger pendingAttempts;
 
         public UploadPartTask(String uploadId, int partNumber, long offset, long length) {
+            this(uploadId, partNumber, offset, length, null);
+        }
+
+        public UploadPartTask(String uploadId, int partNumber, long offset, long length, byte[] buffer) {
             this.uploadId = uploadId;
             this.partNumber = partNumber;
             this.offset = offset;
             this.length = length;
+            this.buffer = buffer;
+            this.partMetrics = new PartTransferMetrics(partNumber, offset, length);
+        }
+
+        /*
+         * makes this the first attempt of a part that may be speculatively re-uploaded; the result of the part (from
+         * whichever attempt finishes first) is available from partResult
+         */
+        UploadPartTask speculative() {
+            partResult = new CompletableFuture<>();
+            pendingAttempts = new AtomicInteger(1);
+            return this;
+        }
+
+        /*
+         * creates another attempt of the same part, which will race this one
+         */
+        UploadPartTask duplicate() {
+            UploadPartTask duplicate = new UploadPartTask(uploadId, partNumber, offset, length, buffer);
+            duplicate.partResult = partResult;
+            duplicate.pendingAttempts = pendingAttempts;
+            pendingAttempts.incrementAndGet();
+            return duplicate;
+        }
+
+        /*
+         * true if another attempt of this part already finished
+         */
+        private boolean isSettled() {
+            return partResult != null && partResult.isDone();
+        }
+
+        /*
+         * stops sending data as soon as another attempt of this part finishes
+         */
+        private InputStream abandonWhenSettled(InputStream is) {
+            if (partResult == null) return is;
+            return new FilterInputStream(is) {
+                @Override
+                public int read() throws IOException {
+                    if (isSettled()) throw new IOException("part " + partNumber + " was uploaded by another attempt");
+                    return super.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (isSettled()) throw new IOException("part " + partNumber + " was uploaded by another attempt");
+                    return super.read(b, off, len);
+                }
+            };
         }
 
         @Override
         public MultipartPartETag call() {
+            if (partResult == null) return upload();
+            try {
+                return upload();
+            } catch (RuntimeException e) {
+                // the part fails only when all of its attempts have failed
+                if (pendingAttempts.decrementAndGet() == 0 && partResult.completeExceptionally(new CompletionException(e)))
+                    stragglerDetector.partFailed(partNumber);
+                throw e;
+            }
+        }
+
+        private MultipartPartETag upload() {
             if (!active.get()) {
                 // we were paused or aborted, so should not start any more tasks
                 throw new CancellationException();
+            } else if (isSettled()) {
+                throw new CancellationException("part " + partNumber + " was uploaded by another attempt");
             } else {
                 log.debug("uploading {}/{}, uploadId: {}, partNumber {} (offset: {}, length: {})",
                         bucket, key, uploadId, partNumber, offset, length);
-                try (InputStream is = monitorStream(getSourcePartDataStream(offset, length))) {
-                    return uploadPart(uploadId, partNumber, is, length);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
+                partMetrics.started();
+                long startNanos = System.nanoTime();
+                if (partResult != null) stragglerDetector.partStarted(partNumber);
+                for (int retries = 0; ; retries++) {
+                    long attemptStartBytes = partMetrics.getBytesTransferred();
+                    try (InputStream is = abandonWhenSettled(monitorStream(getSourcePartDataStream(offset, length, buffer), partMetrics))) {
+                        MultipartPartETag partETag = uploadPart(uploadId, partNumber, is, length, partMetrics);
+                        if (isSettled()) {
+                            log.debug("part {} of {}/{} was already uploaded by another attempt", partNumber, bucket, key);
+                            discardProgress(partMetrics.getBytesTransferred() - attemptStartBytes);
+                            return partETag;
+                        }
+                        partMetrics.completed(partETag.getETag());
+                        recordPart(partMetrics);
+                        journalPart(partETag);
+                        if (partResult != null && partResult.complete(partETag))
+                            stragglerDetector.partCompleted(partNumber, System.nanoTime() - startNanos);
+                        return partETag;
+                    } catch (IOException | RuntimeException e) {
+                        // this attempt's data will be sent again (or was sent by another attempt)
+                        discardProgress(partMetrics.getBytesTransferred() - attemptStartBytes);
+                        if (isSettled()) {
+                            log.debug("abandoned attempt of part {} of {}/{}; another attempt finished first", partNumber, bucket, key);
+                            throw new CancellationException("part " + partNumber + " was uploaded by another attempt");
+                        }
+                        if (retries < partRetryLimit && active.get() && isRetryable(e) && isPartReopenable(buffer)) {
+                            long retryDelay = initialPartRetryDelay * (1L << retries);
+                            log.info("part {} of {}/{} failed [{}], reopening and retrying in {}ms ({} of {})...",
+                                    partNumber, bucket, key, e, retryDelay, retries + 1, partRetryLimit);
+                            partMetrics.resumed();
+                            if (retryDelay > 0) sleepBeforeRetry(retryDelay);
+                            continue;
+                        }
+                        partMetrics.failed(e);
+                        recordPart(partMetrics);
+                        if (e instanceof RuntimeException) throw (RuntimeException) e;
+                        throw new RuntimeException(e);
+                    }
                 }
             }
         }
@@ -867,21 +1591,38 @@ public class LargeFileUploader implements Runnable, ProgressListener {
     protected class PutObjectTask implements Callable<String> {
         private final long offset;
         private final long length;
+        private final byte[] buffer;
+        private final PartTransferMetrics partMetrics;
 
         public PutObjectTask(long offset, long length) {
+            this(offset, length, null);
+        }
+
+        public PutObjectTask(long offset, long length, byte[] buffer) {
             this.offset = offset;
             this.length = length;
+            this.buffer = buffer;
+            // byte-range parts are all the same size (except the last one)
+            this.partMetrics = new PartTransferMetrics((int) (offset / partSize) + 1, offset, length);
         }
 
         @Override
         public String call() {
-            try (InputStream is = monitorStream(getSourcePartDataStream(offset, length))) {
+            partMetrics.started();
+            try (InputStream is = monitorStream(getSourcePartDataStream(offset, length, buffer), partMetrics)) {
                 Range range = Range.fromOffsetLength(offset, length);
 
                 PutObjectRequest request = new PutObjectRequest(bucket, key, is).withRange(range);
-
-                return s3Client.putObject(request).getETag();
-            } catch (IOException e) {
+                request.property(PartTransferMetrics.PROP_PART_METRICS, partMetrics);
+
+                String eTag = s3Client.putObject(request).getETag();
+                partMetrics.completed(eTag);
+                recordPart(partMetrics);
+                return eTag;
+            } catch (IOException | RuntimeException e) {
+                partMetrics.failed(e);
+                recordPart(partMetrics);
+                if (e instanceof RuntimeException) throw (RuntimeException) e;
                 throw new RuntimeException(e);
             }
         }
@@ -891,12 +1632,18 @@ public class LargeFileUploader implements Runnable, ProgressListener {
         private final int partNumber;
         private final long offset, length;
         private final String uploadedETag;
+        private final byte[] buffer;
 
         public VerifySourcePartTask(int partNumber, long offset, long length, String uploadedETag) {
+            this(partNumber, offset, length, uploadedETag, null);
+        }
+
+        public VerifySourcePartTask(int partNumber, long offset, long length, String uploadedETag, byte[] buffer) {
             this.partNumber = partNumber;
             this.offset = offset;
             this.length = length;
             this.uploadedETag = uploadedETag;
+            this.buffer = buffer;
         }
 
         @Override
@@ -906,16 +1653,54 @@ public class LargeFileUploader implements Runnable, ProgressListener {
                 throw new CancellationException();
             } else {
                 log.debug("reading existing partNumber {} (offset: {}, length: {}) from source to verify data", partNumber, offset, length);
-                try (InputStream is = getSourcePartDataStream(offset, length)) {
+                try (InputStream is = getSourcePartDataStream(offset, length, buffer)) {
                     String sourceETag = DigestUtils.md5Hex(is);
                     if (!sourceETag.equals(uploadedETag)) {
                         throw new PartMismatchException(partNumber, sourceETag, uploadedETag);
                     }
-                    return new MultipartPartETag(partNumber, sourceETag);
+                    MultipartPartETag partETag = new MultipartPartETag(partNumber, sourceETag);
+                    journalPart(partETag);
+                    return partETag;
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
             }
         }
     }
+
+    /**
+     * A bounded pool of part buffers used to read ahead from a stream source. Buffers are allocated lazily, up to
+     * <code>maxMemory / partSize</code> buffers (minimum 1).
+     */
+    private static class PartBufferPool {
+        private final int bufferSize;
+        private final int maxBuffers;
+        private final BlockingQueue<byte[]> freeBuffers;
+        private int allocatedBuffers = 0;
+
+        PartBufferPool(long partSize, long maxMemory) {
+            this.bufferSize = (int) partSize;
+            this.maxBuffers = (int) Math.max(1, Math.min(maxMemory / partSize, MAX_PARTS));
+            this.freeBuffers = new ArrayBlockingQueue<>(maxBuffers);
+        }
+
+        /**
+         * Returns a free buffer, or null if none became available within the timeout
+         */
+        byte[] acquire(long timeout, TimeUnit timeUnit) throws InterruptedException {
+            byte[] buffer = freeBuffers.poll();
+            if (buffer != null) return buffer;
+            synchronized (this) {
+                if (allocatedBuffers < maxBuffers) {
+                    allocatedBuffers++;
+                    return new byte[bufferSize];
+                }
+            }
+            return freeBuffers.poll(timeout, timeUnit);
+        }
+
+        void release(byte[] buffer) {
+            if (buffer != null) freeBuffers.offer(buffer);
+        }
+    }
 }
@@ -0,0 +1,705 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.object.Range;
+import com.emc.object.s3.bean.*;
+import com.emc.object.s3.lfu.LargeFileUpload;
+import com.emc.object.s3.lfu.LargeFileUploaderResumeContext;
+import com.emc.object.s3.request.*;
+import com.emc.object.util.VirtualThreadSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Convenience class to facilitate server-side copy of large objects. The source object is split into ranges that are
+ * copied in parallel (using {@link S3Client#copyPart(CopyPartRequest)}) into a multipart upload, which is then
+ * completed. Objects smaller than <code>mpuThreshold</code> are copied with a single
+ * {@link S3Client#copyObject(CopyObjectRequest)}.
+ * <p>
+ * Like {@link LargeFileUploader}, a copy can be paused and resumed using a {@link LargeFileUploaderResumeContext}, and
+ * the MPU is aborted on failure (unless disabled). Because part data is never read by the client, existing parts that
+ * are listed from the target cannot be verified; if <code>verifyPartsFoundInTarget</code> is true (the default) in the
+ * resume context, those parts are copied again, otherwise they are trusted as long as their size is correct.
+ * <p>
+ * Source metadata is copied to the target, unless <code>objectMetadata</code> is specified. Each part copy is
+ * conditional on the source ETag, so a source object that changes during the copy will cause the copy to fail.
+ */
+public class LargeObjectCopier implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(LargeObjectCopier.class);
+
+    public static final int DEFAULT_THREADS = 8;
+
+    public static final long DEFAULT_MPU_THRESHOLD = LargeFileUploader.DEFAULT_MPU_THRESHOLD;
+    public static final long MIN_PART_SIZE = LargeFileUploader.MIN_PART_SIZE;
+    public static final long DEFAULT_PART_SIZE = LargeFileUploader.DEFAULT_PART_SIZE;
+    public static final int MAX_PARTS = LargeFileUploader.MAX_PARTS;
+
+    private final S3Client s3Client;
+    private final String sourceBucket;
+    private final String sourceKey;
+    private final String bucket;
+    private final String key;
+
+    private String sourceVersionId;
+    private long sourceSize = -1;
+    private String sourceETag;
+    private S3ObjectMetadata sourceMetadata;
+    private final AtomicLong bytesCopied = new AtomicLong();
+    private String eTag;
+    private String versionId;
+
+    private S3ObjectMetadata objectMetadata;
+    private AccessControlList acl;
+    private CannedAcl cannedAcl;
+    private long mpuThreshold = DEFAULT_MPU_THRESHOLD;
+    private long partSize = DEFAULT_PART_SIZE;
+    private int threads = DEFAULT_THREADS;
+    private boolean useVirtualThreads = false;
+    private ExecutorService executorService;
+    private boolean externalExecutorService;
+    private PartTransferListener partTransferListener;
+    private final TransferStatistics transferStatistics = new TransferStatistics();
+    private final AtomicBoolean active = new AtomicBoolean(false);
+    // part futures of the current copy, so abort() can release anything waiting on them
+    private volatile List<Future<MultipartPartETag>> partFutures;
+
+    private LargeFileUploaderResumeContext resumeContext;
+    private boolean abortMpuOnFailure = true;
+
+    /**
+     * Creates a new LargeObjectCopier instance that will use <code>s3Client</code> to copy
+     * <code>sourceBucket/sourceKey</code> to <code>bucket/key</code>.
+     */
+    public LargeObjectCopier(S3Client s3Client, String sourceBucket, String sourceKey, String bucket, String key) {
+        this.s3Client = s3Client;
+        this.sourceBucket = sourceBucket;
+        this.sourceKey = sourceKey;
+        this.bucket = bucket;
+        this.key = key;
+    }
+
+    @Override
+    public void run() {
+        copy();
+    }
+
+    /**
+     * Asynchronous version of {@link #copy()}. The returned handle can be used to pause or abort the copy. Note that
+     * pausing will only work if the copy uses an MPU.
+     *
+     * @see #copy()
+     */
+    public LargeFileUpload copyAsync() {
+        // start a background thread
+        ExecutorService executor = useVirtualThreads ? VirtualThreadSupport.newBoundedExecutor(1) : Executors.newSingleThreadExecutor();
+        Future<?> future = executor.submit(this::copy);
+        executor.shutdown();
+
+        return new LargeFileUpload() {
+            @Override
+            public void waitForCompletion() {
+                try {
+                    future.get();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public void waitForCompletion(long timeout, TimeUnit timeoutUnit) throws TimeoutException {
+                try {
+                    future.get(timeout, timeoutUnit);
+                } catch (RuntimeException | TimeoutException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public LargeFileUploaderResumeContext pause() {
+                active.set(false); // all part copies that have not started yet should effectively become no-ops
+                waitForCompletion(); // only waits for parts that are currently copying
+                return resumeContext; // at this point, resumeContext should be accurate
+            }
+
+            @Override
+            public void abort() {
+                active.set(false); // all part copies that have not started yet should effectively become no-ops
+                if (resumeContext != null && resumeContext.getUploadId() != null) {
+                    abortMpu(resumeContext.getUploadId());
+                    resumeContext.setUploadId(null);
+                    resumeContext.setUploadedParts(null);
+                }
+                if (executorService != null) executorService.shutdownNow();
+                cancelPartFutures();
+            }
+
+            @Override
+            public TransferStatistics getTransferStatistics() {
+                return transferStatistics;
+            }
+        };
+    }
+
+    /**
+     * This method will automatically choose between MPU and single-copy operations based on a configured threshold.
+     * Note the default threshold is {@link #DEFAULT_MPU_THRESHOLD}.
+     */
+    public void copy() {
+        configure();
+
+        if (sourceSize >= mpuThreshold)
+            doMultipartCopy();
+        else
+            doSingleCopy();
+    }
+
+    public void doSingleCopy() {
+        configure();
+
+        CopyObjectRequest request = new CopyObjectRequest(sourceBucket, sourceKey, bucket, key)
+                .withSourceVersionId(sourceVersionId).withObjectMetadata(objectMetadata).withAcl(acl)
+                .withCannedAcl(cannedAcl);
+        request.setIfSourceMatch(sourceETag);
+        CopyObjectResult result = s3Client.copyObject(request);
+        eTag = result.getRawETag();
+        versionId = result.getVersionId();
+        bytesCopied.set(sourceSize);
+    }
+
+    public void doMultipartCopy() {
+        configure();
+
+        active.set(true);
+
+        // always maintain an accurate resume context in case of interruption
+        if (resumeContext == null) resumeContext = new LargeFileUploaderResumeContext();
+
+        // initiate MP upload if not resuming
+        if (resumeContext.getUploadId() == null) resumeContext.setUploadId(initMpu());
+
+        // if we are resuming and were *not* given a part list, list the parts now
+        if (resumeContext.getUploadedParts() == null) {
+            resumeContext.setUploadedParts(new HashMap<>());
+            if (!resumeContext.isVerifyPartsFoundInTarget())
+                resumeContext.getUploadedParts().putAll(listPartsForResume(resumeContext.getUploadId()));
+        }
+
+        List<Future<MultipartPartETag>> futures = Collections.synchronizedList(new ArrayList<>());
+        partFutures = futures;
+        try {
+            // submit all copy tasks
+            int lastPart = (int) ((sourceSize - 1) / partSize) + 1;
+            for (int partNumber = 1; partNumber <= lastPart; partNumber++) {
+                long offset = (partNumber - 1) * partSize;
+                long length = partSize;
+                if (offset + length > sourceSize) length = sourceSize - offset;
+
+                if (resumeContext.getUploadedParts().containsKey(partNumber)) {
+                    log.debug("bucket {} key {} partNumber {} already copied; skipping", bucket, key, partNumber);
+                    bytesCopied.addAndGet(length);
+                } else {
+                    futures.add(executorService.submit(new CopyPartTask(resumeContext.getUploadId(), partNumber, offset, length)));
+                }
+            }
+
+            // wait for threads to finish and gather parts
+            for (Future<MultipartPartETag> future : futures) {
+                try {
+                    MultipartPartETag partETag = future.get();
+                    resumeContext.getUploadedParts().put(partETag.getPartNumber(), partETag);
+                } catch (CancellationException e) {
+                    // the part was cancelled by abort() - cancelled tasks will just be ignored
+                } catch (ExecutionException e) {
+                    // get the root cause
+                    Throwable t = e;
+                    while (t.getCause() != null && t.getCause() != t) t = t.getCause();
+                    // CancellationException is only thrown when we are terminated early - cancelled tasks will just be ignored
+                    if (!(t instanceof CancellationException)) throw e;
+                }
+            }
+
+            // complete MP upload
+            if (active.get()) {
+                CompleteMultipartUploadRequest request = new CompleteMultipartUploadRequest(bucket, key, resumeContext.getUploadId())
+                        .withParts(new TreeSet<>(resumeContext.getUploadedParts().values()));
+                CompleteMultipartUploadResult result = s3Client.completeMultipartUpload(request);
+                eTag = result.getRawETag();
+                versionId = result.getVersionId();
+            }
+        } catch (Exception e) {
+            // abort MP upload
+            try {
+                if (abortMpuOnFailure) {
+                    abortMpu(resumeContext.getUploadId());
+                    resumeContext.setUploadId(null);
+                    resumeContext.setUploadedParts(null);
+                }
+            } catch (Throwable t) {
+                log.warn("could not abort copy after failure", t);
+            }
+            if (e instanceof RuntimeException) throw (RuntimeException) e;
+            throw new RuntimeException("error during copy", e);
+        } finally {
+            active.set(false);
+            partFutures = null;
+
+            // make sure all spawned threads are shut down
+            if (!externalExecutorService) executorService.shutdownNow();
+        }
+    }
+
+    /*
+     * parts dropped by shutdownNow() would otherwise never complete (parts that already finished are unaffected)
+     */
+    private void cancelPartFutures() {
+        List<Future<MultipartPartETag>> futures = partFutures;
+        if (futures == null) return;
+        synchronized (futures) {
+            for (Future<MultipartPartETag> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    protected String initMpu() {
+        InitiateMultipartUploadRequest request = new InitiateMultipartUploadRequest(bucket, key);
+        // MPUs do not copy source metadata, so we have to
+        request.setObjectMetadata(objectMetadata != null ? objectMetadata : copyableMetadata(sourceMetadata));
+        request.setAcl(acl);
+        request.setCannedAcl(cannedAcl);
+        return s3Client.initiateMultipartUpload(request).getUploadId();
+    }
+
+    /**
+     * If <code>partMetrics</code> is not null, it is passed to the client so it can record the host and retry count
+     */
+    protected MultipartPartETag copyPart(String uploadId, int partNumber, long offset, long length,
+                                         PartTransferMetrics partMetrics) {
+        CopyPartRequest request = new CopyPartRequest(sourceBucket, sourceKey, bucket, key, uploadId, partNumber)
+                .withSourceRange(Range.fromOffsetLength(offset, length));
+        request.setSourceVersionId(sourceVersionId);
+        request.setIfSourceMatch(sourceETag);
+        if (partMetrics != null) request.property(PartTransferMetrics.PROP_PART_METRICS, partMetrics);
+        CopyPartResult result = s3Client.copyPart(request);
+        return new MultipartPartETag(partNumber, result.getETag());
+    }
+
+    /*
+     * a misbehaving listener should not fail the copy
+     */
+    private void recordPart(PartTransferMetrics partMetrics) {
+        transferStatistics.partTransferred(partMetrics);
+        if (partTransferListener == null) return;
+        try {
+            partTransferListener.partTransferred(partMetrics);
+        } catch (RuntimeException e) {
+            log.warn("part transfer listener failed", e);
+        }
+    }
+
+    protected void abortMpu(String uploadId) {
+        s3Client.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId));
+    }
+
+    /*
+     * listed parts are only used if they are the right size (part data cannot be verified without reading it)
+     */
+    private Map<Integer, MultipartPartETag> listPartsForResume(String uploadId) {
+        Map<Integer, MultipartPartETag> parts = new HashMap<>();
+        int lastPart = (int) ((sourceSize - 1) / partSize) + 1;
+        long lastPartSize = sourceSize - ((lastPart - 1) * partSize);
+        ListPartsRequest request = new ListPartsRequest(bucket, key, uploadId);
+        ListPartsResult result = null;
+        do {
+            if (result != null) request.setMarker(result.getNextPartNumberMarker());
+            result = s3Client.listParts(request);
+            for (MultipartPart part : result.getParts()) {
+                long expectedSize = part.getPartNumber() == lastPart ? lastPartSize : partSize;
+                if (part.getPartNumber() <= lastPart && part.getSize() == expectedSize) {
+                    parts.put(part.getPartNumber(), new MultipartPartETag(part.getPartNumber(), part.getETag()));
+                } else {
+                    log.info("existing partNumber {} in uploadId {} does not match the expected size; it will be copied again",
+                            part.getPartNumber(), uploadId);
+                }
+            }
+        } while (result.isTruncated());
+        return parts;
+    }
+
+    /**
+     * This method should be idempotent
+     */
+    protected void configure() {
+        // get source size, ETag and metadata
+        if (sourceSize < 0) {
+            sourceMetadata = s3Client.getObjectMetadata(
+                    new GetObjectMetadataRequest(sourceBucket, sourceKey).withVersionId(sourceVersionId));
+            sourceSize = sourceMetadata.getContentLength();
+            sourceETag = sourceMetadata.getETag();
+        }
+
+        long minPartSize = Math.max(MIN_PART_SIZE, sourceSize / MAX_PARTS + 1);
+        if (partSize < minPartSize) {
+            log.warn(String.format("%,dk is below the minimum part size (%,dk). the minimum will be used instead",
+                    partSize / 1024, minPartSize / 1024));
+            partSize = minPartSize;
+        }
+
+        if (resumeContext != null) {
+            // we can only resume an MPU if the size of the source is above the MPU threshold
+            if (sourceSize < mpuThreshold) {
+                throw new UnsupportedOperationException("cannot resume MPU because the size of the source is below the MPU threshold");
+            }
+
+            // calling code must provide an uploadId to resume
+            if (resumeContext.getUploadId() == null) {
+                throw new IllegalArgumentException("must provide an uploadId to resume");
+            }
+        }
+
+        // set up thread pool (note: this method may be called more than once, so only create a pool if we need one)
+        if (executorService == null)
+            executorService = useVirtualThreads ? VirtualThreadSupport.newBoundedExecutor(threads) : Executors.newFixedThreadPool(threads);
+    }
+
+    private static S3ObjectMetadata copyableMetadata(S3ObjectMetadata sourceMetadata) {
+        S3ObjectMetadata metadata = new S3ObjectMetadata();
+        metadata.setCacheControl(sourceMetadata.getCacheControl());
+        metadata.setContentDisposition(sourceMetadata.getContentDisposition());
+        metadata.setContentEncoding(sourceMetadata.getContentEncoding());
+        metadata.setContentType(sourceMetadata.getContentType());
+        metadata.setHttpExpires(sourceMetadata.getHttpExpires());
+        metadata.setUserMetadata(sourceMetadata.getUserMetadata());
+        return metadata;
+    }
+
+    public S3Client getS3Client() {
+        return s3Client;
+    }
+
+    public String getSourceBucket() {
+        return sourceBucket;
+    }
+
+    public String getSourceKey() {
+        return sourceKey;
+    }
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * The size of the source object (available after the copy has started)
+     */
+    public long getSourceSize() {
+        return sourceSize;
+    }
+
+    /**
+     * The number of bytes copied so far (updated as each part completes)
+     */
+    public long getBytesCopied() {
+        return bytesCopied.get();
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public String getVersionId() {
+        return versionId;
+    }
+
+    public String getSourceVersionId() {
+        return sourceVersionId;
+    }
+
+    /**
+     * Sets the version of the source object to copy. Default is the latest version
+     */
+    public void setSourceVersionId(String sourceVersionId) {
+        this.sourceVersionId = sourceVersionId;
+    }
+
+    public S3ObjectMetadata getObjectMetadata() {
+        return objectMetadata;
+    }
+
+    /**
+     * Sets the metadata of the target object. If not set, the metadata of the source object is used
+     */
+    public void setObjectMetadata(S3ObjectMetadata objectMetadata) {
+        this.objectMetadata = objectMetadata;
+    }
+
+    public AccessControlList getAcl() {
+        return acl;
+    }
+
+    public void setAcl(AccessControlList acl) {
+        this.acl = acl;
+    }
+
+    public CannedAcl getCannedAcl() {
+        return cannedAcl;
+    }
+
+    public void setCannedAcl(CannedAcl cannedAcl) {
+        this.cannedAcl = cannedAcl;
+    }
+
+    public long getMpuThreshold() {
+        return mpuThreshold;
+    }
+
+    /**
+     * Sets the source size threshold above which a multipart copy is used, and below which a single copy request is
+     * used. This only applies when using the {@link #copy()} method. Default is {@link #DEFAULT_MPU_THRESHOLD}
+     */
+    public void setMpuThreshold(long mpuThreshold) {
+        this.mpuThreshold = mpuThreshold;
+    }
+
+    public long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * Sets the size of each part to copy. The minimum part size is {@link #MIN_PART_SIZE}, and will be increased if
+     * necessary to stay within {@link #MAX_PARTS}. Default is {@link #DEFAULT_PART_SIZE}
+     */
+    public void setPartSize(long partSize) {
+        this.partSize = partSize;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads to use for copying parts. <code>threads</code> parts will be copied in parallel.
+     * Default is {@link #DEFAULT_THREADS}
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public boolean isUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+    /**
+     * Set to true to run part copies on virtual threads when the runtime supports them (Java 21+). The number of
+     * parts running at once is still limited by <code>threads</code>. On older runtimes, a pool of platform
+     * threads is used. This does not apply if you provide an executor service. Default is false
+     *
+     * @see VirtualThreadSupport
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Allows for providing a custom thread executor (i.e. for custom thread factories). Note that if
+     * you set a custom executor service, the <code>threads</code> property will be ignored. To share a global limit on
+     * concurrent parts between transfers, use {@link TransferScheduler#newTransferExecutor()}.
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+        this.externalExecutorService = executorService != null;
+    }
+
+    /**
+     * During a copy operation, the <code>resumeContext</code> is kept up-to-date with the uploadId and list of
+     * copied parts.
+     */
+    public LargeFileUploaderResumeContext getResumeContext() {
+        return resumeContext;
+    }
+
+    /**
+     * Use when resuming an existing incomplete multipart copy. You *must* provide an uploadId to resume. Note that
+     * the part size must be the same as the original copy.
+     *
+     * @see LargeFileUploaderResumeContext
+     */
+    public void setResumeContext(LargeFileUploaderResumeContext resumeContext) {
+        this.resumeContext = resumeContext;
+    }
+
+    public boolean isAbortMpuOnFailure() {
+        return abortMpuOnFailure;
+    }
+
+    /**
+     * Whether to abort the MPU if the copy fails. Default is true. Set to false to keep copied parts so the copy can
+     * be resumed
+     */
+    public void setAbortMpuOnFailure(boolean abortMpuOnFailure) {
+        this.abortMpuOnFailure = abortMpuOnFailure;
+    }
+
+    public PartTransferListener getPartTransferListener() {
+        return partTransferListener;
+    }
+
+    /**
+     * Sets a listener that is notified with timing, host and retry details as each part copy completes or fails.
+     * These details are also rolled up in {@link #getTransferStatistics()}
+     *
+     * @see PartTransferMetrics
+     */
+    public void setPartTransferListener(PartTransferListener partTransferListener) {
+        this.partTransferListener = partTransferListener;
+    }
+
+    /**
+     * Returns statistics for the parts copied so far by this instance (empty for a single copy)
+     */
+    public TransferStatistics getTransferStatistics() {
+        return transferStatistics;
+    }
+
+    public LargeObjectCopier withSourceVersionId(String sourceVersionId) {
+        setSourceVersionId(sourceVersionId);
+        return this;
+    }
+
+    public LargeObjectCopier withObjectMetadata(S3ObjectMetadata objectMetadata) {
+        setObjectMetadata(objectMetadata);
+        return this;
+    }
+
+    public LargeObjectCopier withAcl(AccessControlList acl) {
+        setAcl(acl);
+        return this;
+    }
+
+    public LargeObjectCopier withCannedAcl(CannedAcl cannedAcl) {
+        setCannedAcl(cannedAcl);
+        return this;
+    }
+
+    public LargeObjectCopier withMpuThreshold(long mpuThreshold) {
+        setMpuThreshold(mpuThreshold);
+        return this;
+    }
+
+    public LargeObjectCopier withPartSize(long partSize) {
+        setPartSize(partSize);
+        return this;
+    }
+
+    public LargeObjectCopier withThreads(int threads) {
+        setThreads(threads);
+        return this;
+    }
+
+    public LargeObjectCopier withUseVirtualThreads(boolean useVirtualThreads) {
+        setUseVirtualThreads(useVirtualThreads);
+        return this;
+    }
+
+    public LargeObjectCopier withExecutorService(ExecutorService executorService) {
+        setExecutorService(executorService);
+        return this;
+    }
+
+    public LargeObjectCopier withResumeContext(LargeFileUploaderResumeContext resumeContext) {
+        setResumeContext(resumeContext);
+        return this;
+    }
+
+    public LargeObjectCopier withAbortMpuOnFailure(boolean abortMpuOnFailure) {
+        setAbortMpuOnFailure(abortMpuOnFailure);
+        return this;
+    }
+
+    public LargeObjectCopier withPartTransferListener(PartTransferListener partTransferListener) {
+        setPartTransferListener(partTransferListener);
+        return this;
+    }
+
+    private class CopyPartTask implements Callable<MultipartPartETag> {
+        private final String uploadId;
+        private final int partNumber;
+        private final long offset;
+        private final long length;
+        private final PartTransferMetrics partMetrics;
+
+        public CopyPartTask(String uploadId, int partNumber, long offset, long length) {
+            this.uploadId = uploadId;
+            this.partNumber = partNumber;
+            this.offset = offset;
+            this.length = length;
+            this.partMetrics = new PartTransferMetrics(partNumber, offset, length);
+        }
+
+        @Override
+        public MultipartPartETag call() {
+            if (!active.get()) {
+                // we were paused or aborted, so should not start any more tasks
+                throw new CancellationException();
+            }
+            log.debug("copying {}/{} to {}/{}, uploadId: {}, partNumber {} (offset: {}, length: {})",
+                    sourceBucket, sourceKey, bucket, key, uploadId, partNumber, offset, length);
+            partMetrics.started();
+            try {
+                MultipartPartETag partETag = copyPart(uploadId, partNumber, offset, length, partMetrics);
+                partMetrics.completed(partETag.getETag());
+                recordPart(partMetrics);
+                bytesCopied.addAndGet(length);
+                return partETag;
+            } catch (RuntimeException e) {
+                partMetrics.failed(e);
+                recordPart(partMetrics);
+                throw e;
+            }
+        }
+    }
+}
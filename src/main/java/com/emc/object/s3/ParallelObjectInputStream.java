@@ -0,0 +1,322 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.object.Range;
+import com.emc.object.s3.request.GetObjectRequest;
+import com.emc.object.util.VirtualThreadSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An InputStream that reads an object using several range GETs in parallel, so a sequential consumer (i.e. a
+ * decompressor or parser) gets the throughput of {@link LargeFileDownloader} without writing the object to a local
+ * file first. The next <code>readAhead</code> ranges are always being fetched while the consumer reads the current
+ * one, and bytes are returned in order.
+ * <p>
+ * Each range is buffered in memory, so at most <code>(readAhead + 1) * rangeSize</code> bytes are held at once.
+ * Buffers are reused as ranges are consumed. Ranges are requested with <code>If-Match</code>, so if the object changes
+ * while it is being read, the stream will fail instead of returning a mix of both versions.
+ * <p>
+ * Configure the stream before the first read (fetching starts then). The object size and ETag are read with a HEAD
+ * request unless the size is provided. This class is not thread-safe (like most streams), and must be closed to stop
+ * any outstanding fetches.
+ */
+public class ParallelObjectInputStream extends InputStream {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelObjectInputStream.class);
+
+    public static final int DEFAULT_RANGE_SIZE = 8 * 1024 * 1024; // 8MB
+    public static final int DEFAULT_READ_AHEAD = 4;
+
+    private static final AtomicInteger streamCount = new AtomicInteger();
+
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String key;
+
+    private int rangeSize = DEFAULT_RANGE_SIZE;
+    private int readAhead = DEFAULT_READ_AHEAD;
+    private Long objectSize;
+    private String eTag;
+    private boolean useVirtualThreads = false;
+    private ExecutorService executorService;
+    private boolean shutdownExecutorService;
+
+    private final Deque<Future<byte[]>> ranges = new ArrayDeque<>();
+    private final Queue<byte[]> freeBuffers = new ConcurrentLinkedQueue<>();
+    private long nextOffset;
+    private byte[] current;
+    private int currentPosition;
+    private boolean started;
+    private boolean closed;
+
+    /**
+     * Creates a new ParallelObjectInputStream that will use <code>s3Client</code> to read <code>bucket/key</code>
+     */
+    public ParallelObjectInputStream(S3Client s3Client, String bucket, String key) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.key = key;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int count = read(b, 0, 1);
+        return count == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) throw new IOException("stream is closed");
+        if (len == 0) return 0;
+        if ((current == null || currentPosition == current.length) && !nextRange()) return -1;
+
+        int count = Math.min(len, current.length - currentPosition);
+        System.arraycopy(current, currentPosition, b, off, count);
+        currentPosition += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current == null ? 0 : current.length - currentPosition;
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        for (Future<byte[]> range : ranges) {
+            range.cancel(true);
+        }
+        ranges.clear();
+        if (shutdownExecutorService) executorService.shutdownNow();
+        current = null;
+        freeBuffers.clear();
+    }
+
+    /*
+     * moves to the next range, waiting for it if necessary. returns false at the end of the object
+     */
+    private boolean nextRange() throws IOException {
+        if (!started) start();
+
+        // the consumed buffer can be reused (the last range may be shorter, so it is not worth keeping)
+        if (current != null && current.length == rangeSize) freeBuffers.offer(current);
+        current = null;
+
+        Future<byte[]> range = ranges.poll();
+        if (range == null) return false;
+        try {
+            current = range.get();
+            currentPosition = 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for object data");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException("error reading " + bucket + "/" + key, e.getCause());
+        }
+
+        // keep the pipeline full
+        fetchRanges();
+        return true;
+    }
+
+    private void start() {
+        if (rangeSize <= 0) throw new IllegalArgumentException("rangeSize must be positive");
+        if (readAhead <= 0) throw new IllegalArgumentException("readAhead must be positive");
+        if (objectSize == null) {
+            S3ObjectMetadata metadata = s3Client.getObjectMetadata(bucket, key);
+            objectSize = metadata.getContentLength();
+            eTag = metadata.getETag();
+        }
+        if (executorService == null) {
+            if (useVirtualThreads) {
+                executorService = VirtualThreadSupport.newBoundedExecutor(readAhead);
+            } else {
+                String namePrefix = "parallel-object-input-stream-" + streamCount.incrementAndGet() + "-";
+                AtomicInteger threadCount = new AtomicInteger();
+                // daemon threads, so a stream that is never closed will not keep the JVM alive
+                executorService = Executors.newFixedThreadPool(readAhead, r -> {
+                    Thread thread = new Thread(r, namePrefix + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            shutdownExecutorService = true;
+        }
+        started = true;
+        fetchRanges();
+    }
+
+    private void fetchRanges() {
+        while (ranges.size() < readAhead && nextOffset < objectSize) {
+            long length = Math.min(rangeSize, objectSize - nextOffset);
+            Range range = Range.fromOffsetLength(nextOffset, length);
+            ranges.add(executorService.submit(() -> fetchRange(range, (int) length)));
+            nextOffset += length;
+        }
+    }
+
+    private byte[] fetchRange(Range range, int length) throws IOException {
+        log.debug("fetching {}/{} range {}", bucket, key, range);
+        byte[] buffer = length == rangeSize ? freeBuffers.poll() : null;
+        if (buffer == null) buffer = new byte[length];
+
+        GetObjectRequest request = new GetObjectRequest(bucket, key).withRange(range);
+        if (eTag != null) request.setIfMatch(eTag);
+        try (InputStream is = s3Client.getObject(request, InputStream.class).getObject()) {
+            int read = 0;
+            while (read < length) {
+                int count = is.read(buffer, read, length - read);
+                if (count == -1) throw new IOException("unexpected end of range " + range + " of " + bucket + "/" + key);
+                read += count;
+            }
+        }
+        return buffer;
+    }
+
+    public S3Client getS3Client() {
+        return s3Client;
+    }
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public int getRangeSize() {
+        return rangeSize;
+    }
+
+    /**
+     * Sets the size of each range GET. Each range is buffered in memory. Default is {@link #DEFAULT_RANGE_SIZE}
+     */
+    public void setRangeSize(int rangeSize) {
+        if (started) throw new IllegalStateException("stream has already started reading");
+        this.rangeSize = rangeSize;
+    }
+
+    public int getReadAhead() {
+        return readAhead;
+    }
+
+    /**
+     * Sets the number of ranges to fetch in parallel ahead of the consumer. Default is {@link #DEFAULT_READ_AHEAD}
+     */
+    public void setReadAhead(int readAhead) {
+        if (started) throw new IllegalStateException("stream has already started reading");
+        this.readAhead = readAhead;
+    }
+
+    public Long getObjectSize() {
+        return objectSize;
+    }
+
+    /**
+     * Sets the size of the object, if it is already known, to avoid a HEAD request. Note that the object's ETag is
+     * only checked when the size is not provided
+     */
+    public void setObjectSize(Long objectSize) {
+        if (started) throw new IllegalStateException("stream has already started reading");
+        this.objectSize = objectSize;
+    }
+
+    public boolean isUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+    /**
+     * Set to true to fetch ranges on virtual threads when the runtime supports them (Java 21+). This does not apply if
+     * you provide an executor service. Default is false
+     *
+     * @see VirtualThreadSupport
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        if (started) throw new IllegalStateException("stream has already started reading");
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Allows for providing a custom thread executor (i.e. to share threads between streams, or to share a limit on
+     * concurrent requests using {@link TransferScheduler#newTransferExecutor()}). The executor is not shut down when
+     * the stream is closed
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        if (started) throw new IllegalStateException("stream has already started reading");
+        this.executorService = executorService;
+    }
+
+    public ParallelObjectInputStream withRangeSize(int rangeSize) {
+        setRangeSize(rangeSize);
+        return this;
+    }
+
+    public ParallelObjectInputStream withReadAhead(int readAhead) {
+        setReadAhead(readAhead);
+        return this;
+    }
+
+    public ParallelObjectInputStream withObjectSize(Long objectSize) {
+        setObjectSize(objectSize);
+        return this;
+    }
+
+    public ParallelObjectInputStream withUseVirtualThreads(boolean useVirtualThreads) {
+        setUseVirtualThreads(useVirtualThreads);
+        return this;
+    }
+
+    public ParallelObjectInputStream withExecutorService(ExecutorService executorService) {
+        setExecutorService(executorService);
+        return this;
+    }
+}
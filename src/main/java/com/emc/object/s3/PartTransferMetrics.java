@@ -0,0 +1,233 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.object.util.ProgressListener;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timing and retry details for a single part of a parallel transfer (an MPU part, a byte-range of a download or a
+ * copied range). Instances are created by the transfer utilities when a part is queued and are reported to a
+ * {@link PartTransferListener} once the part completes or fails, at which point they no longer change.
+ * <p>
+ * The host and retry count are recorded by the client's retry filter, so they are only available when using
+ * {@link com.emc.object.s3.jersey.S3JerseyClient} with retries enabled (the default).
+ */
+public class PartTransferMetrics {
+    /**
+     * Request property used to pass an instance to the client filters, so they can record the host and retry count
+     */
+    public static final String PROP_PART_METRICS = "com.emc.object.partTransferMetrics";
+
+    private final int partNumber;
+    private final long offset;
+    private final long length;
+    private final long queuedTime;
+    // the remaining fields are only written by the thread transferring the part
+    private long startTime;
+    private long firstByteTime;
+    private long endTime;
+    private long bytesTransferred;
+    private String host;
+    private int retryCount;
+    private int resumeCount;
+    private String eTag;
+    private Throwable error;
+
+    public PartTransferMetrics(int partNumber, long offset, long length) {
+        this.partNumber = partNumber;
+        this.offset = offset;
+        this.length = length;
+        this.queuedTime = System.nanoTime();
+    }
+
+    /**
+     * Call when the part leaves the queue and its request is about to be sent
+     */
+    void started() {
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Call when the part is restarted by the transfer (a download resuming a broken stream, or an upload reopening
+     * its source after a failure)
+     */
+    void resumed() {
+        resumeCount++;
+    }
+
+    /**
+     * Call when the part request has finished successfully
+     */
+    void completed(String eTag) {
+        this.endTime = System.nanoTime();
+        this.eTag = eTag;
+    }
+
+    /**
+     * Call when the part request has failed (after any retries)
+     */
+    void failed(Throwable error) {
+        this.endTime = System.nanoTime();
+        this.error = error;
+    }
+
+    /**
+     * Returns a listener that records the first byte and the byte count of this part before passing events on to
+     * <code>delegate</code>
+     */
+    ProgressListener monitor(final ProgressListener delegate) {
+        return new ProgressListener() {
+            @Override
+            public void progress(long completed, long total) {
+                if (delegate != null) delegate.progress(completed, total);
+            }
+
+            @Override
+            public void transferred(long size) {
+                if (firstByteTime == 0) firstByteTime = System.nanoTime();
+                bytesTransferred += size;
+                if (delegate != null) delegate.transferred(size);
+            }
+        };
+    }
+
+    public int getPartNumber() {
+        return partNumber;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Time the part spent waiting for a thread (or for a slot in a shared scheduler) before its request was sent
+     */
+    public long getQueueWaitNanos() {
+        return startTime - queuedTime;
+    }
+
+    /**
+     * Time from sending the request until the first byte of part data moved. For uploads, this is when the HTTP
+     * client started reading the part data; for downloads, it is when the first byte of the response body arrived.
+     * This is 0 for server-side copies, where no data passes through the client
+     */
+    public long getTimeToFirstByteNanos() {
+        return firstByteTime == 0 ? 0 : firstByteTime - startTime;
+    }
+
+    /**
+     * Time from the first byte of data until the part completed (or failed), including any retries. For server-side
+     * copies, this is measured from when the request was sent
+     */
+    public long getTransferNanos() {
+        return endTime - (firstByteTime == 0 ? startTime : firstByteTime);
+    }
+
+    /**
+     * Returns the throughput of this part in bytes/s, based on its length and {@link #getTransferNanos() transfer
+     * time}
+     */
+    public double getThroughput() {
+        long transferNanos = getTransferNanos();
+        if (transferNanos <= 0) return 0;
+        return (double) length * TimeUnit.SECONDS.toNanos(1) / transferNanos;
+    }
+
+    /**
+     * Number of bytes that actually passed through the client for this part. This can be more than the
+     * <code>length</code> if the part was retried, and is 0 for server-side copies
+     */
+    public long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    /**
+     * The host that served the last attempt of this part (null if unknown)
+     */
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    public void setRetryCount(int retryCount) {
+        this.retryCount = retryCount;
+    }
+
+    /**
+     * Number of times the transfer restarted the part itself: for downloads, when the data stream broke and the rest
+     * of the part was requested again; for uploads, when the part failed and was reopened from its source. These are
+     * separate from the client's {@link #getRetryCount() retries}
+     */
+    public int getResumeCount() {
+        return resumeCount;
+    }
+
+    /**
+     * The ETag returned for this part (for downloads, this is the ETag of the object). Null if the part failed
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * The error that caused this part to fail, or null if it completed successfully
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "PartTransferMetrics{" +
+                "partNumber=" + partNumber +
+                ", offset=" + offset +
+                ", length=" + length +
+                ", queueWaitMs=" + TimeUnit.NANOSECONDS.toMillis(getQueueWaitNanos()) +
+                ", timeToFirstByteMs=" + TimeUnit.NANOSECONDS.toMillis(getTimeToFirstByteNanos()) +
+                ", transferMs=" + TimeUnit.NANOSECONDS.toMillis(getTransferNanos()) +
+                ", host='" + host + '\'' +
+                ", retryCount=" + retryCount +
+                ", resumeCount=" + resumeCount +
+                ", eTag='" + eTag + '\'' +
+                ", error=" + error +
+                '}';
+    }
+}
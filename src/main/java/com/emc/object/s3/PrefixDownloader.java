@@ -0,0 +1,390 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.object.s3.bean.ListObjectsResult;
+import com.emc.object.s3.bean.S3Object;
+import com.emc.object.s3.jersey.S3JerseyClient;
+import com.emc.object.s3.request.ListObjectsRequest;
+import com.emc.object.util.BandwidthLimiter;
+import com.emc.object.util.ProgressListener;
+import com.emc.object.util.ProgressOutputStream;
+import com.emc.object.util.VirtualThreadSupport;
+import com.emc.rest.util.StreamUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Convenience class to download all objects under a prefix to a local directory using a single, bounded pool of
+ * threads. The next page of the listing is requested while the current page is being downloaded, so listing and
+ * transfer overlap. Only two pages of keys are held in memory, so memory use does not depend on the number of objects.
+ * Objects below <code>largeObjectThreshold</code> are read with single GETs (one per thread); larger objects are read
+ * through {@link LargeFileDownloader}, with their parts transferred by the same thread pool.
+ * <p>
+ * A failure to download an object does not stop the transfer; failures are collected and available from
+ * {@link #getFailures()} after the download completes. Local files are the key of each object relative to
+ * <code>prefix</code> (with <code>/</code> replaced by the local separator), under <code>directory</code>. Keys that
+ * end in <code>/</code> (directory placeholders) are skipped, and keys that would resolve outside of
+ * <code>directory</code> are reported as failures.
+ */
+public class PrefixDownloader implements Runnable, ProgressListener {
+
+    private static final Logger log = LoggerFactory.getLogger(PrefixDownloader.class);
+
+    public static final int DEFAULT_THREADS = 16;
+    public static final long DEFAULT_LARGE_OBJECT_THRESHOLD = LargeFileDownloader.DEFAULT_PARALLEL_THRESHOLD;
+
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String prefix;
+    private final File directory;
+
+    private int threads = DEFAULT_THREADS;
+    private boolean useVirtualThreads = false;
+    private long largeObjectThreshold = DEFAULT_LARGE_OBJECT_THRESHOLD;
+    private long partSize = LargeFileDownloader.DEFAULT_PART_SIZE;
+    private ExecutorService executorService;
+    private ProgressListener progressListener;
+
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong bytesTransferred = new AtomicLong();
+    private final AtomicLong objectsCompleted = new AtomicLong();
+    private final Map<String, Throwable> failures = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new PrefixDownloader instance that will use <code>s3Client</code> to download all objects in
+     * <code>bucket</code> under <code>prefix</code> (may be null for the whole bucket) to <code>directory</code>.
+     */
+    public PrefixDownloader(S3Client s3Client, String bucket, String prefix, File directory) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.prefix = prefix == null ? "" : prefix;
+        this.directory = directory;
+    }
+
+    @Override
+    public void progress(long completed, long total) {
+    }
+
+    @Override
+    public void transferred(long size) {
+        long totalTransferred = bytesTransferred.addAndGet(size);
+
+        if (progressListener != null) {
+            progressListener.transferred(size);
+            progressListener.progress(totalTransferred, totalBytes.get());
+        }
+    }
+
+    @Override
+    public void run() {
+        download();
+    }
+
+    /**
+     * Downloads all objects under the prefix and waits for them to complete. Per-object failures are collected in
+     * {@link #getFailures()}.
+     *
+     * @throws RuntimeException if the bucket cannot be listed or the download is interrupted
+     */
+    public void download() {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IllegalArgumentException("cannot create directory: " + directory.getPath());
+
+        // set up thread pool
+        boolean shutdownThreadPool = false;
+        if (executorService == null) {
+            executorService = useVirtualThreads ? VirtualThreadSupport.newBoundedExecutor(threads) : Executors.newFixedThreadPool(threads);
+            shutdownThreadPool = true;
+        }
+        // listing gets its own thread, so it is not queued behind downloads
+        ExecutorService listingExecutor = useVirtualThreads ? VirtualThreadSupport.newBoundedExecutor(1) : Executors.newSingleThreadExecutor();
+
+        // bounds the number of small-object downloads that are queued or running
+        int maxQueued = threads * 2;
+        Semaphore queueSlots = new Semaphore(maxQueued);
+
+        try {
+            Path root = directory.toPath().toAbsolutePath().normalize();
+            ListObjectsRequest request = new ListObjectsRequest(bucket).withPrefix(prefix.isEmpty() ? null : prefix);
+            ListObjectsResult page = s3Client.listObjects(request);
+            while (page != null) {
+                // request the next page while this one is downloading
+                final ListObjectsResult lastPage = page;
+                CompletableFuture<ListObjectsResult> nextPage = page.isTruncated()
+                        ? CompletableFuture.supplyAsync(() -> s3Client.listMoreObjects(lastPage), listingExecutor)
+                        : CompletableFuture.completedFuture(null);
+
+                for (S3Object object : page.getObjects()) {
+                    String key = object.getKey();
+                    if (key.endsWith("/")) continue;
+
+                    Path path = root.resolve(key.substring(prefix.length()).replace('/', File.separatorChar)).normalize();
+                    if (!path.startsWith(root) || path.equals(root)) {
+                        failures.put(key, new IllegalArgumentException("key resolves outside of " + root + ": " + key));
+                        continue;
+                    }
+                    File file = path.toFile();
+                    long size = object.getSize() == null ? 0 : object.getSize();
+                    totalBytes.addAndGet(size);
+
+                    if (size >= largeObjectThreshold) {
+                        // parts are transferred by the pool; this thread only coordinates the download
+                        downloadLargeObject(key, file);
+                    } else {
+                        queueSlots.acquire();
+                        executorService.execute(() -> {
+                            try {
+                                downloadSmallObject(key, file, size);
+                            } finally {
+                                queueSlots.release();
+                            }
+                        });
+                    }
+                }
+
+                page = nextPage.get();
+            }
+
+            // wait for all queued downloads to finish
+            queueSlots.acquire(maxQueued);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("error listing " + bucket + "/" + prefix, e.getCause());
+        } catch (InterruptedException e) {
+            throw new RuntimeException("interrupted while downloading prefix", e);
+        } finally {
+            listingExecutor.shutdownNow();
+
+            // make sure all spawned threads are shut down
+            if (shutdownThreadPool) executorService.shutdown();
+        }
+
+        if (!failures.isEmpty()) log.warn("{} object(s) failed to download from {}/{}", failures.size(), bucket, prefix);
+    }
+
+    protected void downloadSmallObject(String key, File file, long size) {
+        try {
+            createParentDirectory(file);
+            try (InputStream is = s3Client.readObjectStream(bucket, key, null);
+                 OutputStream os = new ProgressOutputStream(new FileOutputStream(file), this, getEffectiveBandwidthLimiter())) {
+                StreamUtil.copy(is, os, size);
+            }
+            objectsCompleted.incrementAndGet();
+        } catch (Exception e) {
+            log.warn("failed to download {}/{} to {}", bucket, key, file.getPath(), e);
+            failures.put(key, e);
+        }
+    }
+
+    protected void downloadLargeObject(String key, File file) {
+        try {
+            createParentDirectory(file);
+            // the listing already told us the object is large, so skip the HEAD request
+            LargeFileDownloader downloader = new LargeFileDownloader(s3Client, bucket, key, file)
+                    .withPartSize(partSize).withParallelThreshold(largeObjectThreshold).withSkipHeadRequest(true)
+                    .withExecutorService(executorService).withProgressListener(this);
+            downloader.download();
+            objectsCompleted.incrementAndGet();
+        } catch (Exception e) {
+            log.warn("failed to download {}/{} to {}", bucket, key, file.getPath(), e);
+            failures.put(key, e);
+        }
+    }
+
+    private void createParentDirectory(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null) Files.createDirectories(parent.toPath());
+    }
+
+    /*
+     * use the client's limiter, if configured, same as LargeFileDownloader
+     */
+    private BandwidthLimiter getEffectiveBandwidthLimiter() {
+        if (s3Client instanceof S3JerseyClient) return ((S3JerseyClient) s3Client).getS3Config().getBandwidthLimiter();
+        return null;
+    }
+
+    public S3Client getS3Client() {
+        return s3Client;
+    }
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Total size of all objects listed so far (this grows as the prefix is listed)
+     */
+    public long getTotalBytes() {
+        return totalBytes.get();
+    }
+
+    public long getBytesTransferred() {
+        return bytesTransferred.get();
+    }
+
+    public long getObjectsCompleted() {
+        return objectsCompleted.get();
+    }
+
+    /**
+     * Keys that could not be downloaded, along with the cause of each failure
+     */
+    public Map<String, Throwable> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads to use for transferring objects and parts. This is the maximum number of concurrent
+     * GET requests. Default is {@link #DEFAULT_THREADS}
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public long getLargeObjectThreshold() {
+        return largeObjectThreshold;
+    }
+
+    /**
+     * Sets the size at or above which objects are downloaded in parallel ranges with {@link LargeFileDownloader}.
+     * Smaller objects are read with single GETs. Default is {@link #DEFAULT_LARGE_OBJECT_THRESHOLD}
+     */
+    public void setLargeObjectThreshold(long largeObjectThreshold) {
+        this.largeObjectThreshold = largeObjectThreshold;
+    }
+
+    public long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * Sets the part size used for large objects. Default is {@link LargeFileDownloader#DEFAULT_PART_SIZE}
+     */
+    public void setPartSize(long partSize) {
+        this.partSize = partSize;
+    }
+
+    public boolean isUseVirtualThreads() {
+        return useVirtualThreads;
+    }
+
+    /**
+     * Set to true to run object and part downloads on virtual threads when the runtime supports them (Java 21+). The
+     * number of requests running at once is still limited by <code>threads</code>. On older runtimes, a pool of
+     * platform threads is used. This does not apply if you provide an executor service. Default is false
+     *
+     * @see VirtualThreadSupport
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads) {
+        this.useVirtualThreads = useVirtualThreads;
+    }
+
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Allows for providing a custom thread executor (i.e. for custom thread factories). Note that if
+     * you set a custom executor service, the <code>threads</code> property will be ignored, and the executor will not
+     * be shut down.
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    public ProgressListener getProgressListener() {
+        return progressListener;
+    }
+
+    /**
+     * Receives aggregate progress for all objects. Note that the total reported is the size of all objects listed so far
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public PrefixDownloader withThreads(int threads) {
+        setThreads(threads);
+        return this;
+    }
+
+    public PrefixDownloader withLargeObjectThreshold(long largeObjectThreshold) {
+        setLargeObjectThreshold(largeObjectThreshold);
+        return this;
+    }
+
+    public PrefixDownloader withPartSize(long partSize) {
+        setPartSize(partSize);
+        return this;
+    }
+
+    public PrefixDownloader withUseVirtualThreads(boolean useVirtualThreads) {
+        setUseVirtualThreads(useVirtualThreads);
+        return this;
+    }
+
+    public PrefixDownloader withExecutorService(ExecutorService executorService) {
+        setExecutorService(executorService);
+        return this;
+    }
+
+    public PrefixDownloader withProgressListener(ProgressListener progressListener) {
+        setProgressListener(progressListener);
+        return this;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+/**
+ * Lifecycle events of a request attempt, in the order they occur. An attempt ends with either
+ * {@link #RESPONSE_READ} or {@link #ATTEMPT_FAILED}, which may be followed by {@link #RETRY_SCHEDULED}.
+ */
+public enum RequestEvent {
+    /**
+     * The attempt is about to be sent; the host (selected by the load balancer) and any geo-pinned VDC are known
+     */
+    ATTEMPT_STARTED,
+    /**
+     * The request body has been written (only sent for requests with a body)
+     */
+    REQUEST_SENT,
+    /**
+     * The response headers have been received
+     */
+    RESPONSE_RECEIVED,
+    /**
+     * The response body has been read to the end, or closed
+     */
+    RESPONSE_READ,
+    /**
+     * The attempt failed, either with an error response or without a response
+     */
+    ATTEMPT_FAILED,
+    /**
+     * The failed attempt will be retried after {@link RequestTimeline#getRetryDelayMs()}
+     */
+    RETRY_SCHEDULED
+}
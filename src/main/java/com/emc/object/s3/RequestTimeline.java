@@ -0,0 +1,221 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import java.net.URI;
+
+/**
+ * Phase timestamps and details of a single request attempt, as reported to a {@link RequestEventListener}.
+ * Timestamps are {@link System#nanoTime()} values, so they are only meaningful relative to each other; a timestamp of
+ * 0 means the phase has not happened (yet), or could not be measured.
+ * <p>
+ * Connection timing is only available with the default Apache HTTP client. The connect phase covers waiting for a
+ * pooled connection and, when the connection is new (see {@link #isConnectionReused()}), opening it and the TLS
+ * handshake.
+ * <p>
+ * Setters are used by the client to fill in the timeline as the attempt progresses.
+ */
+public class RequestTimeline {
+    private final String method;
+    private final URI uri;
+    private final int attempt;
+    private final String vdc;
+    private final long startNanos = System.nanoTime();
+    private volatile long connectedNanos;
+    private volatile boolean connectionReused;
+    private volatile long requestSentNanos;
+    private volatile long responseNanos;
+    private volatile long completedNanos;
+    private volatile int statusCode;
+    private volatile Throwable error;
+    private volatile long retryDelayMs;
+
+    public RequestTimeline(String method, URI uri, int attempt, String vdc) {
+        this.method = method;
+        this.uri = uri;
+        this.attempt = attempt;
+        this.vdc = vdc;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * The request URI, including the host selected by the load balancer
+     */
+    public URI getUri() {
+        return uri;
+    }
+
+    public String getHost() {
+        return uri.getHost();
+    }
+
+    /**
+     * The attempt number (1 for the first attempt, 2 for the first retry, etc.)
+     */
+    public int getAttempt() {
+        return attempt;
+    }
+
+    /**
+     * The name of the VDC the request was pinned to, or null if it was not pinned
+     */
+    public String getVdc() {
+        return vdc;
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public long getConnectedNanos() {
+        return connectedNanos;
+    }
+
+    public void setConnectedNanos(long connectedNanos) {
+        this.connectedNanos = connectedNanos;
+    }
+
+    /**
+     * True if the attempt used a pooled connection that had already been used for another request (so there was no
+     * connect or TLS handshake)
+     */
+    public boolean isConnectionReused() {
+        return connectionReused;
+    }
+
+    public void setConnectionReused(boolean connectionReused) {
+        this.connectionReused = connectionReused;
+    }
+
+    public long getRequestSentNanos() {
+        return requestSentNanos;
+    }
+
+    public void setRequestSentNanos(long requestSentNanos) {
+        this.requestSentNanos = requestSentNanos;
+    }
+
+    public long getResponseNanos() {
+        return responseNanos;
+    }
+
+    public void setResponseNanos(long responseNanos) {
+        this.responseNanos = responseNanos;
+    }
+
+    public long getCompletedNanos() {
+        return completedNanos;
+    }
+
+    public void setCompletedNanos(long completedNanos) {
+        this.completedNanos = completedNanos;
+    }
+
+    /**
+     * The HTTP status of the response, or 0 if there was no response
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * The error that failed the attempt, or null if it did not fail
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    public void setError(Throwable error) {
+        this.error = error;
+    }
+
+    /**
+     * The delay before the attempt is retried (only set for {@link RequestEvent#RETRY_SCHEDULED})
+     */
+    public long getRetryDelayMs() {
+        return retryDelayMs;
+    }
+
+    public void setRetryDelayMs(long retryDelayMs) {
+        this.retryDelayMs = retryDelayMs;
+    }
+
+    /**
+     * Time waiting for a connection (and opening it, if it was new), or 0 if unknown
+     */
+    public long getConnectNanos() {
+        return connectedNanos == 0 ? 0 : connectedNanos - startNanos;
+    }
+
+    /**
+     * Time sending the request headers and body, or 0 if unknown
+     */
+    public long getUploadNanos() {
+        if (requestSentNanos == 0) return 0;
+        return requestSentNanos - (connectedNanos == 0 ? startNanos : connectedNanos);
+    }
+
+    /**
+     * Time from the end of the request until the response headers were received
+     */
+    public long getTimeToFirstByteNanos() {
+        if (responseNanos == 0) return 0;
+        long sentNanos = requestSentNanos != 0 ? requestSentNanos : connectedNanos != 0 ? connectedNanos : startNanos;
+        return responseNanos - sentNanos;
+    }
+
+    /**
+     * Time from receiving the response headers until the response body was read (or closed)
+     */
+    public long getBodyReadNanos() {
+        if (responseNanos == 0 || completedNanos == 0) return 0;
+        return completedNanos - responseNanos;
+    }
+
+    /**
+     * Total time of the attempt, or 0 if it has not completed
+     */
+    public long getTotalNanos() {
+        return completedNanos == 0 ? 0 : completedNanos - startNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RequestTimeline{%s %s, attempt=%d, vdc=%s, status=%d, connect=%dus%s, upload=%dus, ttfb=%dus, bodyRead=%dus, total=%dus%s}",
+                method, getHost(), attempt, vdc, statusCode, getConnectNanos() / 1000, connectionReused ? " (reused)" : "",
+                getUploadNanos() / 1000, getTimeToFirstByteNanos() / 1000, getBodyReadNanos() / 1000,
+                getTotalNanos() / 1000, error == null ? "" : ", error=" + error);
+    }
+}
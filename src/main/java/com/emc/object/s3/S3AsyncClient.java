@@ -0,0 +1,212 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.object.s3.bean.*;
+import com.emc.object.s3.request.*;
+import com.emc.object.util.VirtualThreadSupport;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous facade over an {@link S3Client} for the core object and listing operations. Each method returns a
+ * {@link CompletableFuture} immediately and the request executes in the background, using the wrapped client's
+ * request beans, signing, retries and error handling as-is (failures complete the future exceptionally with the same
+ * {@link S3Exception}s the client would throw).
+ * <p>
+ * On Java 21+, each request runs on its own virtual thread, so a request waiting on the network parks a virtual
+ * thread rather than tying up a platform thread, and fanning out thousands of requests does not need thousands of
+ * platform threads. On earlier runtimes, requests run on a fixed pool of <code>maxInFlight</code> platform threads.
+ * <p>
+ * The number of requests in flight is bounded by <code>maxInFlight</code>. When the window is full, calls block the
+ * caller until a request completes, which applies back-pressure to code that issues requests faster than they can be
+ * served. Note that actual concurrency is also limited by the connection pool of the wrapped client.
+ * <p>
+ * Futures complete after the request's slot in the window has been released, so a dependent stage may safely issue
+ * further requests. Dependent stages that are not <code>*Async</code> run on the request thread; avoid long-running
+ * work there, or use the <code>*Async</code> variants with your own executor.
+ * <p>
+ * Closing this client stops its threads, but does not destroy the wrapped client.
+ */
+public class S3AsyncClient implements Closeable {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+    private final S3Client s3Client;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final ExecutorService executor;
+
+    public S3AsyncClient(S3Client s3Client) {
+        this(s3Client, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public S3AsyncClient(S3Client s3Client, int maxInFlight) {
+        if (maxInFlight <= 0) throw new IllegalArgumentException("maxInFlight must be greater than zero");
+        this.s3Client = s3Client;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.executor = VirtualThreadSupport.newBoundedExecutor(maxInFlight);
+    }
+
+    public CompletableFuture<Boolean> bucketExists(String bucketName) {
+        return submit(() -> s3Client.bucketExists(bucketName));
+    }
+
+    public CompletableFuture<ListObjectsResult> listObjects(String bucketName, String prefix) {
+        return submit(() -> s3Client.listObjects(bucketName, prefix));
+    }
+
+    public CompletableFuture<ListObjectsResult> listObjects(ListObjectsRequest request) {
+        return submit(() -> s3Client.listObjects(request));
+    }
+
+    public CompletableFuture<ListObjectsResult> listMoreObjects(ListObjectsResult lastResult) {
+        return submit(() -> s3Client.listMoreObjects(lastResult));
+    }
+
+    public CompletableFuture<ListVersionsResult> listVersions(ListVersionsRequest request) {
+        return submit(() -> s3Client.listVersions(request));
+    }
+
+    public CompletableFuture<ListVersionsResult> listMoreVersions(ListVersionsResult lastResult) {
+        return submit(() -> s3Client.listMoreVersions(lastResult));
+    }
+
+    public CompletableFuture<PutObjectResult> putObject(PutObjectRequest request) {
+        return submit(() -> s3Client.putObject(request));
+    }
+
+    public CompletableFuture<CopyObjectResult> copyObject(CopyObjectRequest request) {
+        return submit(() -> s3Client.copyObject(request));
+    }
+
+    /**
+     * Reads the entire object into memory as <code>objectType</code>, as in
+     * {@link S3Client#readObject(String, String, Class)}
+     */
+    public <T> CompletableFuture<T> readObject(String bucketName, String key, Class<T> objectType) {
+        return submit(() -> s3Client.readObject(bucketName, key, objectType));
+    }
+
+    /**
+     * Note: if <code>objectType</code> is {@link java.io.InputStream}, only the response headers have been read when
+     * the future completes, and the caller must read and close the stream. The stream holds a connection (but not a
+     * slot in the in-flight window) until it is closed.
+     */
+    public <T> CompletableFuture<GetObjectResult<T>> getObject(GetObjectRequest request, Class<T> objectType) {
+        return submit(() -> s3Client.getObject(request, objectType));
+    }
+
+    public CompletableFuture<S3ObjectMetadata> getObjectMetadata(String bucketName, String key) {
+        return submit(() -> s3Client.getObjectMetadata(bucketName, key));
+    }
+
+    public CompletableFuture<S3ObjectMetadata> getObjectMetadata(GetObjectMetadataRequest request) {
+        return submit(() -> s3Client.getObjectMetadata(request));
+    }
+
+    public CompletableFuture<Void> deleteObject(String bucketName, String key) {
+        return submit(() -> {
+            s3Client.deleteObject(bucketName, key);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> deleteObject(DeleteObjectRequest request) {
+        return submit(() -> {
+            s3Client.deleteObject(request);
+            return null;
+        });
+    }
+
+    public CompletableFuture<DeleteObjectsResult> deleteObjects(DeleteObjectsRequest request) {
+        return submit(() -> s3Client.deleteObjects(request));
+    }
+
+    /*
+     * blocks while the in-flight window is full; the slot is released before the future completes, so dependent
+     * stages can issue more requests without deadlocking on the window
+     */
+    private <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return future;
+        }
+        try {
+            executor.execute(() -> {
+                T result;
+                try {
+                    result = operation.get();
+                } catch (Throwable t) {
+                    inFlight.release();
+                    future.completeExceptionally(t);
+                    return;
+                }
+                inFlight.release();
+                future.complete(result);
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * The number of requests currently in flight
+     */
+    public int getInFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public S3Client getS3Client() {
+        return s3Client;
+    }
+
+    /**
+     * Stops accepting new requests. Requests already in flight are allowed to complete
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -28,7 +28,9 @@ package com.emc.object.s3;
 
 import com.emc.object.ObjectConfig;
 import com.emc.object.Protocol;
+import com.emc.object.util.BandwidthLimiter;
 import com.emc.object.util.ConfigUriProperty;
+import com.emc.object.util.RequestMetrics;
 import com.emc.rest.smart.Host;
 import com.emc.rest.smart.SmartConfig;
 import com.emc.rest.smart.ecs.Vdc;
@@ -85,6 +87,10 @@ public class S3Config extends ObjectConfig<S3Config> {
     protected float faultInjectionRate = 0.0f;
     protected boolean signMetadataSearch = true;
     protected boolean useV2Signer = true;
+    protected BandwidthLimiter bandwidthLimiter;
+    protected RequestMetrics requestMetrics;
+    protected RequestEventListener requestEventListener;
+    protected HedgingPolicy hedgingPolicy;
 
     /**
      * Empty constructor for internal use only!
@@ -131,6 +137,10 @@ public class S3Config extends ObjectConfig<S3Config> {
         this.faultInjectionRate = other.faultInjectionRate;
         this.signMetadataSearch = other.signMetadataSearch;
         this.useV2Signer = other.useV2Signer;
+        this.bandwidthLimiter = other.bandwidthLimiter;
+        this.requestMetrics = other.requestMetrics;
+        this.requestEventListener = other.requestEventListener;
+        this.hedgingPolicy = other.hedgingPolicy;
     }
 
     @Override
@@ -281,6 +291,63 @@ public class S3Config extends ObjectConfig<S3Config> {
         this.useV2Signer = useV2Signer;
     }
 
+    public BandwidthLimiter getBandwidthLimiter() {
+        return bandwidthLimiter;
+    }
+
+    /**
+     * Sets a bandwidth limiter shared by all {@link LargeFileUploader} and {@link LargeFileDownloader} transfers that
+     * use this client (unless they specify their own). Other requests made by the client are not limited. To limit
+     * bandwidth per VDC, share the same limiter between all configs that target that VDC. Default is null (no limit)
+     */
+    public void setBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+        this.bandwidthLimiter = bandwidthLimiter;
+    }
+
+    public RequestMetrics getRequestMetrics() {
+        return requestMetrics;
+    }
+
+    /**
+     * Sets a collector for client-side request latency, split by operation, host and status class. Every request
+     * attempt made by the client is recorded. Default is null (no metrics)
+     *
+     * @see RequestMetrics
+     */
+    public void setRequestMetrics(RequestMetrics requestMetrics) {
+        this.requestMetrics = requestMetrics;
+    }
+
+    public RequestEventListener getRequestEventListener() {
+        return requestEventListener;
+    }
+
+    /**
+     * Sets a listener that receives lifecycle events, with phase timings, for every request attempt made by the
+     * client (including retries). Default is null (no events)
+     *
+     * @see RequestEventListener
+     * @see RequestTimeline
+     */
+    public void setRequestEventListener(RequestEventListener requestEventListener) {
+        this.requestEventListener = requestEventListener;
+    }
+
+    public HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    /**
+     * Enables hedging of idempotent reads (getObject, getObjectMetadata and listObjects): if a request has no response
+     * within the policy's hedge delay, a second attempt is sent to another host and the first response wins. Default
+     * is null (no hedging)
+     *
+     * @see HedgingPolicy
+     */
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
     public S3Config withUseVHost(boolean useVHost) {
         setUseVHost(useVHost);
         return this;
@@ -331,6 +398,26 @@ public class S3Config extends ObjectConfig<S3Config> {
         return this;
     }
 
+    public S3Config withBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+        setBandwidthLimiter(bandwidthLimiter);
+        return this;
+    }
+
+    public S3Config withRequestMetrics(RequestMetrics requestMetrics) {
+        setRequestMetrics(requestMetrics);
+        return this;
+    }
+
+    public S3Config withRequestEventListener(RequestEventListener requestEventListener) {
+        setRequestEventListener(requestEventListener);
+        return this;
+    }
+
+    public S3Config withHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        setHedgingPolicy(hedgingPolicy);
+        return this;
+    }
+
     @Override
     public String toString() {
         return "S3Config{" +
@@ -344,6 +431,10 @@ public class S3Config extends ObjectConfig<S3Config> {
                 ", faultInjectionRate=" + faultInjectionRate +
                 ", signMetadataSearch=" + signMetadataSearch +
                 ", useV2Signer=" + useV2Signer +
+                ", bandwidthLimiter=" + bandwidthLimiter +
+                ", requestMetrics=" + requestMetrics +
+                ", requestEventListener=" + requestEventListener +
+                ", hedgingPolicy=" + hedgingPolicy +
                 "} " + super.toString();
     }
 }
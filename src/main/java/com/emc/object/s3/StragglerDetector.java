@@ -0,0 +1,257 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Optional straggler detection for {@link LargeFileUploader}. When one storage node is slow, a large upload spends
+ * most of its tail waiting on the last few parts. Once {@link #setMinCompletedFraction(double) most parts} have
+ * completed, any part that has been running for longer than {@link #setStragglerFactor(double) stragglerFactor}
+ * times the median part time is reported as a straggler, and the uploader starts a duplicate upload of the same part.
+ * Whichever attempt finishes first is used to complete the upload (both attempts send the same bytes, so the part
+ * ETag is the same either way).
+ * <p>
+ * Each part is speculated at most once, and at most {@link #setMaxSpeculativeParts(int) maxSpeculativeParts} are
+ * speculated per transfer. Parts that run for less than {@link #setMinStragglerTimeMs(long) minStragglerTimeMs} are
+ * never considered stragglers, so small parts are not duplicated because of ordinary jitter.
+ * <p>
+ * Note: a detector instance holds state for a single transfer and must not be shared by concurrent transfers.
+ */
+public class StragglerDetector {
+
+    private static final Logger log = LoggerFactory.getLogger(StragglerDetector.class);
+
+    public static final double DEFAULT_STRAGGLER_FACTOR = 3.0;
+    public static final double DEFAULT_MIN_COMPLETED_FRACTION = 0.75;
+    public static final long DEFAULT_MIN_STRAGGLER_TIME_MS = 2000; // 2 seconds
+    public static final int DEFAULT_MAX_SPECULATIVE_PARTS = 8;
+
+    private double stragglerFactor = DEFAULT_STRAGGLER_FACTOR;
+    private double minCompletedFraction = DEFAULT_MIN_COMPLETED_FRACTION;
+    private long minStragglerTimeMs = DEFAULT_MIN_STRAGGLER_TIME_MS;
+    private int maxSpeculativeParts = DEFAULT_MAX_SPECULATIVE_PARTS;
+
+    private final Lock lock = new ReentrantLock();
+
+    // transfer state
+    private final Map<Integer, Long> runningParts = new HashMap<>(); // part number -> start time (nanos)
+    private final List<Long> completedPartNanos = new ArrayList<>();
+    private final Set<Integer> speculatedParts = new TreeSet<>();
+
+    /**
+     * Called by the transfer before scheduling any parts
+     */
+    public void start() {
+        lock.lock();
+        try {
+            runningParts.clear();
+            completedPartNanos.clear();
+            speculatedParts.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the start of a part. Only the first attempt of a part is tracked
+     */
+    public void partStarted(int partNumber) {
+        partStarted(partNumber, System.nanoTime());
+    }
+
+    void partStarted(int partNumber, long nowNanos) {
+        lock.lock();
+        try {
+            if (!runningParts.containsKey(partNumber)) runningParts.put(partNumber, nowNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a part that was successfully transferred (by any attempt)
+     */
+    public void partCompleted(int partNumber, long durationNanos) {
+        lock.lock();
+        try {
+            runningParts.remove(partNumber);
+            completedPartNanos.add(durationNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a part that failed (all attempts)
+     */
+    public void partFailed(int partNumber) {
+        lock.lock();
+        try {
+            runningParts.remove(partNumber);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the parts that should be speculatively re-uploaded now (in order of part number), given the number of
+     * parts the transfer is uploading. Returned parts are considered speculated and will not be returned again
+     */
+    public List<Integer> findStragglers(int totalParts) {
+        return findStragglers(totalParts, System.nanoTime());
+    }
+
+    List<Integer> findStragglers(int totalParts, long nowNanos) {
+        lock.lock();
+        try {
+            if (completedPartNanos.isEmpty() || completedPartNanos.size() < totalParts * minCompletedFraction)
+                return Collections.emptyList();
+
+            long medianNanos = median(completedPartNanos);
+            long thresholdNanos = Math.max((long) (medianNanos * stragglerFactor),
+                    TimeUnit.MILLISECONDS.toNanos(minStragglerTimeMs));
+
+            List<Integer> stragglers = new ArrayList<>();
+            for (Map.Entry<Integer, Long> entry : new TreeMap<>(runningParts).entrySet()) {
+                if (speculatedParts.size() >= maxSpeculativeParts) break;
+                int partNumber = entry.getKey();
+                long runningNanos = nowNanos - entry.getValue();
+                if (runningNanos > thresholdNanos && speculatedParts.add(partNumber)) {
+                    log.debug("part {} has been running for {}ms (median part time is {}ms); speculating",
+                            partNumber, TimeUnit.NANOSECONDS.toMillis(runningNanos), TimeUnit.NANOSECONDS.toMillis(medianNanos));
+                    stragglers.add(partNumber);
+                }
+            }
+            return stragglers;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    /**
+     * The number of parts that were speculatively re-uploaded in the current (or last) transfer
+     */
+    public int getSpeculatedPartCount() {
+        lock.lock();
+        try {
+            return speculatedParts.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getStragglerFactor() {
+        return stragglerFactor;
+    }
+
+    /**
+     * Sets how many times longer than the median part time a part must run to be considered a straggler. Default is
+     * {@link #DEFAULT_STRAGGLER_FACTOR}
+     */
+    public void setStragglerFactor(double stragglerFactor) {
+        this.stragglerFactor = stragglerFactor;
+    }
+
+    public double getMinCompletedFraction() {
+        return minCompletedFraction;
+    }
+
+    /**
+     * Sets the fraction of parts (0 to 1) that must be complete before any part is considered a straggler. Default is
+     * {@link #DEFAULT_MIN_COMPLETED_FRACTION}
+     */
+    public void setMinCompletedFraction(double minCompletedFraction) {
+        this.minCompletedFraction = minCompletedFraction;
+    }
+
+    public long getMinStragglerTimeMs() {
+        return minStragglerTimeMs;
+    }
+
+    /**
+     * Sets the minimum time a part must run before it is considered a straggler. Default is
+     * {@link #DEFAULT_MIN_STRAGGLER_TIME_MS}
+     */
+    public void setMinStragglerTimeMs(long minStragglerTimeMs) {
+        this.minStragglerTimeMs = minStragglerTimeMs;
+    }
+
+    public int getMaxSpeculativeParts() {
+        return maxSpeculativeParts;
+    }
+
+    /**
+     * Sets the maximum number of parts that will be speculatively re-uploaded per transfer. Default is
+     * {@link #DEFAULT_MAX_SPECULATIVE_PARTS}
+     */
+    public void setMaxSpeculativeParts(int maxSpeculativeParts) {
+        this.maxSpeculativeParts = maxSpeculativeParts;
+    }
+
+    public StragglerDetector withStragglerFactor(double stragglerFactor) {
+        setStragglerFactor(stragglerFactor);
+        return this;
+    }
+
+    public StragglerDetector withMinCompletedFraction(double minCompletedFraction) {
+        setMinCompletedFraction(minCompletedFraction);
+        return this;
+    }
+
+    public StragglerDetector withMinStragglerTimeMs(long minStragglerTimeMs) {
+        setMinStragglerTimeMs(minStragglerTimeMs);
+        return this;
+    }
+
+    public StragglerDetector withMaxSpeculativeParts(int maxSpeculativeParts) {
+        setMaxSpeculativeParts(maxSpeculativeParts);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "StragglerDetector{" +
+                "stragglerFactor=" + stragglerFactor +
+                ", minCompletedFraction=" + minCompletedFraction +
+                ", speculatedParts=" + getSpeculatedPartCount() +
+                '}';
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A shared, part-level scheduler for concurrent transfers. Each transfer gets its own executor from
+ * {@link #newTransferExecutor(int)}, and all part tasks submitted to those executors share a global limit on the
+ * number of tasks in flight. When there is spare capacity, the next task is taken from the transfer that has received
+ * the least service (relative to its weight), so a new transfer starts right away instead of queuing behind the
+ * remaining parts of a large one, and transfers with a higher weight get a proportionally larger share of capacity.
+ * <pre>
+ *     TransferScheduler scheduler = new TransferScheduler(32);
+ *     new LargeFileUploader(s3Client, bucket, key, file).withExecutorService(scheduler.newTransferExecutor()).upload();
+ * </pre>
+ * Threads are only created as needed, up to <code>maxInFlight</code>, and are reused across transfers. Transfer
+ * executors do not need to be shut down when a transfer is complete, but shutting one down (i.e. when a transfer is
+ * aborted) only affects the tasks of that transfer. Call {@link #close()} to release the scheduler's threads.
+ */
+public class TransferScheduler implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferScheduler.class);
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 16;
+
+    private static final AtomicInteger schedulerCount = new AtomicInteger();
+
+    private final ThreadPoolExecutor workers;
+    private final List<TransferExecutor> pendingTransfers = new ArrayList<>();
+    private int maxInFlight;
+    private int inFlight;
+    // the virtual time of the last dispatched task (a transfer that becomes active starts here)
+    private double virtualTime;
+
+    public TransferScheduler() {
+        this(DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public TransferScheduler(int maxInFlight) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be at least 1");
+        this.maxInFlight = maxInFlight;
+        String namePrefix = "transfer-scheduler-" + schedulerCount.incrementAndGet() + "-";
+        AtomicInteger threadCount = new AtomicInteger();
+        // the number of running tasks is limited by dispatch(), so the pool itself is unbounded
+        this.workers = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, namePrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates an executor for a single transfer with the default weight (1)
+     */
+    public ExecutorService newTransferExecutor() {
+        return newTransferExecutor(1);
+    }
+
+    /**
+     * Creates an executor for a single transfer. When transfers compete for capacity, each receives a share in
+     * proportion to its <code>weight</code>
+     */
+    public ExecutorService newTransferExecutor(int weight) {
+        if (weight < 1) throw new IllegalArgumentException("weight must be at least 1");
+        return new TransferExecutor(weight);
+    }
+
+    private void enqueue(TransferExecutor transfer, Runnable task) {
+        synchronized (this) {
+            if (workers.isShutdown()) throw new RejectedExecutionException("scheduler is closed");
+            transfer.queue.add(task);
+            if (!transfer.pending) {
+                // don't let an idle transfer build up credit
+                transfer.virtualTime = Math.max(transfer.virtualTime, virtualTime);
+                transfer.pending = true;
+                pendingTransfers.add(transfer);
+            }
+            dispatch();
+        }
+    }
+
+    /*
+     * must hold the scheduler lock
+     */
+    private void dispatch() {
+        while (inFlight < maxInFlight && !pendingTransfers.isEmpty()) {
+            TransferExecutor next = pendingTransfers.get(0);
+            for (TransferExecutor transfer : pendingTransfers) {
+                if (transfer.virtualTime < next.virtualTime) next = transfer;
+            }
+
+            Runnable task = next.queue.poll();
+            virtualTime = next.virtualTime;
+            next.virtualTime += 1.0 / next.weight;
+            if (next.queue.isEmpty()) {
+                next.pending = false;
+                pendingTransfers.remove(next);
+            }
+
+            inFlight++;
+            next.taskDispatched();
+            TransferExecutor transfer = next;
+            workers.execute(() -> runTask(transfer, task));
+        }
+    }
+
+    private void runTask(TransferExecutor transfer, Runnable task) {
+        try {
+            if (transfer.taskStarted()) {
+                task.run();
+            } else if (task instanceof Future) {
+                // transfer was stopped after this task was dispatched
+                ((Future<?>) task).cancel(false);
+            }
+        } catch (Throwable t) {
+            log.warn("uncaught exception in transfer task", t);
+        } finally {
+            transfer.taskFinished();
+            synchronized (this) {
+                inFlight--;
+                dispatch();
+            }
+        }
+    }
+
+    private synchronized List<Runnable> removeQueued(TransferExecutor transfer) {
+        List<Runnable> tasks = new ArrayList<>(transfer.queue);
+        transfer.queue.clear();
+        if (transfer.pending) {
+            transfer.pending = false;
+            pendingTransfers.remove(transfer);
+        }
+        return tasks;
+    }
+
+    public synchronized int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Sets the maximum number of tasks (from all transfers) that can run at once. Can be changed while transfers are
+     * running
+     */
+    public synchronized void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be at least 1");
+        this.maxInFlight = maxInFlight;
+        dispatch();
+    }
+
+    /**
+     * The number of tasks currently running
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Stops accepting new tasks. Running tasks are allowed to complete
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+
+    private class TransferExecutor extends AbstractExecutorService {
+        private final int weight;
+        // these are guarded by the scheduler lock
+        private final Queue<Runnable> queue = new ArrayDeque<>();
+        private boolean pending;
+        private double virtualTime;
+        // these are guarded by this executor's lock
+        private final Set<Thread> runningThreads = new HashSet<>();
+        private int activeTasks;
+        private boolean shutdown;
+        private boolean stopped;
+
+        TransferExecutor(int weight) {
+            this.weight = weight;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            synchronized (this) {
+                if (shutdown) throw new RejectedExecutionException("transfer executor is shut down");
+            }
+            enqueue(this, command);
+        }
+
+        synchronized void taskDispatched() {
+            activeTasks++;
+        }
+
+        /*
+         * returns false if the task should not be run
+         */
+        synchronized boolean taskStarted() {
+            if (stopped) return false;
+            runningThreads.add(Thread.currentThread());
+            return true;
+        }
+
+        synchronized void taskFinished() {
+            runningThreads.remove(Thread.currentThread());
+            activeTasks--;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            synchronized (this) {
+                shutdown = true;
+                stopped = true;
+                // only interrupt threads that are running this transfer's tasks
+                for (Thread thread : runningThreads) thread.interrupt();
+            }
+            return removeQueued(this);
+        }
+
+        @Override
+        public synchronized boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            synchronized (TransferScheduler.this) {
+                synchronized (this) {
+                    return shutdown && queue.isEmpty() && activeTasks == 0;
+                }
+            }
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!isTerminated()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return false;
+                synchronized (this) {
+                    // queued tasks are dispatched without notifying this executor, so poll
+                    wait(Math.min(TimeUnit.NANOSECONDS.toMillis(remaining) + 1, 100));
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Collects the {@link PartTransferMetrics} of a transfer and rolls them up into percentiles, overall and per host.
+ * Percentiles only consider parts that completed successfully and use the nearest-rank method. This class is
+ * thread-safe.
+ */
+public class TransferStatistics implements PartTransferListener {
+    private final List<PartTransferMetrics> parts = new ArrayList<>();
+
+    @Override
+    public synchronized void partTransferred(PartTransferMetrics metrics) {
+        parts.add(metrics);
+    }
+
+    /**
+     * Returns a snapshot of the metrics recorded so far, in order of completion
+     */
+    public synchronized List<PartTransferMetrics> getParts() {
+        return new ArrayList<>(parts);
+    }
+
+    public synchronized int getPartCount() {
+        return parts.size();
+    }
+
+    public synchronized int getFailedPartCount() {
+        int count = 0;
+        for (PartTransferMetrics part : parts) {
+            if (part.getError() != null) count++;
+        }
+        return count;
+    }
+
+    public synchronized int getTotalRetries() {
+        int count = 0;
+        for (PartTransferMetrics part : parts) {
+            count += part.getRetryCount();
+        }
+        return count;
+    }
+
+    public synchronized long getBytesTransferred() {
+        long bytes = 0;
+        for (PartTransferMetrics part : parts) {
+            bytes += part.getBytesTransferred();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the hosts that served at least one part (only available if the client records hosts)
+     */
+    public synchronized Set<String> getHosts() {
+        Set<String> hosts = new TreeSet<>();
+        for (PartTransferMetrics part : parts) {
+            if (part.getHost() != null) hosts.add(part.getHost());
+        }
+        return hosts;
+    }
+
+    /**
+     * Returns the given percentile (0-100) of part throughput in bytes/s, or 0 if no parts have completed
+     */
+    public double getThroughputPercentile(double percentile) {
+        return percentile(percentile, part -> true, PartTransferMetrics::getThroughput);
+    }
+
+    /**
+     * Returns the given percentile (0-100) of throughput in bytes/s for parts served by <code>host</code>, or 0 if no
+     * parts from that host have completed
+     */
+    public double getThroughputPercentile(final String host, double percentile) {
+        return percentile(percentile, part -> host.equals(part.getHost()), PartTransferMetrics::getThroughput);
+    }
+
+    /**
+     * Returns the given percentile (0-100) of the time to first byte, in nanoseconds
+     */
+    public long getTimeToFirstBytePercentile(double percentile) {
+        return (long) percentile(percentile, part -> true, PartTransferMetrics::getTimeToFirstByteNanos);
+    }
+
+    /**
+     * Returns the given percentile (0-100) of the time parts waited in the queue, in nanoseconds
+     */
+    public long getQueueWaitPercentile(double percentile) {
+        return (long) percentile(percentile, part -> true, PartTransferMetrics::getQueueWaitNanos);
+    }
+
+    private synchronized double percentile(double percentile, Predicate<PartTransferMetrics> filter,
+                                           ToDoubleFunction<PartTransferMetrics> value) {
+        if (percentile < 0 || percentile > 100) throw new IllegalArgumentException("percentile must be 0-100");
+        double[] values = new double[parts.size()];
+        int count = 0;
+        for (PartTransferMetrics part : parts) {
+            if (part.getError() == null && filter.test(part)) values[count++] = value.applyAsDouble(part);
+        }
+        if (count == 0) return 0;
+        Arrays.sort(values, 0, count);
+        int rank = (int) Math.ceil(percentile / 100 * count);
+        return values[Math.max(rank, 1) - 1];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TransferStatistics{parts=%d, failed=%d, retries=%d, throughput p50/p90/p99=%.1f/%.1f/%.1f MB/s, timeToFirstByte p50/p99=%d/%dms}",
+                getPartCount(), getFailedPartCount(), getTotalRetries(),
+                getThroughputPercentile(50) / 1024 / 1024, getThroughputPercentile(90) / 1024 / 1024,
+                getThroughputPercentile(99) / 1024 / 1024,
+                TimeUnit.NANOSECONDS.toMillis(getTimeToFirstBytePercentile(50)),
+                TimeUnit.NANOSECONDS.toMillis(getTimeToFirstBytePercentile(99)));
+    }
+}
@@ -28,19 +28,20 @@ package com.emc.object.s3;
 
 public final class VHostUtil {
     public static String getResourceString(S3Config s3Config, String namespace, String bucket, String path) {
-        String resource = path;
-
-        // check if bucket is in hostname
-        if (s3Config.isUseVHost()) {
-            if (bucket != null) resource = "/" + bucket + resource;
-        }
+        if (!s3Config.isUseVHost()) return path;
 
         // check if namespace is in hostname and must be signed
-        if (s3Config.isUseVHost() && s3Config.isSignNamespace()) {
-            if (namespace != null) resource = "/" + namespace + resource;
-        }
+        if (!s3Config.isSignNamespace()) namespace = null;
+
+        if (bucket == null && namespace == null) return path;
 
-        return resource;
+        // build the resource in one pass
+        StringBuilder resource = new StringBuilder(path.length()
+                + (namespace == null ? 0 : namespace.length() + 1)
+                + (bucket == null ? 0 : bucket.length() + 1));
+        if (namespace != null) resource.append('/').append(namespace);
+        if (bucket != null) resource.append('/').append(bucket);
+        return resource.append(path).toString();
     }
 
     private VHostUtil() {
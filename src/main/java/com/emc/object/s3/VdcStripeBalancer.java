@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.rest.smart.ecs.Vdc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spreads the parts of a {@link LargeFileDownloader} download across several VDCs of a geo-replicated deployment, so
+ * that the bandwidth of each site adds up (see {@link LargeFileDownloader#setStripeAcrossVdcs(boolean)}).
+ * <p>
+ * The throughput of each VDC is measured from the parts it completes (as a moving average). Each part is assigned to
+ * the healthy VDC that is expected to finish it first, given the bytes it already has in flight, so slower sites are
+ * given fewer parts. VDCs that have not completed a part yet are assumed to be as fast as the fastest measured VDC,
+ * so every site is tried. A failed part halves the VDC's measured throughput.
+ * <p>
+ * Note: a balancer instance holds state for a single download and must not be shared by concurrent downloads.
+ */
+public class VdcStripeBalancer {
+
+    private static final Logger log = LoggerFactory.getLogger(VdcStripeBalancer.class);
+
+    // weight of the latest part in the moving average
+    private static final double SMOOTHING = 0.3;
+
+    private final Map<Vdc, VdcStats> stats = new LinkedHashMap<>();
+
+    public VdcStripeBalancer(List<Vdc> vdcs) {
+        if (vdcs == null || vdcs.isEmpty()) throw new IllegalArgumentException("at least one VDC is required");
+        for (Vdc vdc : vdcs) {
+            stats.put(vdc, new VdcStats());
+        }
+    }
+
+    /**
+     * Chooses the VDC for a part of <code>length</code> bytes, and counts the part as in flight to that VDC. Every
+     * call must be followed by {@link #partCompleted(Vdc, long, long)}, {@link #partFailed(Vdc, long)} or
+     * {@link #partCancelled(Vdc, long)}
+     */
+    public synchronized Vdc acquire(long length) {
+        List<Vdc> candidates = new ArrayList<>();
+        for (Vdc vdc : stats.keySet()) {
+            if (vdc.isHealthy()) candidates.add(vdc);
+        }
+        if (candidates.isEmpty()) candidates.addAll(stats.keySet());
+
+        double fastest = 0;
+        for (VdcStats vdcStats : stats.values()) {
+            fastest = Math.max(fastest, vdcStats.bytesPerSecond);
+        }
+        if (fastest == 0) fastest = 1; // nothing measured yet; all VDCs are equal
+
+        Vdc best = null;
+        double bestFinish = Double.MAX_VALUE;
+        for (Vdc vdc : candidates) {
+            VdcStats vdcStats = stats.get(vdc);
+            double rate = vdcStats.bytesPerSecond > 0 ? vdcStats.bytesPerSecond : fastest;
+            double finish = (vdcStats.bytesInFlight + length) / rate;
+            if (finish < bestFinish) {
+                best = vdc;
+                bestFinish = finish;
+            }
+        }
+
+        stats.get(best).bytesInFlight += length;
+        return best;
+    }
+
+    public synchronized void partCompleted(Vdc vdc, long length, long durationNanos) {
+        VdcStats vdcStats = stats.get(vdc);
+        vdcStats.bytesInFlight -= length;
+        vdcStats.bytesTransferred += length;
+        vdcStats.partsCompleted++;
+
+        double bytesPerSecond = length * 1_000_000_000d / Math.max(durationNanos, 1);
+        if (vdcStats.bytesPerSecond == 0) vdcStats.bytesPerSecond = bytesPerSecond;
+        else vdcStats.bytesPerSecond += SMOOTHING * (bytesPerSecond - vdcStats.bytesPerSecond);
+    }
+
+    public synchronized void partFailed(Vdc vdc, long length) {
+        VdcStats vdcStats = stats.get(vdc);
+        vdcStats.bytesInFlight -= length;
+        vdcStats.partsFailed++;
+        vdcStats.bytesPerSecond /= 2;
+        log.debug("part failed on VDC {}; measured throughput reduced to {} B/s", vdc.getName(), (long) vdcStats.bytesPerSecond);
+    }
+
+    /**
+     * Releases a part that was stopped because the download was paused or cancelled (this does not count against
+     * the VDC)
+     */
+    public synchronized void partCancelled(Vdc vdc, long length) {
+        stats.get(vdc).bytesInFlight -= length;
+    }
+
+    /**
+     * Returns the measured throughput of <code>vdc</code> in bytes per second (0 if it has not completed a part)
+     */
+    public synchronized long getThroughput(Vdc vdc) {
+        return (long) stats.get(vdc).bytesPerSecond;
+    }
+
+    public synchronized long getBytesTransferred(Vdc vdc) {
+        return stats.get(vdc).bytesTransferred;
+    }
+
+    public synchronized int getPartsCompleted(Vdc vdc) {
+        return stats.get(vdc).partsCompleted;
+    }
+
+    public synchronized int getPartsFailed(Vdc vdc) {
+        return stats.get(vdc).partsFailed;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder("VdcStripeBalancer{");
+        for (Map.Entry<Vdc, VdcStats> entry : stats.entrySet()) {
+            if (sb.length() > 18) sb.append(", ");
+            sb.append(entry.getKey().getName()).append("=").append(entry.getValue().partsCompleted).append(" parts @ ")
+                    .append((long) entry.getValue().bytesPerSecond).append(" B/s");
+        }
+        return sb.append('}').toString();
+    }
+
+    private static class VdcStats {
+        long bytesInFlight;
+        long bytesTransferred;
+        int partsCompleted;
+        int partsFailed;
+        double bytesPerSecond;
+    }
+}
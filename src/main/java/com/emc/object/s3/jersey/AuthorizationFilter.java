@@ -33,9 +33,35 @@ import com.sun.jersey.api.client.ClientRequest;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.filter.ClientFilter;
 
+import java.net.URI;
 import java.util.Map;
 
 public class AuthorizationFilter extends ClientFilter {
+    static final String PROP_SIGNING_CONTEXT = "com.emc.object.s3.signingContext";
+
+    /**
+     * Signs the request. The parsed query parameters and the resource string are kept in a request property, so
+     * re-signing the same URI (i.e. after Content-MD5 is generated, or on a retry) does not parse them again.
+     */
+    static void sign(S3Config s3Config, S3Signer signer, ClientRequest request) {
+        URI uri = request.getURI();
+        SigningContext context = (SigningContext) request.getProperties().get(PROP_SIGNING_CONTEXT);
+        if (context == null || context.uri != uri) {
+            context = new SigningContext(uri,
+                    RestUtil.getQueryParameterMap(uri.getRawQuery()),
+                    VHostUtil.getResourceString(s3Config,
+                            (String) request.getProperties().get(RestUtil.PROPERTY_NAMESPACE),
+                            (String) request.getProperties().get(S3Constants.PROPERTY_BUCKET_NAME),
+                            RestUtil.getEncodedPath(uri)));
+            request.getProperties().put(PROP_SIGNING_CONTEXT, context);
+        }
+
+        signer.sign(request,
+                context.resource,
+                context.parameters,
+                request.getHeaders());
+    }
+
     private S3Config s3Config;
     private S3Signer signer;
 
@@ -56,19 +82,22 @@ public class AuthorizationFilter extends ClientFilter {
         }
         // if no identity is provided, this is an anonymous client
         if (s3Config.getIdentity() != null) {
-            Map<String, String> parameters = RestUtil.getQueryParameterMap(request.getURI().getRawQuery());
-
-            String resource = VHostUtil.getResourceString(s3Config,
-                    (String) request.getProperties().get(RestUtil.PROPERTY_NAMESPACE),
-                    (String) request.getProperties().get(S3Constants.PROPERTY_BUCKET_NAME),
-                    RestUtil.getEncodedPath(request.getURI()));
-
-            signer.sign(request,
-                    resource,
-                    parameters,
-                    request.getHeaders());
+            sign(s3Config, signer, request);
         }
 
         return getNext().handle(request);
     }
+
+    /* the URI is compared by identity; any filter that changes the URI replaces the instance */
+    private static final class SigningContext {
+        final URI uri;
+        final Map<String, String> parameters;
+        final String resource;
+
+        SigningContext(URI uri, Map<String, String> parameters, String resource) {
+            this.uri = uri;
+            this.parameters = parameters;
+            this.resource = resource;
+        }
+    }
 }
@@ -157,17 +157,7 @@ public class ChecksumFilter extends ClientFilter {
 
             // need to re-sign request because Content-MD5 is included in the signature!
             if (s3Config.getIdentity() != null) {
-                Map<String, String> parameters = RestUtil.getQueryParameterMap(request.getURI().getRawQuery());
-
-                String resource = VHostUtil.getResourceString(s3Config,
-                        (String) request.getProperties().get(RestUtil.PROPERTY_NAMESPACE),
-                        (String) request.getProperties().get(S3Constants.PROPERTY_BUCKET_NAME),
-                        RestUtil.getEncodedPath(request.getURI()));
-
-                signer.sign(request,
-                        resource,
-                        parameters,
-                        request.getHeaders());
+                AuthorizationFilter.sign(s3Config, signer, request);
             }
 
             // write the complete buffered data
@@ -60,7 +60,8 @@ public class GeoPinningFilter extends ClientFilter {
         // if there's no bucket, we don't need to pin the request (there's no write or read)
         String bucketName = (String) request.getProperties().get(S3Constants.PROPERTY_BUCKET_NAME);
         String objectKey = (String) request.getProperties().get(S3Constants.PROPERTY_OBJECT_KEY);
-        if (bucketName != null) {
+        // a request that was explicitly pinned to a VDC (i.e. a part of a striped download) keeps its pin
+        if (bucketName != null && request.getProperties().get(GeoPinningRule.PROP_GEO_PINNED_VDC) == null) {
             List<Vdc> healthyVdcs = new ArrayList<>();
 
             for (Vdc vdc : objectConfig.getVdcs()) {
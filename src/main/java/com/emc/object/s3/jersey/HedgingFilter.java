@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2015, EMC Corporation.
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * + Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * + Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * + The name of EMC Corporation may not be used to endorse or promote
+ *   products derived from this software without specific prior written
+ *   permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3.jersey;
+
+import com.emc.object.Method;
+import com.emc.object.s3.HedgingPolicy;
+import com.emc.object.s3.S3Exception;
+import com.emc.object.util.VirtualThreadSupport;
+import com.emc.rest.smart.Host;
+import com.emc.rest.smart.LoadBalancer;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hedges idempotent reads according to a {@link HedgingPolicy}. Only requests marked with {@link #PROP_HEDGEABLE}
+ * (and using GET or HEAD) are hedged; all others pass straight through.
+ * <p>
+ * A hedged request runs its first attempt on a background thread. If that attempt has no response within the hedge
+ * delay (and the policy's budget allows), a clone of the request is sent as a second attempt, and the first response
+ * (or definitive error) from either attempt is returned. The other attempt is cancelled: its thread is interrupted
+ * (which aborts blocking I/O on virtual threads), and if it still produces a response, that response is closed.
+ * <p>
+ * This filter must be applied outside the smart filter (so each attempt selects its own host, and the hedge can avoid
+ * the host of the first attempt via {@link HedgingRule}) and inside the retry filter (so a retry is hedged as a
+ * whole).
+ */
+public class HedgingFilter extends ClientFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(HedgingFilter.class);
+
+    /**
+     * Request property that marks a request as safe to hedge
+     */
+    public static final String PROP_HEDGEABLE = "com.emc.object.hedgeable";
+
+    private static final AtomicInteger filterCount = new AtomicInteger();
+
+    private final HedgingPolicy policy;
+    private final LoadBalancer loadBalancer;
+    private final ExecutorService executor;
+    private final GeoPinningRule geoPinningRule = new GeoPinningRule();
+
+    /**
+     * @param loadBalancer the smart client's load balancer, used to find another host for a hedge. May be null (if the
+     *                     smart client is not in use), in which case a hedge uses the same endpoint
+     */
+    public HedgingFilter(HedgingPolicy policy, LoadBalancer loadBalancer) {
+        this.policy = policy;
+        this.loadBalancer = loadBalancer;
+        this.executor = VirtualThreadSupport.newUnboundedExecutor("hedging-filter-" + filterCount.incrementAndGet() + "-");
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+        if (!isHedgeable(request)) return getNext().handle(request);
+
+        policy.requestStarted();
+
+        // clone before the first attempt starts changing the request (host, auth headers, properties). clone() does
+        // not copy properties, and the hedge needs them (i.e. to sign the right resource and stay in a pinned VDC)
+        ClientRequest hedgeRequest = request.clone();
+        hedgeRequest.getProperties().putAll(request.getProperties());
+
+        HedgedCall call = new HedgedCall();
+        call.primary = call.submit(request, false);
+        try {
+            try {
+                return call.result.get(policy.getHedgeDelayNanos(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (!call.result.isDone() && policy.tryAcquireHedge()) {
+                    excludeHost(hedgeRequest, request);
+                    log.debug("no response after hedge delay; sending hedge for {} {}",
+                            hedgeRequest.getMethod(), hedgeRequest.getURI());
+                    call.hedge = call.submit(hedgeRequest, true);
+                }
+                return call.result.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable t = e.getCause();
+            if (t instanceof RuntimeException) throw (RuntimeException) t;
+            if (t instanceof Error) throw (Error) t;
+            throw new ClientHandlerException(t);
+        } catch (InterruptedException e) {
+            call.cancelAll();
+            Thread.currentThread().interrupt();
+            throw new ClientHandlerException("interrupted while waiting for a hedged request", e);
+        }
+    }
+
+    /**
+     * Stops the threads used by this filter. Pending attempts are interrupted
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public HedgingPolicy getPolicy() {
+        return policy;
+    }
+
+    /* only reads that were explicitly marked by the client are hedged */
+    private boolean isHedgeable(ClientRequest request) {
+        if (!Boolean.TRUE.equals(request.getProperties().get(PROP_HEDGEABLE))) return false;
+        String method = request.getMethod();
+        return Method.GET.name().equalsIgnoreCase(method) || Method.HEAD.name().equalsIgnoreCase(method);
+    }
+
+    /*
+     * steer the hedge away from the host the first attempt went to, as long as the load balancer has another host
+     * the hedge is allowed to use
+     */
+    private void excludeHost(ClientRequest hedgeRequest, ClientRequest primaryRequest) {
+        if (loadBalancer == null) return;
+        String primaryHost = primaryRequest.getURI().getHost(); // set by the smart filter
+        for (Host host : loadBalancer.getAllHosts()) {
+            if (!host.getName().equalsIgnoreCase(primaryHost)
+                    && !geoPinningRule.shouldVeto(host, hedgeRequest.getProperties())) {
+                hedgeRequest.getProperties().put(HedgingRule.PROP_EXCLUDED_HOST, primaryHost);
+                return;
+            }
+        }
+    }
+
+    /*
+     * an error response (other than a server error) is a definitive answer; there is no point waiting for the other
+     * attempt
+     */
+    private static boolean isDefinitive(Throwable t) {
+        return t instanceof S3Exception && ((S3Exception) t).getHttpCode() > 0 && ((S3Exception) t).getHttpCode() < 500;
+    }
+
+    /* release the connection of a response that lost the race */
+    private static void discard(ClientResponse response) {
+        try {
+            response.close();
+        } catch (RuntimeException e) {
+            log.debug("error closing response from cancelled attempt", e);
+        }
+    }
+
+    private class HedgedCall {
+        final CompletableFuture<ClientResponse> result = new CompletableFuture<>();
+        final AtomicInteger pendingAttempts = new AtomicInteger();
+        volatile Throwable error; // the first attempt's error is preferred
+        volatile Future<?> primary, hedge;
+
+        Future<?> submit(ClientRequest request, boolean isHedge) {
+            pendingAttempts.incrementAndGet();
+            return executor.submit(() -> attempt(request, isHedge));
+        }
+
+        void attempt(ClientRequest request, boolean isHedge) {
+            long startNanos = System.nanoTime();
+            try {
+                ClientResponse response = getNext().handle(request);
+                if (!isHedge) policy.recordResponseTime(System.nanoTime() - startNanos);
+                if (result.complete(response)) {
+                    won(isHedge);
+                } else {
+                    discard(response);
+                }
+            } catch (Throwable t) {
+                if (isDefinitive(t)) {
+                    if (!isHedge) policy.recordResponseTime(System.nanoTime() - startNanos);
+                    if (result.completeExceptionally(t)) won(isHedge);
+                } else {
+                    // a failed attempt doesn't decide the request while the other attempt is still running
+                    if (!isHedge || error == null) error = t;
+                    if (pendingAttempts.decrementAndGet() == 0) result.completeExceptionally(error);
+                    return;
+                }
+            }
+            pendingAttempts.decrementAndGet();
+        }
+
+        void won(boolean isHedge) {
+            if (isHedge) policy.hedgeWon();
+            Future<?> loser = isHedge ? primary : hedge;
+            if (loser != null) loser.cancel(true);
+        }
+
+        void cancelAll() {
+            // if an attempt already won, nobody will read its response, so release it
+            if (!result.cancel(false) && !result.isCompletedExceptionally()) discard(result.join());
+            Future<?> future = primary;
+            if (future != null) future.cancel(true);
+            future = hedge;
+            if (future != null) future.cancel(true);
+        }
+    }
+}
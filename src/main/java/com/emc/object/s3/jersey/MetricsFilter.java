@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2015, EMC Corporation.
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * + Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * + Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * + The name of EMC Corporation may not be used to endorse or promote
+ *   products derived from this software without specific prior written
+ *   permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3.jersey;
+
+import com.emc.object.s3.S3Exception;
+import com.emc.object.util.RequestMetrics;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+
+/**
+ * Records the latency of each request attempt in a {@link RequestMetrics} collector. Operation names are built once
+ * up front, and the subresource parameter is found by scanning the raw query in place, so recording does not
+ * allocate.
+ */
+public class MetricsFilter extends ClientFilter {
+    // subresource parameters that identify an operation, in order of precedence
+    private static final String[] OPERATION_PARAMETERS = {
+            "uploads", "uploadId", "acl", "query", "searchmetadata", "delete", "versions", "versioning", "tagging",
+            "retention", "legal-hold", "object-lock", "enable-object-lock", "lifecycle", "cors", "policy", "location",
+            "endpoint"
+    };
+    private static final String[] METHODS = {"GET", "HEAD", "PUT", "POST", "DELETE"};
+    // method -> parameter (+ 1, with 0 = none) -> operation name
+    private static final String[][] OPERATIONS = new String[METHODS.length][OPERATION_PARAMETERS.length + 1];
+
+    static {
+        for (int m = 0; m < METHODS.length; m++) {
+            OPERATIONS[m][0] = METHODS[m];
+            for (int p = 0; p < OPERATION_PARAMETERS.length; p++) {
+                OPERATIONS[m][p + 1] = METHODS[m] + " ?" + OPERATION_PARAMETERS[p];
+            }
+        }
+    }
+
+    private final RequestMetrics requestMetrics;
+
+    public MetricsFilter(RequestMetrics requestMetrics) {
+        this.requestMetrics = requestMetrics;
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+        long startNanos = System.nanoTime();
+        int statusCode = 0;
+        try {
+            ClientResponse response = getNext().handle(request);
+            statusCode = response.getStatus();
+            return response;
+        } catch (S3Exception e) {
+            statusCode = e.getHttpCode();
+            throw e;
+        } finally {
+            requestMetrics.record(getOperation(request.getMethod(), request.getURI().getRawQuery()),
+                    request.getURI().getHost(), statusCode, System.nanoTime() - startNanos);
+        }
+    }
+
+    static String getOperation(String method, String rawQuery) {
+        for (int m = 0; m < METHODS.length; m++) {
+            if (METHODS[m].equals(method)) return OPERATIONS[m][findOperationParameter(rawQuery) + 1];
+        }
+        return method;
+    }
+
+    /*
+     * returns the index of the highest-precedence operation parameter in the query, or -1 if there is none
+     */
+    private static int findOperationParameter(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) return -1;
+        int found = OPERATION_PARAMETERS.length;
+        int start = 0;
+        while (start < rawQuery.length()) {
+            int end = rawQuery.indexOf('&', start);
+            if (end < 0) end = rawQuery.length();
+            int nameEnd = rawQuery.indexOf('=', start);
+            if (nameEnd < 0 || nameEnd > end) nameEnd = end;
+            for (int p = 0; p < found; p++) {
+                String parameter = OPERATION_PARAMETERS[p];
+                if (parameter.length() == nameEnd - start && rawQuery.regionMatches(start, parameter, 0, parameter.length())) {
+                    found = p;
+                    break;
+                }
+            }
+            start = end + 1;
+        }
+        return found < OPERATION_PARAMETERS.length ? found : -1;
+    }
+}
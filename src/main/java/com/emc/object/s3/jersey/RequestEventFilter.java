@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2015, EMC Corporation.
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * + Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * + Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * + The name of EMC Corporation may not be used to endorse or promote
+ *   products derived from this software without specific prior written
+ *   permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3.jersey;
+
+import com.emc.object.s3.RequestEvent;
+import com.emc.object.s3.RequestEventListener;
+import com.emc.object.s3.RequestTimeline;
+import com.emc.object.s3.S3Exception;
+import com.emc.rest.smart.ecs.Vdc;
+import com.sun.jersey.api.client.*;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.impl.client.AbstractHttpClient;
+import org.apache.http.protocol.ExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Reports the lifecycle of each request attempt to a {@link RequestEventListener}. This filter must be applied inside
+ * the smart filter (so the selected host is known) and the retry filter (so each attempt is reported). Connection
+ * timing is captured by interceptors on the Apache HTTP client (see {@link #instrument(AbstractHttpClient)}), which
+ * run on the same thread as the filter.
+ * <p>
+ * This filter is only installed when a listener is configured, so requests made without a listener are unaffected.
+ */
+public class RequestEventFilter extends ClientFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestEventFilter.class);
+
+    /**
+     * Request property used to pass the current attempt's timeline to outer filters (i.e. {@link RetryFilter})
+     */
+    public static final String PROP_REQUEST_TIMELINE = "com.emc.object.requestTimeline";
+
+    // the attempt being executed on this thread, for the HTTP client interceptors
+    private static final ThreadLocal<RequestTimeline> currentTimeline = new ThreadLocal<>();
+
+    /**
+     * Adds interceptors to the HTTP client that record when a connection is ready and when response headers arrive.
+     * They only act on requests made through this filter
+     */
+    public static void instrument(AbstractHttpClient httpClient) {
+        httpClient.addRequestInterceptor((HttpRequestInterceptor) (request, context) -> {
+            RequestTimeline timeline = currentTimeline.get();
+            if (timeline == null) return;
+            // request interceptors run once the connection is open, just before the request is sent
+            timeline.setConnectedNanos(System.nanoTime());
+            HttpConnection connection = (HttpConnection) context.getAttribute(ExecutionContext.HTTP_CONNECTION);
+            timeline.setConnectionReused(connection != null && connection.getMetrics().getRequestCount() > 0);
+        });
+        httpClient.addResponseInterceptor((HttpResponseInterceptor) (response, context) -> {
+            RequestTimeline timeline = currentTimeline.get();
+            if (timeline != null) timeline.setResponseNanos(System.nanoTime());
+        });
+    }
+
+    /**
+     * Notifies the listener, logging any exception it throws
+     */
+    public static void notify(RequestEventListener listener, RequestEvent event, RequestTimeline timeline) {
+        try {
+            listener.requestEvent(event, timeline);
+        } catch (RuntimeException e) {
+            log.warn("request event listener failed", e);
+        }
+    }
+
+    private final RequestEventListener listener;
+
+    public RequestEventFilter(RequestEventListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+        Integer retries = (Integer) request.getProperties().get(RetryFilter.PROP_RETRY_COUNT);
+        Vdc vdc = (Vdc) request.getProperties().get(GeoPinningRule.PROP_GEO_PINNED_VDC);
+        RequestTimeline timeline = new RequestTimeline(request.getMethod(), request.getURI(),
+                retries == null ? 1 : retries + 1, vdc == null ? null : vdc.getName());
+        request.getProperties().put(PROP_REQUEST_TIMELINE, timeline);
+        notify(listener, RequestEvent.ATTEMPT_STARTED, timeline);
+
+        if (request.getEntity() != null) request.setAdapter(new TimelineAdapter(request.getAdapter(), timeline));
+
+        ClientResponse response;
+        currentTimeline.set(timeline);
+        try {
+            response = getNext().handle(request);
+        } catch (RuntimeException e) {
+            if (e instanceof S3Exception) timeline.setStatusCode(((S3Exception) e).getHttpCode());
+            timeline.setError(e);
+            timeline.setCompletedNanos(System.nanoTime());
+            notify(listener, RequestEvent.ATTEMPT_FAILED, timeline);
+            throw e;
+        } finally {
+            currentTimeline.remove();
+        }
+
+        if (timeline.getResponseNanos() == 0) timeline.setResponseNanos(System.nanoTime());
+        timeline.setStatusCode(response.getStatus());
+        notify(listener, RequestEvent.RESPONSE_RECEIVED, timeline);
+
+        InputStream entityStream = response.getEntityInputStream();
+        if (entityStream == null) {
+            responseRead(timeline);
+        } else {
+            response.setEntityInputStream(new TimelineInputStream(entityStream, timeline));
+        }
+        return response;
+    }
+
+    private void responseRead(RequestTimeline timeline) {
+        timeline.setCompletedNanos(System.nanoTime());
+        notify(listener, RequestEvent.RESPONSE_READ, timeline);
+    }
+
+    private class TimelineAdapter extends AbstractClientRequestAdapter {
+        private final RequestTimeline timeline;
+
+        TimelineAdapter(ClientRequestAdapter parent, RequestTimeline timeline) {
+            super(parent);
+            this.timeline = timeline;
+        }
+
+        @Override
+        public OutputStream adapt(ClientRequest request, OutputStream out) throws IOException {
+            out = new FilterOutputStream(out) {
+                private boolean closed;
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    if (!closed) {
+                        closed = true;
+                        timeline.setRequestSentNanos(System.nanoTime());
+                        RequestEventFilter.notify(listener, RequestEvent.REQUEST_SENT, timeline);
+                    }
+                }
+            };
+            return getAdapter().adapt(request, out);
+        }
+    }
+
+    private class TimelineInputStream extends FilterInputStream {
+        private final RequestTimeline timeline;
+        private boolean read;
+
+        TimelineInputStream(InputStream in, RequestTimeline timeline) {
+            super(in);
+            this.timeline = timeline;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) finished();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count < 0) finished();
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                finished();
+            }
+        }
+
+        private void finished() {
+            if (read) return;
+            read = true;
+            responseRead(timeline);
+        }
+    }
+}
@@ -26,6 +26,10 @@
  */
 package com.emc.object.s3.jersey;
 
+import com.emc.object.s3.PartTransferMetrics;
+import com.emc.object.s3.RequestEvent;
+import com.emc.object.s3.RequestEventListener;
+import com.emc.object.s3.RequestTimeline;
 import com.emc.object.s3.S3Config;
 import com.emc.object.s3.S3Exception;
 import com.sun.jersey.api.client.ClientHandlerException;
@@ -56,6 +60,7 @@ public class RetryFilter extends ClientFilter {
         int retryCount = 0;
         InputStream entityStream = null;
         if (clientRequest.getEntity() instanceof InputStream) entityStream = (InputStream) clientRequest.getEntity();
+        PartTransferMetrics partMetrics = (PartTransferMetrics) clientRequest.getProperties().get(PartTransferMetrics.PROP_PART_METRICS);
         while (true) {
             try {
                 // if using an InputStream, mark the stream so we can rewind it in case of an error
@@ -92,9 +97,11 @@ public class RetryFilter extends ClientFilter {
                     }
                 }
 
+                int retryDelay = s3Config.getInitialRetryDelay() * (int) Math.pow(2, retryCount - 1);
+                notifyRetry(clientRequest, retryDelay);
+
                 // wait for retry delay
-                if (s3Config.getInitialRetryDelay() > 0) {
-                    int retryDelay = s3Config.getInitialRetryDelay() * (int) Math.pow(2, retryCount - 1);
+                if (retryDelay > 0) {
                     try {
                         log.debug("waiting {}ms before retry", retryDelay);
                         Thread.sleep(retryDelay);
@@ -105,7 +112,20 @@ public class RetryFilter extends ClientFilter {
 
                 log.info("error received in response [{}], retrying ({} of {})...", new Object[] { t, retryCount, s3Config.getRetryLimit() });
                 clientRequest.getProperties().put(PROP_RETRY_COUNT, retryCount);
+                if (partMetrics != null) partMetrics.setRetryCount(retryCount);
+            } finally {
+                // the smart filter (below us) sets the host on the request URI
+                if (partMetrics != null) partMetrics.setHost(clientRequest.getURI().getHost());
             }
         }
     }
+
+    private void notifyRetry(ClientRequest clientRequest, int retryDelay) {
+        RequestEventListener listener = s3Config.getRequestEventListener();
+        if (listener == null) return;
+        RequestTimeline timeline = (RequestTimeline) clientRequest.getProperties().get(RequestEventFilter.PROP_REQUEST_TIMELINE);
+        if (timeline == null) return;
+        timeline.setRetryDelayMs(retryDelay);
+        RequestEventFilter.notify(listener, RequestEvent.RETRY_SCHEDULED, timeline);
+    }
 }
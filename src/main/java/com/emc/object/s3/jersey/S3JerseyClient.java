@@ -31,6 +31,7 @@ import com.emc.object.s3.*;
 import com.emc.object.s3.bean.*;
 import com.emc.object.s3.request.*;
 import com.emc.object.util.RestUtil;
+import com.emc.rest.smart.HostVetoRule;
 import com.emc.rest.smart.LoadBalancer;
 import com.emc.rest.smart.SmartConfig;
 import com.emc.rest.smart.ecs.EcsHostListProvider;
@@ -39,6 +40,9 @@ import com.emc.rest.smart.jersey.SmartFilter;
 import com.sun.jersey.api.client.*;
 import com.sun.jersey.api.client.config.ClientConfig;
 import com.sun.jersey.api.client.filter.ClientFilter;
+import com.sun.jersey.client.apache4.ApacheHttpClient4Handler;
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.client.AbstractHttpClient;
 
 import java.io.InputStream;
 import java.io.StringReader;
@@ -126,6 +130,7 @@ public class S3JerseyClient extends AbstractJerseyClient implements S3Client {
     protected Client client;
     protected LoadBalancer loadBalancer;
     protected S3Signer signer;
+    protected HedgingFilter hedgingFilter;
 
     public S3JerseyClient(S3Config s3Config) {
         this(s3Config, null);
@@ -187,7 +192,16 @@ public class S3JerseyClient extends AbstractJerseyClient implements S3Client {
             hostListProvider.setVdcs(s3Config.getVdcs());
 
             // S.C. - GEO-PINNING
-            if (s3Config.isGeoPinningEnabled()) loadBalancer.withVetoRules(new GeoPinningRule());
+            // (also used to pin individual requests to a VDC, i.e. for striped downloads)
+            List<HostVetoRule> vetoRules = new ArrayList<>();
+            if (s3Config.isGeoPinningEnabled() || s3Config.getVdcs().size() > 1)
+                vetoRules.add(new GeoPinningRule());
+
+            // S.C. - HEDGING
+            // (a hedged attempt avoids the host of the attempt it is hedging)
+            if (s3Config.getHedgingPolicy() != null) vetoRules.add(new HedgingRule());
+
+            if (!vetoRules.isEmpty()) loadBalancer.withVetoRules(vetoRules.toArray(new HostVetoRule[0]));
 
             // S.C. - CLIENT CREATION
             // create a load-balancing jersey client
@@ -212,15 +226,29 @@ public class S3JerseyClient extends AbstractJerseyClient implements S3Client {
             }
             handler = filter.getNext();
         }
+        // the remaining handler is the HTTP client
+        if (s3Config.getRequestEventListener() != null && handler instanceof ApacheHttpClient4Handler) {
+            HttpClient httpClient = ((ApacheHttpClient4Handler) handler).getHttpClient();
+            if (httpClient instanceof AbstractHttpClient) RequestEventFilter.instrument((AbstractHttpClient) httpClient);
+        }
         // jersey filters
         client.addFilter(new ErrorFilter());
         if (s3Config.getFaultInjectionRate() > 0.0f)
             client.addFilter(new FaultInjectionFilter(s3Config.getFaultInjectionRate()));
         if (s3Config.isChecksumEnabled()) client.addFilter(new ChecksumFilter(s3Config));
         client.addFilter(new AuthorizationFilter(s3Config));
+        // inside the smart filter, so the selected host is known; inside the retry filter, so each attempt is recorded
+        if (s3Config.getRequestMetrics() != null) client.addFilter(new MetricsFilter(s3Config.getRequestMetrics()));
+        if (s3Config.getRequestEventListener() != null)
+            client.addFilter(new RequestEventFilter(s3Config.getRequestEventListener()));
         if (smartFilter != null) {
             client.addFilter(smartFilter);
         }
+        // outside the smart filter, so each attempt selects its own host; inside the retry filter, so a retry is hedged
+        if (s3Config.getHedgingPolicy() != null) {
+            hedgingFilter = new HedgingFilter(s3Config.getHedgingPolicy(), smartFilter != null ? loadBalancer : null);
+            client.addFilter(hedgingFilter);
+        }
         if (s3Config.isRetryEnabled()) client.addFilter(new RetryFilter(s3Config)); // replaces the apache retry handler
         if (s3Config.isGeoPinningEnabled()) client.addFilter(new GeoPinningFilter(s3Config));
         client.addFilter(new BucketFilter(s3Config));
@@ -256,6 +284,7 @@ public class S3JerseyClient extends AbstractJerseyClient implements S3Client {
      */
     @Override
     public void destroy() {
+        if (hedgingFilter != null) hedgingFilter.shutdown();
         SmartClientFactory.destroy(client);
     }
 
@@ -499,6 +528,7 @@ public class S3JerseyClient extends AbstractJerseyClient implements S3Client {
 
     @Override
     public ListObjectsResult listObjects(ListObjectsRequest request) {
+        if (hedgingFilter != null) request.property(HedgingFilter.PROP_HEDGEABLE, Boolean.TRUE);
         ListObjectsResult result = executeRequest(client, request, ListObjectsResult.class);
         if (result.isTruncated() && result.getNextMarker() == null)
             result.setNextMarker(result.getObjects().get(result.getObjects().size() - 1).getKey());
@@ -602,6 +632,7 @@ public class S3JerseyClient extends AbstractJerseyClient implements S3Client {
                 // enable checksum of the object (verification is handled in interceptor)
                 request.property(RestUtil.PROPERTY_VERIFY_READ_CHECKSUM, Boolean.TRUE);
             }
+            if (hedgingFilter != null) request.property(HedgingFilter.PROP_HEDGEABLE, Boolean.TRUE);
 
             GetObjectResult<T> result = new GetObjectResult<T>();
             ClientResponse response = executeRequest(client, request);
@@ -658,6 +689,7 @@ public class S3JerseyClient extends AbstractJerseyClient implements S3Client {
 
     @Override
     public S3ObjectMetadata getObjectMetadata(GetObjectMetadataRequest request) {
+        if (hedgingFilter != null) request.property(HedgingFilter.PROP_HEDGEABLE, Boolean.TRUE);
         try {
             return S3ObjectMetadata.fromHeaders(executeAndClose(client, request).getHeaders());
         } catch (S3Exception e) {
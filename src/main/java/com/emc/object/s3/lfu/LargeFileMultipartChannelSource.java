@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3.lfu;
+
+import com.emc.object.util.FileChannelSegmentInputStream;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A file-based {@link LargeFileMultipartSource} that opens a single {@link FileChannel} and serves every part with
+ * positional reads on that channel. Compared to {@link LargeFileMultipartFileSource}, this avoids opening a new file
+ * handle and seeking for each part, which matters when uploading very large files in many parts.
+ * <p>
+ * The channel is opened lazily and must be released with {@link #close()} (LargeFileUploader will do this
+ * automatically when <code>closeStream</code> is true). A closed source will reopen the channel if it is used again.
+ */
+public class LargeFileMultipartChannelSource implements LargeFileMultipartSource, Closeable {
+    private final File file;
+    private FileChannel channel;
+    // guards (re)opening the channel, which is file I/O, so it must not be a monitor (that would pin virtual threads)
+    private final Lock lock = new ReentrantLock();
+
+    public LargeFileMultipartChannelSource(File file) {
+        this.file = file;
+        // sanity check
+        if (!file.exists() || !file.canRead())
+            throw new IllegalArgumentException("cannot read file: " + file.getPath());
+    }
+
+    @Override
+    public long getTotalSize() {
+        return file.length();
+    }
+
+    @Override
+    public InputStream getCompleteDataStream() throws IOException {
+        return new FileInputStream(file);
+    }
+
+    @Override
+    public InputStream getPartDataStream(long offset, long length) throws IOException {
+        return new FileChannelSegmentInputStream(getChannel(), offset, length);
+    }
+
+    /*
+     * note: a FileChannel is closed for all readers if any thread is interrupted during a read, so we make sure to
+     * reopen it in that case
+     */
+    private FileChannel getChannel() throws IOException {
+        lock.lock();
+        try {
+            if (channel == null || !channel.isOpen()) channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            return channel;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+}
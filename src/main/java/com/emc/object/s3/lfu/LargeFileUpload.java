@@ -27,6 +27,8 @@
  */
 package com.emc.object.s3.lfu;
 
+import com.emc.object.s3.TransferStatistics;
+
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -58,4 +60,13 @@ public interface LargeFileUpload {
      * This method returns immediately.
      */
     void abort();
+
+    /**
+     * Returns timing, host and retry statistics for the parts transferred so far. This can be called while the
+     * upload is running. The default implementation (for implementations that do not collect statistics) returns
+     * empty statistics.
+     */
+    default TransferStatistics getTransferStatistics() {
+        return new TransferStatistics();
+    }
 }
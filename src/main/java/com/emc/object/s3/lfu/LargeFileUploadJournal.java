@@ -0,0 +1,283 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3.lfu;
+
+import com.emc.object.s3.bean.MultipartPartETag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An append-only file that records the state of a multipart upload as it progresses, so the upload can be resumed
+ * after the process is terminated (i.e. a crash), without listing the upload parts or re-reading the source data.
+ * <p>
+ * The journal records the uploadId, part size and identity of the source (path, size and modification time), followed
+ * by one record per completed part. Each record is forced to disk before the part is considered journaled. An
+ * incomplete trailing record (from a crash during a write) is ignored and truncated when the journal is resumed.
+ * <p>
+ * This class is used internally by {@link com.emc.object.s3.LargeFileUploader} (see
+ * {@link com.emc.object.s3.LargeFileUploader#setJournalFile(File)}).
+ */
+public class LargeFileUploadJournal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(LargeFileUploadJournal.class);
+
+    private static final String UPLOAD_RECORD = "upload";
+    private static final String PART_RECORD = "part";
+    private static final String SEPARATOR = "\t";
+
+    private final File file;
+    private String uploadId;
+    private long partSize;
+    private String sourcePath;
+    private long sourceSize;
+    private long sourceModified;
+    private final Map<Integer, MultipartPartETag> parts = new HashMap<>();
+    private long validLength;
+    private FileChannel channel;
+    // records are forced to disk while holding this lock, so it must not be a monitor (that would pin virtual threads)
+    private final Lock lock = new ReentrantLock();
+
+    public LargeFileUploadJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads an existing journal file. Returns true if an upload was recorded in the journal, or false if the journal
+     * file does not exist or is empty.
+     *
+     * @throws IOException if the journal file cannot be read or is corrupt
+     */
+    public boolean load() throws IOException {
+        lock.lock();
+        try {
+            parts.clear();
+            uploadId = null;
+            validLength = 0;
+            if (!file.exists() || file.length() == 0) return false;
+
+            String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            int lineStart = 0, lineEnd;
+            while ((lineEnd = content.indexOf('\n', lineStart)) >= 0) {
+                try {
+                    parseRecord(content.substring(lineStart, lineEnd));
+                } catch (NumberFormatException e) {
+                    throw new IOException("invalid record in journal " + file.getPath(), e);
+                }
+                lineStart = lineEnd + 1;
+            }
+            // anything after the last newline is an incomplete record
+            if (lineStart < content.length())
+                log.warn("ignoring incomplete record at the end of journal {}", file.getPath());
+            validLength = content.substring(0, lineStart).getBytes(StandardCharsets.UTF_8).length;
+
+            return uploadId != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void parseRecord(String record) throws IOException {
+        String[] fields = record.split(SEPARATOR, -1);
+        if (UPLOAD_RECORD.equals(fields[0]) && fields.length == 6 && uploadId == null) {
+            uploadId = fields[1];
+            partSize = Long.parseLong(fields[2]);
+            sourceSize = Long.parseLong(fields[3]);
+            sourceModified = Long.parseLong(fields[4]);
+            sourcePath = fields[5].isEmpty() ? null : fields[5];
+        } else if (PART_RECORD.equals(fields[0]) && fields.length == 3 && uploadId != null) {
+            int partNumber = Integer.parseInt(fields[1]);
+            parts.put(partNumber, new MultipartPartETag(partNumber, fields[2]));
+        } else {
+            throw new IOException("invalid record in journal " + file.getPath() + ": " + record);
+        }
+    }
+
+    /**
+     * Returns true if the recorded source identity matches the specified source
+     */
+    public boolean matchesSource(String path, long size, long modified) {
+        lock.lock();
+        try {
+            return (path == null ? sourcePath == null : path.equals(sourcePath))
+                    && size == sourceSize && modified == sourceModified;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts a new journal for the specified upload, replacing any existing content in the journal file
+     */
+    public void start(String uploadId, long partSize, String sourcePath, long sourceSize, long sourceModified)
+            throws IOException {
+        lock.lock();
+        try {
+            close();
+            this.uploadId = uploadId;
+            this.partSize = partSize;
+            this.sourcePath = sourcePath;
+            this.sourceSize = sourceSize;
+            this.sourceModified = sourceModified;
+            parts.clear();
+            validLength = 0;
+            append(UPLOAD_RECORD + SEPARATOR + uploadId + SEPARATOR + partSize + SEPARATOR + sourceSize
+                    + SEPARATOR + sourceModified + SEPARATOR + (sourcePath == null ? "" : sourcePath));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a completed part. The record is on disk when this method returns
+     */
+    public void partCompleted(MultipartPartETag partETag) throws IOException {
+        lock.lock();
+        try {
+            if (uploadId == null) throw new IllegalStateException("journal has not been started");
+            append(PART_RECORD + SEPARATOR + partETag.getPartNumber() + SEPARATOR + partETag.getETag());
+            parts.put(partETag.getPartNumber(), partETag);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void append(String record) throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            // drop any incomplete record left by a crash
+            channel.truncate(validLength);
+            channel.position(validLength);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap((record + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) validLength += channel.write(buffer);
+        channel.force(false);
+    }
+
+    /**
+     * Closes and deletes the journal file (i.e. when the upload is complete or aborted)
+     */
+    public void delete() throws IOException {
+        lock.lock();
+        try {
+            close();
+            Files.deleteIfExists(file.toPath());
+            uploadId = null;
+            parts.clear();
+            validLength = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getUploadId() {
+        lock.lock();
+        try {
+            return uploadId;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getPartSize() {
+        lock.lock();
+        try {
+            return partSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getSourcePath() {
+        lock.lock();
+        try {
+            return sourcePath;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getSourceSize() {
+        lock.lock();
+        try {
+            return sourceSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getSourceModified() {
+        lock.lock();
+        try {
+            return sourceModified;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a copy of the completed parts recorded in the journal
+     */
+    public Map<Integer, MultipartPartETag> getParts() {
+        lock.lock();
+        try {
+            return new HashMap<>(parts);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token-bucket bandwidth limiter that can be shared by any number of concurrent transfers. Each transfer stream
+ * (see {@link ProgressInputStream} and {@link ProgressOutputStream}) reserves bandwidth for the bytes it has moved,
+ * and sleeps if it has gotten ahead of the configured rate. Reservations are made with a single compare-and-set, so
+ * there is no locking on the data path.
+ * <p>
+ * The rate can be changed at any time, and takes effect for all subsequent reservations. A rate of 0 disables the
+ * limit. Up to <code>maxBurstBytes</code> may be transferred without delay after a period of inactivity.
+ */
+public class BandwidthLimiter {
+    public static final long DEFAULT_MAX_BURST_BYTES = 1024 * 1024; // 1MB
+
+    private volatile long bytesPerSecond;
+    private volatile long maxBurstBytes = DEFAULT_MAX_BURST_BYTES;
+
+    // the (nanoTime) point at which all bandwidth reserved so far will have been used
+    private final AtomicLong reservedUntil = new AtomicLong(System.nanoTime());
+
+    /**
+     * Creates a limiter with the specified maximum rate (in bytes per second)
+     */
+    public BandwidthLimiter(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Reserves bandwidth for <code>bytes</code>, blocking as long as necessary to keep the combined rate of all
+     * callers at or below the limit.
+     */
+    public void acquire(long bytes) throws InterruptedException {
+        long waitNanos = reserve(bytes);
+        if (waitNanos > 0) TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+
+    /**
+     * Same as {@link #acquire(long)}, but translates an interruption to an {@link InterruptedIOException}, for use in
+     * streams.
+     */
+    void acquireForStream(long bytes) throws IOException {
+        try {
+            acquire(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for bandwidth");
+        }
+    }
+
+    /*
+     * reserves time for the bytes and returns how long the caller must wait for the reservation to be in effect
+     */
+    long reserve(long bytes) {
+        long rate = bytesPerSecond;
+        if (rate <= 0 || bytes <= 0) return 0;
+
+        long costNanos = (long) (bytes * 1e9 / rate);
+        long burstNanos = (long) (maxBurstBytes * 1e9 / rate);
+        while (true) {
+            long now = System.nanoTime();
+            long previous = reservedUntil.get();
+            // unused bandwidth only accumulates up to the burst size
+            long start = Math.max(previous, now - burstNanos);
+            long next = start + costNanos;
+            if (reservedUntil.compareAndSet(previous, next)) return next - burstNanos - now;
+        }
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Sets the maximum combined rate (in bytes per second) of all transfers using this limiter. Can be changed while
+     * transfers are running. A value of 0 disables the limit
+     */
+    public void setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public long getMaxBurstBytes() {
+        return maxBurstBytes;
+    }
+
+    /**
+     * Sets the number of bytes that can be transferred without delay after a period of inactivity. Default is
+     * {@link #DEFAULT_MAX_BURST_BYTES}
+     */
+    public void setMaxBurstBytes(long maxBurstBytes) {
+        this.maxBurstBytes = maxBurstBytes;
+    }
+
+    public BandwidthLimiter withMaxBurstBytes(long maxBurstBytes) {
+        setMaxBurstBytes(maxBurstBytes);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "BandwidthLimiter{" +
+                "bytesPerSecond=" + bytesPerSecond +
+                ", maxBurstBytes=" + maxBurstBytes +
+                '}';
+    }
+}
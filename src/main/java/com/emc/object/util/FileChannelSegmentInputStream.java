@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Provides <code>length</code> bytes of a {@link FileChannel}, starting at <code>offset</code>, using positional reads.
+ * Unlike {@link InputStreamSegment}, this does not need its own file handle and does not seek, so many segments can
+ * be read in parallel from the same channel. Data is read directly into the caller's buffer.
+ * <p>
+ * Closing this stream does *not* close the channel.
+ */
+public class FileChannelSegmentInputStream extends InputStream {
+    private final FileChannel channel;
+    private final long offset;
+    private final long length;
+    private long position;
+    private boolean closed = false;
+
+    public FileChannelSegmentInputStream(FileChannel channel, long offset, long length) {
+        this.channel = channel;
+        this.offset = offset;
+        this.length = length;
+        this.position = offset;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single) == -1 ? -1 : (int) single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) throw new IOException("stream is closed");
+        if (len == 0) return 0;
+        long remaining = getRemaining();
+        if (remaining <= 0) return -1;
+
+        int count = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+        if (count < 0) throw new IOException(String.format("unexpected EOF at position %d (segment %d-%d)",
+                position, offset, offset + length - 1));
+        position += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long n) {
+        if (n <= 0) return 0;
+        long skipped = Math.min(n, getRemaining());
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(getRemaining(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    private long getRemaining() {
+        return offset + length - position;
+    }
+}
@@ -35,10 +35,19 @@ import java.io.InputStream;
  */
 public class ProgressInputStream extends FilterInputStream {
     private final ProgressListener listener;
+    private final BandwidthLimiter bandwidthLimiter;
 
     public ProgressInputStream(InputStream wrappedStream, ProgressListener listener) {
+        this(wrappedStream, listener, null);
+    }
+
+    /**
+     * If <code>bandwidthLimiter</code> is not null, reads will block as necessary to stay within its rate
+     */
+    public ProgressInputStream(InputStream wrappedStream, ProgressListener listener, BandwidthLimiter bandwidthLimiter) {
         super(wrappedStream);
         this.listener = listener;
+        this.bandwidthLimiter = bandwidthLimiter;
     }
 
     @Override
@@ -56,6 +65,7 @@ public class ProgressInputStream extends FilterInputStream {
     public int read(byte[] b, int off, int len) throws IOException {
         int count =  in.read(b, off, len);
         if (listener != null && count != -1) listener.transferred(count);
+        if (bandwidthLimiter != null && count > 0) bandwidthLimiter.acquireForStream(count);
         return count;
     }
 }
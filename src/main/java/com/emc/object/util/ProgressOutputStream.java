@@ -35,10 +35,19 @@ import java.io.OutputStream;
  */
 public class ProgressOutputStream extends FilterOutputStream {
     private final ProgressListener listener;
+    private final BandwidthLimiter bandwidthLimiter;
 
     public ProgressOutputStream(OutputStream out, ProgressListener listener) {
+        this(out, listener, null);
+    }
+
+    /**
+     * If <code>bandwidthLimiter</code> is not null, writes will block as necessary to stay within its rate
+     */
+    public ProgressOutputStream(OutputStream out, ProgressListener listener, BandwidthLimiter bandwidthLimiter) {
         super(out);
         this.listener = listener;
+        this.bandwidthLimiter = bandwidthLimiter;
     }
 
     @Override
@@ -56,5 +65,6 @@ public class ProgressOutputStream extends FilterOutputStream {
     public void write(byte[] b, int off, int len) throws IOException {
         out.write(b, off, len);
         listener.transferred(len);
+        if (bandwidthLimiter != null && len > 0) bandwidthLimiter.acquireForStream(len);
     }
 }
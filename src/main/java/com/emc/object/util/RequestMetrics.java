@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Collects client-side request latency, split by operation, host and status class. Set an instance on
+ * {@link com.emc.object.s3.S3Config#setRequestMetrics(RequestMetrics) S3Config} to record every request attempt
+ * made by the client (retries are recorded as separate attempts), and pull {@link RequestStats} snapshots at any
+ * time. Share the same instance between configs to combine the metrics of several clients.
+ * <p>
+ * Operations are named by the HTTP method and the subresource parameter of the request, if any (i.e.
+ * <code>GET</code>, <code>GET ?uploads</code>, <code>PUT ?acl</code>, <code>GET ?query</code>). Latency is measured
+ * until the response headers are received; reading a streamed response body is not included.
+ * <p>
+ * Recording is lock-free, and does not allocate once an operation/host/status class combination has been seen.
+ */
+public class RequestMetrics {
+    /**
+     * The status class of requests that failed without a response (i.e. a connection error)
+     */
+    public static final int NO_RESPONSE = 0;
+    /**
+     * The status class of stats that include all responses
+     */
+    public static final int ALL_STATUS_CLASSES = -1;
+
+    private static final int STATUS_CLASSES = 6; // none, 1xx - 5xx
+    private static final String UNKNOWN_HOST = "";
+
+    // operation -> host -> status class -> latency
+    private final Map<String, Map<String, AtomicReferenceArray<LatencyHistogram>>> histograms = new ConcurrentHashMap<>();
+    private volatile long startNanos = System.nanoTime();
+
+    /**
+     * Records a request. <code>statusCode</code> is the HTTP status of the response, or 0 if there was no response
+     */
+    public void record(String operation, String host, int statusCode, long durationNanos) {
+        if (host == null) host = UNKNOWN_HOST;
+        Map<String, AtomicReferenceArray<LatencyHistogram>> byHost = histograms.get(operation);
+        if (byHost == null) byHost = histograms.computeIfAbsent(operation, k -> new ConcurrentHashMap<>());
+        AtomicReferenceArray<LatencyHistogram> byStatusClass = byHost.get(host);
+        if (byStatusClass == null)
+            byStatusClass = byHost.computeIfAbsent(host, k -> new AtomicReferenceArray<>(STATUS_CLASSES));
+        int statusClass = statusClass(statusCode);
+        LatencyHistogram histogram = byStatusClass.get(statusClass);
+        if (histogram == null) {
+            byStatusClass.compareAndSet(statusClass, null, new LatencyHistogram());
+            histogram = byStatusClass.get(statusClass);
+        }
+        histogram.record(durationNanos);
+    }
+
+    private static int statusClass(int statusCode) {
+        int statusClass = statusCode / 100;
+        return statusClass > 0 && statusClass < STATUS_CLASSES ? statusClass : NO_RESPONSE;
+    }
+
+    private static boolean isError(int statusClass) {
+        return statusClass == NO_RESPONSE || statusClass >= 4;
+    }
+
+    /**
+     * Returns stats for each operation (including all hosts and responses), sorted by operation
+     */
+    public List<RequestStats> getStats() {
+        List<RequestStats> stats = new ArrayList<>();
+        for (String operation : new TreeMap<>(histograms).keySet()) {
+            stats.add(getStats(operation));
+        }
+        return stats;
+    }
+
+    /**
+     * Returns stats for an operation (including all hosts and responses), or null if it has not been recorded
+     */
+    public RequestStats getStats(String operation) {
+        Map<String, AtomicReferenceArray<LatencyHistogram>> byHost = histograms.get(operation);
+        if (byHost == null) return null;
+        Accumulator accumulator = new Accumulator();
+        for (AtomicReferenceArray<LatencyHistogram> byStatusClass : byHost.values()) {
+            for (int statusClass = 0; statusClass < STATUS_CLASSES; statusClass++) {
+                accumulator.add(statusClass, byStatusClass.get(statusClass));
+            }
+        }
+        return accumulator.toStats(operation, null, ALL_STATUS_CLASSES);
+    }
+
+    /**
+     * Returns stats for each operation and host (including all responses), sorted by operation and host
+     */
+    public List<RequestStats> getStatsByHost() {
+        List<RequestStats> stats = new ArrayList<>();
+        for (Map.Entry<String, Map<String, AtomicReferenceArray<LatencyHistogram>>> operation : new TreeMap<>(histograms).entrySet()) {
+            for (Map.Entry<String, AtomicReferenceArray<LatencyHistogram>> host : new TreeMap<>(operation.getValue()).entrySet()) {
+                Accumulator accumulator = new Accumulator();
+                for (int statusClass = 0; statusClass < STATUS_CLASSES; statusClass++) {
+                    accumulator.add(statusClass, host.getValue().get(statusClass));
+                }
+                String hostName = UNKNOWN_HOST.equals(host.getKey()) ? null : host.getKey();
+                stats.add(accumulator.toStats(operation.getKey(), hostName, ALL_STATUS_CLASSES));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Returns stats for each operation and status class (including all hosts), sorted by operation and status class
+     */
+    public List<RequestStats> getStatsByStatusClass() {
+        List<RequestStats> stats = new ArrayList<>();
+        for (Map.Entry<String, Map<String, AtomicReferenceArray<LatencyHistogram>>> operation : new TreeMap<>(histograms).entrySet()) {
+            Map<Integer, Accumulator> accumulators = new LinkedHashMap<>();
+            for (int statusClass = 0; statusClass < STATUS_CLASSES; statusClass++) {
+                for (AtomicReferenceArray<LatencyHistogram> byStatusClass : operation.getValue().values()) {
+                    LatencyHistogram histogram = byStatusClass.get(statusClass);
+                    if (histogram != null) accumulators.computeIfAbsent(statusClass, k -> new Accumulator()).add(statusClass, histogram);
+                }
+            }
+            for (Map.Entry<Integer, Accumulator> entry : accumulators.entrySet()) {
+                stats.add(entry.getValue().toStats(operation.getKey(), null, entry.getKey()));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Clears all recorded metrics and restarts the throughput window
+     */
+    public void reset() {
+        histograms.clear();
+        startNanos = System.nanoTime();
+    }
+
+    private class Accumulator {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private long errorCount;
+
+        void add(int statusClass, LatencyHistogram other) {
+            if (other == null) return;
+            histogram.add(other);
+            if (isError(statusClass)) errorCount += other.getCount();
+        }
+
+        RequestStats toStats(String operation, String host, int statusClass) {
+            return new RequestStats(operation, host, statusClass, histogram, errorCount, System.nanoTime() - startNanos);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.util;
+
+/**
+ * A snapshot of the latency, throughput and error rate of a set of requests recorded by {@link RequestMetrics}.
+ * Depending on how the snapshot was taken, the requests may be those of a single operation, or of an operation to a
+ * single host or with a single status class.
+ */
+public class RequestStats {
+    private final String operation;
+    private final String host;
+    private final int statusClass;
+    private final long count;
+    private final long errorCount;
+    private final long meanNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final double throughput;
+
+    RequestStats(String operation, String host, int statusClass, LatencyHistogram histogram, long errorCount,
+                 long elapsedNanos) {
+        this.operation = operation;
+        this.host = host;
+        this.statusClass = statusClass;
+        this.count = histogram.getCount();
+        this.errorCount = errorCount;
+        this.meanNanos = histogram.getMeanNanos();
+        this.p50Nanos = histogram.getPercentileNanos(50);
+        this.p99Nanos = histogram.getPercentileNanos(99);
+        this.p999Nanos = histogram.getPercentileNanos(99.9);
+        this.throughput = elapsedNanos > 0 ? count * 1000000000d / elapsedNanos : 0;
+    }
+
+    /**
+     * The operation, i.e. <code>GET</code> or <code>PUT ?acl</code> (see {@link RequestMetrics})
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * The host the requests were sent to, or null if these stats include all hosts
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * The status class of the responses (i.e. 2 for 2xx), {@link RequestMetrics#NO_RESPONSE} for requests that failed
+     * without a response, or {@link RequestMetrics#ALL_STATUS_CLASSES} if these stats include all responses
+     */
+    public int getStatusClass() {
+        return statusClass;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * The number of requests that received a 4xx or 5xx response, or failed without a response
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * The fraction (0 to 1) of requests that were errors
+     */
+    public double getErrorRate() {
+        return count == 0 ? 0 : (double) errorCount / count;
+    }
+
+    public long getMeanNanos() {
+        return meanNanos;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    public long getP999Nanos() {
+        return p999Nanos;
+    }
+
+    /**
+     * Requests per second, averaged since the metrics were created (or last reset)
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RequestStats{operation=%s, host=%s, statusClass=%d, count=%d, errorRate=%.4f, throughput=%.1f/s, mean/p50/p99/p999=%.1f/%.1f/%.1f/%.1fms}",
+                operation, host, statusClass, count, getErrorRate(), throughput,
+                meanNanos / 1000000d, p50Nanos / 1000000d, p99Nanos / 1000000d, p999Nanos / 1000000d);
+    }
+}
@@ -50,6 +50,7 @@ public final class RestUtil {
     public static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
     public static final String HEADER_CONTENT_LENGTH = "Content-Length";
     public static final String HEADER_CONTENT_MD5 = "Content-MD5";
+    public static final String HEADER_CONTENT_RANGE = "Content-Range";
     public static final String HEADER_CONTENT_TYPE = "Content-Type";
     public static final String HEADER_DATE = "Date";
     public static final String HEADER_ETAG = "ETag";
@@ -108,6 +109,7 @@ public final class RestUtil {
         format.setTimeZone(TimeZone.getTimeZone("UTC"));
         return format;
     });
+    private static volatile CachedDate cachedRequestDate;
     private static final ThreadLocal<CharsetEncoder> utf8Encoder = ThreadLocal.withInitial(StandardCharsets.UTF_8::newEncoder);
 
     public static <T> String getFirstAsString(Map<String, List<T>> multiValueMap, String key) {
@@ -160,22 +162,42 @@ public final class RestUtil {
      */
     public static Map<String, String> getQueryParameterMap(String queryString) {
         Map<String, String> parameters = new HashMap<>();
-        if (queryString != null && queryString.trim().length() > 0) {
-            for (String pair : queryString.split("&")) {
-                int equals = pair.indexOf('=');
-                if (equals == 0) throw new IllegalArgumentException("invalid query parameter: " + pair);
+        if (queryString != null && !isBlank(queryString)) {
+            // trailing ampersands are ignored
+            int length = queryString.length();
+            while (length > 0 && queryString.charAt(length - 1) == '&') length--;
 
-                String key = equals > 0 ? pair.substring(0, equals) : pair;
-                String value = equals > 0 ? pair.substring(equals + 1) : null;
+            // walk the pairs in place (no split/regex)
+            int start = 0;
+            while (start < length) {
+                int end = queryString.indexOf('&', start);
+                if (end < 0 || end > length) end = length;
+                int equals = queryString.indexOf('=', start);
+                if (equals >= end) equals = -1;
 
-                if (key.trim().length() == 0) throw new IllegalArgumentException("query parameters must have a name");
+                if (equals == start)
+                    throw new IllegalArgumentException("invalid query parameter: " + queryString.substring(start, end));
+
+                String key = queryString.substring(start, equals > 0 ? equals : end);
+                String value = equals > 0 ? queryString.substring(equals + 1, end) : null;
+
+                if (isBlank(key)) throw new IllegalArgumentException("query parameters must have a name");
 
                 parameters.put(urlDecode(key), urlDecode(value));
+                start = end + 1;
             }
         }
         return parameters;
     }
 
+    /* true if the string is empty or only whitespace (same test as trim().length() == 0, without the copy) */
+    private static boolean isBlank(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > ' ') return false;
+        }
+        return true;
+    }
+
     /**
      * @deprecated (2.0.4) use {@link #generateRawQueryString(Map)} instead
      */
@@ -202,8 +224,18 @@ public final class RestUtil {
         return query.toString();
     }
 
+    /**
+     * Returns the current (skew-adjusted) time formatted for the Date header. The header only has second resolution,
+     * so the formatted string is cached and reused until the second changes.
+     */
     public static String getRequestDate(long clockSkew) {
-        return headerFormat(new Date(System.currentTimeMillis() + clockSkew));
+        long second = Math.floorDiv(System.currentTimeMillis() + clockSkew, 1000L);
+        CachedDate cached = cachedRequestDate;
+        if (cached == null || cached.second != second) {
+            cached = new CachedDate(second, headerFormat(new Date(second * 1000L)));
+            cachedRequestDate = cached;
+        }
+        return cached.value;
     }
 
     public static String headerFormat(Date date) {
@@ -236,6 +268,10 @@ public final class RestUtil {
 
     public static String getEncodedPath(URI uri) {
 
+        // the raw path is already encoded unless it contains non-ASCII characters (toASCIIString would encode those)
+        String rawPath = uri.getRawPath();
+        if (rawPath != null && rawPath.length() > 0 && isAscii(rawPath)) return rawPath;
+
         // this is the only way I've found to get the true encoded path
         String rawUri = uri.toASCIIString();
         String path = rawUri.substring(rawUri.indexOf("/", 9));
@@ -260,6 +296,8 @@ public final class RestUtil {
 
     public static String urlDecode(String value, boolean preservePlus) {
         if (value == null) return null;
+        // nothing to decode
+        if (value.indexOf('%') < 0 && (preservePlus || value.indexOf('+') < 0)) return value;
         try {
             // don't want '+' decoded to a space
             if (preservePlus) value = value.replace("+", "%2B");
@@ -434,6 +472,25 @@ public final class RestUtil {
         return sb.toString();
     }
 
+    /* true if every character is 7-bit ASCII */
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0x7f) return false;
+        }
+        return true;
+    }
+
     private RestUtil() {
     }
+
+    /* immutable, so it can be published through a volatile field without locking */
+    private static final class CachedDate {
+        final long second;
+        final String value;
+
+        CachedDate(long second, String value) {
+            this.second = second;
+            this.value = value;
+        }
+    }
 }
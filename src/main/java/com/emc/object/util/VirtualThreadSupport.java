@@ -0,0 +1,256 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Creates executors that use virtual threads when the runtime supports them (Java 21+), and platform thread pools
+ * otherwise. This class is compiled for Java 8, so virtual threads are accessed reflectively.
+ * <p>
+ * Notes on running client requests on virtual threads:
+ * <ul>
+ * <li>Requests (including {@link com.emc.object.s3.jersey.RetryFilter} back-off delays) execute entirely on the
+ * calling thread, so a request made from a virtual thread blocks only that virtual thread. The exception is hedged
+ * reads (see {@link com.emc.object.s3.HedgingPolicy}), whose attempts run on threads from
+ * {@link #newUnboundedExecutor(String)}</li>
+ * <li>Per-request state kept in thread-locals (i.e. the entity size in <code>SizeOverrideWriter</code>, and the
+ * cached date formats in {@link RestUtil}) is set and cleared on the calling thread, so it is correct on virtual
+ * threads; thread-locals do not pin a carrier thread</li>
+ * <li>Monitors that are held across blocking I/O or waits pin the carrier thread (before Java 24), so transfer
+ * utilities use {@link java.util.concurrent.locks.ReentrantLock} where a lock may be held while blocking</li>
+ * <li>The number of concurrent requests is still limited by the connection pool size of the underlying HTTP
+ * client</li>
+ * </ul>
+ */
+public final class VirtualThreadSupport {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadSupport.class);
+
+    private static final Method newVirtualThreadPerTaskExecutor = findVirtualThreadFactoryMethod();
+
+    private static Method findVirtualThreadFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if the runtime supports virtual threads
+     */
+    public static boolean isAvailable() {
+        return newVirtualThreadPerTaskExecutor != null;
+    }
+
+    /**
+     * Creates an executor that runs at most <code>maxConcurrent</code> tasks at once. Tasks are started in
+     * submission order, so an executor with <code>maxConcurrent</code> of 1 runs tasks one at a time, in order (as
+     * {@link Executors#newSingleThreadExecutor()} does). If virtual threads are available, each task runs in its own
+     * virtual thread (tasks waiting for a slot are queued, and do not tie up a thread). Otherwise, a fixed pool of
+     * <code>maxConcurrent</code> platform threads is used.
+     * <p>
+     * Note: on <code>shutdownNow()</code>, queued tasks that are {@link Future}s are cancelled, and all queued tasks
+     * are returned. Tasks submitted through <code>CompletableFuture.supplyAsync/runAsync</code> cannot be completed by
+     * the executor, so the caller must cancel those futures itself.
+     */
+    public static ExecutorService newBoundedExecutor(int maxConcurrent) {
+        ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor();
+        if (virtualExecutor == null) return Executors.newFixedThreadPool(maxConcurrent);
+        return new BoundedExecutor(virtualExecutor, maxConcurrent);
+    }
+
+    /**
+     * Creates an executor that starts every task right away. If virtual threads are available, each task runs in its
+     * own virtual thread. Otherwise, a cached pool of daemon platform threads (named with
+     * <code>threadNamePrefix</code>) is used.
+     */
+    public static ExecutorService newUnboundedExecutor(String threadNamePrefix) {
+        ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor();
+        if (virtualExecutor != null) return virtualExecutor;
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, threadNamePrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /*
+     * returns null if virtual threads are not available
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (newVirtualThreadPerTaskExecutor == null) return null;
+        try {
+            return (ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null);
+        } catch (Exception e) {
+            log.warn("could not create virtual thread executor; falling back to platform threads", e);
+            return null;
+        }
+    }
+
+    private VirtualThreadSupport() {
+    }
+
+    private static class BoundedExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final int maxConcurrent;
+        private final Lock lock = new ReentrantLock();
+        // tasks waiting for a slot, in submission order (guarded by lock)
+        private final Deque<Runnable> queue = new ArrayDeque<>();
+        private int running;
+        private boolean shutdown;
+
+        BoundedExecutor(ExecutorService delegate, int maxConcurrent) {
+            this.delegate = delegate;
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (command == null) throw new NullPointerException();
+            lock.lock();
+            try {
+                if (shutdown) throw new RejectedExecutionException("executor has been shut down");
+                queue.add(command);
+            } finally {
+                lock.unlock();
+            }
+            dispatch();
+        }
+
+        /*
+         * starts queued tasks (oldest first) while there are free slots. once shut down, the delegate is shut down
+         * after the last queued task has started
+         */
+        private void dispatch() {
+            while (true) {
+                Runnable next;
+                lock.lock();
+                try {
+                    if (running >= maxConcurrent || queue.isEmpty()) {
+                        if (shutdown && queue.isEmpty()) delegate.shutdown();
+                        return;
+                    }
+                    next = queue.poll();
+                    running++;
+                } finally {
+                    lock.unlock();
+                }
+                try {
+                    delegate.execute(() -> {
+                        try {
+                            next.run();
+                        } finally {
+                            taskDone();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // shutdownNow() was called while this task was being started
+                    cancel(next);
+                    taskDone();
+                    return;
+                }
+            }
+        }
+
+        private void taskDone() {
+            lock.lock();
+            try {
+                running--;
+            } finally {
+                lock.unlock();
+            }
+            dispatch();
+        }
+
+        /* a waiter on a cancelled FutureTask is released with a CancellationException */
+        private static void cancel(Runnable task) {
+            if (task instanceof Future) ((Future<?>) task).cancel(false);
+        }
+
+        @Override
+        public void shutdown() {
+            lock.lock();
+            try {
+                shutdown = true;
+            } finally {
+                lock.unlock();
+            }
+            dispatch(); // shuts down the delegate if nothing is queued
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            List<Runnable> neverStarted;
+            lock.lock();
+            try {
+                shutdown = true;
+                neverStarted = new ArrayList<>(queue);
+                queue.clear();
+            } finally {
+                lock.unlock();
+            }
+            for (Runnable task : neverStarted) cancel(task);
+            delegate.shutdownNow();
+            return neverStarted;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            lock.lock();
+            try {
+                return shutdown;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
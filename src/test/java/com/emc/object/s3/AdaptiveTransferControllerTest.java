@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveTransferControllerTest {
+    @Test
+    public void testStartDefaults() {
+        AdaptiveTransferController controller = new AdaptiveTransferController().withMaxConcurrency(16);
+        controller.start(40, 8 * 1024 * 1024);
+        Assert.assertEquals(16, controller.getConcurrency()); // clamped to max
+        Assert.assertEquals(8 * 1024 * 1024, controller.getPartSize());
+
+        // seeded values take precedence over transfer defaults
+        controller = new AdaptiveTransferController().withConcurrency(3).withPartSize(1024);
+        controller.start(8, 8 * 1024 * 1024);
+        Assert.assertEquals(3, controller.getConcurrency());
+        Assert.assertEquals(1024, controller.getPartSize());
+    }
+
+    @Test
+    public void testPartSizeAdjustment() {
+        AdaptiveTransferController controller = new AdaptiveTransferController()
+                .withTargetPartTimeMs(1000).withMaxPartSize(4096);
+        controller.start(2, 1024);
+
+        // fast parts - part size should grow
+        controller.partCompleted(1024, 10_000_000L);
+        controller.partCompleted(1024, 10_000_000L);
+        Assert.assertEquals(2048, controller.getPartSize());
+
+        // slow parts - part size should shrink
+        for (int i = 0; i < controller.getConcurrency(); i++) controller.partCompleted(2048, 5_000_000_000L);
+        Assert.assertEquals(1024, controller.getPartSize());
+    }
+
+    @Test
+    public void testConcurrencyIncreases() {
+        AdaptiveTransferController controller = new AdaptiveTransferController().withMaxConcurrency(8);
+        controller.start(2, 1024);
+
+        // first window has no baseline, so concurrency should probe upward
+        controller.partCompleted(1024, 1_000_000L);
+        controller.partCompleted(1024, 1_000_000L);
+        Assert.assertEquals(3, controller.getConcurrency());
+    }
+
+    @Test
+    public void testFailureHalvesConcurrency() {
+        AdaptiveTransferController controller = new AdaptiveTransferController();
+        controller.start(8, 1024);
+        controller.partFailed();
+        Assert.assertEquals(4, controller.getConcurrency());
+        controller.partFailed();
+        controller.partFailed();
+        controller.partFailed();
+        Assert.assertEquals(AdaptiveTransferController.DEFAULT_MIN_CONCURRENCY, controller.getConcurrency());
+    }
+
+    @Test(timeout = 10000)
+    public void testSlots() throws Exception {
+        AdaptiveTransferController controller = new AdaptiveTransferController();
+        controller.start(1, 1024);
+        controller.acquireSlot();
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException ignored) {
+            }
+            controller.releaseSlot();
+        });
+        releaser.start();
+
+        long start = System.currentTimeMillis();
+        controller.acquireSlot(); // should block until the first slot is released
+        Assert.assertTrue(System.currentTimeMillis() - start >= 150);
+        controller.releaseSlot();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.object.s3.jersey.S3JerseyClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class DirectoryUploaderTest extends AbstractS3ClientTest {
+    @Override
+    protected String getTestBucketPrefix() {
+        return "dir-uploader-test";
+    }
+
+    @Override
+    protected S3Client createS3Client() throws Exception {
+        return new S3JerseyClient(createS3Config());
+    }
+
+    @Test
+    public void testDirectoryUpload() throws Exception {
+        Path dir = Files.createTempDirectory("dir-uploader-test");
+        Random random = new Random();
+        Map<String, byte[]> expected = new HashMap<>();
+
+        // small files in a few subdirectories
+        for (int i = 0; i < 50; i++) {
+            String relativePath = "dir" + (i % 3) + "/file" + i;
+            byte[] data = new byte[random.nextInt(10 * 1024)];
+            random.nextBytes(data);
+            Path path = dir.resolve(relativePath);
+            Files.createDirectories(path.getParent());
+            Files.write(path, data);
+            expected.put("prefix/" + relativePath, data);
+        }
+
+        // one large file
+        byte[] largeData = new byte[10 * 1024 * 1024 + 17];
+        random.nextBytes(largeData);
+        Files.write(dir.resolve("large.bin"), largeData);
+        expected.put("prefix/large.bin", largeData);
+
+        long totalSize = 0;
+        for (byte[] data : expected.values()) totalSize += data.length;
+
+        DirectoryUploader uploader = new DirectoryUploader(client, getTestBucket(), "prefix/", dir.toFile())
+                .withThreads(4).withLargeFileThreshold(5 * 1024 * 1024).withPartSize(LargeFileUploader.MIN_PART_SIZE);
+        uploader.upload();
+
+        Assert.assertEquals(0, uploader.getFailures().size());
+        Assert.assertEquals(expected.size(), uploader.getFilesCompleted());
+        Assert.assertEquals(totalSize, uploader.getTotalBytes());
+        Assert.assertEquals(totalSize, uploader.getBytesTransferred());
+        for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            Assert.assertArrayEquals(entry.getValue(), client.readObject(getTestBucket(), entry.getKey(), byte[].class));
+        }
+    }
+
+    @Test
+    public void testNotADirectory() throws Exception {
+        File file = File.createTempFile("dir-uploader-test", null);
+        file.deleteOnExit();
+        try {
+            new DirectoryUploader(client, getTestBucket(), null, file).upload();
+            Assert.fail("uploading a regular file should fail");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.object.s3.jersey.GeoPinningRule;
+import com.emc.object.s3.jersey.HedgingFilter;
+import com.emc.object.util.RestUtil;
+import com.emc.rest.smart.ecs.Vdc;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import com.sun.jersey.core.header.InBoundHeaders;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class HedgingFilterTest {
+    @Test
+    public void testHedgeKeepsProperties() {
+        final Vdc vdc = new Vdc("vdc1-host");
+        final List<Map<String, Object>> attemptProperties = Collections.synchronizedList(new ArrayList<Map<String, Object>>());
+        final CountDownLatch hedgeSent = new CountDownLatch(1);
+        final Client client = Client.create();
+
+        // order of execution is reversed from this order
+        client.addFilter(new ClientFilter() {
+            @Override
+            public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+                boolean isHedge;
+                synchronized (attemptProperties) {
+                    isHedge = !attemptProperties.isEmpty();
+                    attemptProperties.add(new HashMap<>(request.getProperties()));
+                }
+                if (isHedge) {
+                    hedgeSent.countDown();
+                } else {
+                    // the first attempt stalls until the hedge is sent (or it is cancelled)
+                    try {
+                        hedgeSent.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new ClientHandlerException(e);
+                    }
+                }
+                return new ClientResponse(Response.Status.OK, new InBoundHeaders(),
+                        new ByteArrayInputStream(new byte[0]), client.getMessageBodyWorkers());
+            }
+        });
+        HedgingFilter hedgingFilter = new HedgingFilter(
+                new HedgingPolicy().withHedgeDelayMs(0).withMaxHedgePercent(100), null);
+        client.addFilter(hedgingFilter);
+        client.addFilter(new ClientFilter() {
+            @Override
+            public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+                request.getProperties().put(HedgingFilter.PROP_HEDGEABLE, Boolean.TRUE);
+                request.getProperties().put(S3Constants.PROPERTY_BUCKET_NAME, "hedged-bucket");
+                request.getProperties().put(RestUtil.PROPERTY_NAMESPACE, "hedged-namespace");
+                request.getProperties().put(GeoPinningRule.PROP_GEO_PINNED_VDC, vdc);
+                return getNext().handle(request);
+            }
+        });
+
+        try {
+            ClientResponse response = client.resource("http://127.0.0.1/hedged-bucket/foo").get(ClientResponse.class);
+            Assert.assertEquals(200, response.getStatus());
+            response.close();
+        } finally {
+            hedgingFilter.shutdown();
+        }
+
+        // both attempts carry the request properties
+        Assert.assertEquals(2, attemptProperties.size());
+        for (Map<String, Object> properties : attemptProperties) {
+            Assert.assertEquals("hedged-bucket", properties.get(S3Constants.PROPERTY_BUCKET_NAME));
+            Assert.assertEquals("hedged-namespace", properties.get(RestUtil.PROPERTY_NAMESPACE));
+            Assert.assertSame(vdc, properties.get(GeoPinningRule.PROP_GEO_PINNED_VDC));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class HedgingPolicyTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testHedgeBudget() {
+        HedgingPolicy policy = new HedgingPolicy().withMaxHedgePercent(10);
+
+        // the initial burst allowance
+        for (int i = 0; i < HedgingPolicy.MAX_HEDGE_BURST; i++) {
+            Assert.assertTrue(policy.tryAcquireHedge());
+        }
+        Assert.assertFalse(policy.tryAcquireHedge());
+
+        // 10% of 100 requests
+        int hedges = 0;
+        for (int i = 0; i < 100; i++) {
+            policy.requestStarted();
+            if (policy.tryAcquireHedge()) hedges++;
+        }
+        Assert.assertEquals(10, hedges);
+        Assert.assertEquals(100, policy.getRequestCount());
+        Assert.assertEquals(HedgingPolicy.MAX_HEDGE_BURST + 10, policy.getHedgeCount());
+
+        // no hedges at all
+        policy.setMaxHedgePercent(0);
+        for (int i = 0; i < 100; i++) {
+            policy.requestStarted();
+            Assert.assertFalse(policy.tryAcquireHedge());
+        }
+    }
+
+    @Test
+    public void testFixedDelay() {
+        HedgingPolicy policy = new HedgingPolicy().withHedgeDelayMs(250);
+        for (int i = 0; i < 1000; i++) policy.recordResponseTime(10 * MS);
+        Assert.assertEquals(250 * MS, policy.getHedgeDelayNanos());
+    }
+
+    @Test
+    public void testPercentileDelay() {
+        HedgingPolicy policy = new HedgingPolicy().withHedgeDelayMs(250).withDelayPercentile(95);
+        long start = System.nanoTime();
+
+        // not enough samples yet
+        for (int i = 0; i < HedgingPolicy.MIN_PERCENTILE_SAMPLES - 1; i++) policy.recordResponseTime(10 * MS, start);
+        Assert.assertEquals(250 * MS, policy.getHedgeDelayNanos());
+
+        // 90% at 10ms, 10% at 100ms
+        for (int i = 0; i < 900; i++) policy.recordResponseTime(10 * MS, start);
+        for (int i = 0; i < 100; i++) policy.recordResponseTime(100 * MS, start);
+        long delay = policy.getHedgeDelayNanos();
+        Assert.assertTrue(delay >= 90 * MS && delay <= 115 * MS);
+
+        // the next window starts; the previous (complete) window is used until it rotates out
+        long nextWindow = start + TimeUnit.MILLISECONDS.toNanos(HedgingPolicy.PERCENTILE_WINDOW_MS) + 1;
+        for (int i = 0; i < 1000; i++) policy.recordResponseTime(20 * MS, nextWindow);
+        Assert.assertEquals(delay, policy.getHedgeDelayNanos());
+
+        long windowAfter = nextWindow + TimeUnit.MILLISECONDS.toNanos(HedgingPolicy.PERCENTILE_WINDOW_MS) + 1;
+        policy.recordResponseTime(20 * MS, windowAfter);
+        delay = policy.getHedgeDelayNanos();
+        Assert.assertTrue(delay >= 18 * MS && delay <= 23 * MS);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.object.s3.bean.ListObjectsResult;
+import com.emc.object.s3.jersey.S3JerseyClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HedgingTest extends AbstractS3ClientTest {
+    // hedge every read right away
+    private final HedgingPolicy hedgingPolicy = new HedgingPolicy().withHedgeDelayMs(0).withMaxHedgePercent(100);
+
+    @Override
+    protected String getTestBucketPrefix() {
+        return "s3-hedging-test";
+    }
+
+    @Override
+    protected S3Client createS3Client() throws Exception {
+        return new S3JerseyClient(createS3Config().withHedgingPolicy(hedgingPolicy));
+    }
+
+    @Test
+    public void testHedgedReads() {
+        String key = "hedged-object";
+        String content = "Hello Hedging!";
+        client.putObject(getTestBucket(), key, content, "text/plain");
+        long requests = hedgingPolicy.getRequestCount();
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(content, client.readObject(getTestBucket(), key, String.class));
+        }
+        Assert.assertEquals(content.length(), client.getObjectMetadata(getTestBucket(), key).getContentLength().longValue());
+        ListObjectsResult result = client.listObjects(getTestBucket());
+        Assert.assertEquals(1, result.getObjects().size());
+        Assert.assertEquals(key, result.getObjects().get(0).getKey());
+
+        // only the reads are hedgeable (not the put)
+        Assert.assertEquals(requests + 12, hedgingPolicy.getRequestCount());
+        Assert.assertTrue(hedgingPolicy.getHedgeCount() > 0);
+
+        // an error response from either attempt is still reported
+        try {
+            client.readObject(getTestBucket(), "does-not-exist", String.class);
+            Assert.fail("reading a missing object should fail");
+        } catch (S3Exception e) {
+            Assert.assertEquals(404, e.getHttpCode());
+        }
+    }
+}
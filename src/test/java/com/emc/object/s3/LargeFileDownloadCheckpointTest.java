@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+public class LargeFileDownloadCheckpointTest {
+    private File file;
+
+    @Before
+    public void createFile() throws Exception {
+        file = File.createTempFile("lfd-checkpoint-test", null);
+        file.deleteOnExit();
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        LargeFileDownloadCheckpoint checkpoint = new LargeFileDownloadCheckpoint(file);
+        Assert.assertFalse(checkpoint.load());
+        Assert.assertFalse(checkpoint.matches("etag", 0));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        LargeFileDownloadCheckpoint checkpoint = new LargeFileDownloadCheckpoint(file);
+        // 20 parts (the last is partial), so the bitmap spans 3 bytes
+        checkpoint.start("etag-1", 1024, 20 * 1024 - 100);
+        checkpoint.partCompleted(1);
+        checkpoint.partCompleted(9);
+        checkpoint.partCompleted(20);
+        checkpoint.close();
+
+        checkpoint = new LargeFileDownloadCheckpoint(file);
+        Assert.assertTrue(checkpoint.load());
+        Assert.assertEquals(1024, checkpoint.getPartSize());
+        Assert.assertTrue(checkpoint.matches("etag-1", 20 * 1024 - 100));
+        Assert.assertFalse(checkpoint.matches("etag-2", 20 * 1024 - 100));
+        Assert.assertFalse(checkpoint.matches("etag-1", 20 * 1024));
+        Assert.assertEquals(3, checkpoint.getCompletedPartCount());
+        Assert.assertTrue(checkpoint.isPartCompleted(1));
+        Assert.assertFalse(checkpoint.isPartCompleted(2));
+        Assert.assertTrue(checkpoint.isPartCompleted(9));
+        Assert.assertTrue(checkpoint.isPartCompleted(20));
+
+        // resume adds to the existing bitmap
+        checkpoint.partCompleted(2);
+        checkpoint.close();
+        checkpoint = new LargeFileDownloadCheckpoint(file);
+        Assert.assertTrue(checkpoint.load());
+        Assert.assertEquals(4, checkpoint.getCompletedPartCount());
+    }
+
+    @Test
+    public void testNoETag() throws Exception {
+        LargeFileDownloadCheckpoint checkpoint = new LargeFileDownloadCheckpoint(file);
+        checkpoint.start(null, 1024, 4096);
+        checkpoint.partCompleted(2);
+        checkpoint.close();
+
+        // only the size can be checked
+        checkpoint = new LargeFileDownloadCheckpoint(file);
+        Assert.assertTrue(checkpoint.load());
+        Assert.assertTrue(checkpoint.matches(null, 4096));
+        Assert.assertFalse(checkpoint.matches(null, 4097));
+        Assert.assertFalse(checkpoint.matches("etag-1", 4096));
+        Assert.assertTrue(checkpoint.isPartCompleted(2));
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+        LargeFileDownloadCheckpoint checkpoint = new LargeFileDownloadCheckpoint(file);
+        checkpoint.start("etag-1", 1024, 100 * 1024);
+        checkpoint.close();
+
+        // simulate a crash while the checkpoint was being created
+        try (RandomAccessFile raFile = new RandomAccessFile(file, "rw")) {
+            raFile.setLength(raFile.length() - 1);
+        }
+        Assert.assertFalse(new LargeFileDownloadCheckpoint(file).load());
+    }
+
+    @Test
+    public void testDelete() throws Exception {
+        LargeFileDownloadCheckpoint checkpoint = new LargeFileDownloadCheckpoint(file);
+        checkpoint.start("etag-1", 1024, 4096);
+        checkpoint.partCompleted(1);
+        checkpoint.delete();
+        Assert.assertFalse(file.exists());
+        Assert.assertNull(checkpoint.getETag());
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.object.s3.bean.MultipartPartETag;
+import com.emc.object.util.ChecksumError;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class LargeFileDownloadVerifierTest {
+    private static final int PART_SIZE = 1000;
+
+    private File file;
+    private RandomAccessFile raFile;
+    private byte[] data;
+
+    @Before
+    public void createFile() throws Exception {
+        file = File.createTempFile("lfd-verifier-test", null);
+        file.deleteOnExit();
+        data = new byte[10 * PART_SIZE - 123]; // last part is partial
+        new Random().nextBytes(data);
+        raFile = new RandomAccessFile(file, "rw");
+        raFile.write(data);
+    }
+
+    @After
+    public void deleteFile() throws Exception {
+        raFile.close();
+        file.delete();
+    }
+
+    private String getMpuETag() {
+        List<MultipartPartETag> partETags = new ArrayList<>();
+        for (int offset = 0, partNumber = 1; offset < data.length; offset += PART_SIZE, partNumber++) {
+            byte[] part = Arrays.copyOfRange(data, offset, Math.min(offset + PART_SIZE, data.length));
+            partETags.add(new MultipartPartETag(partNumber, DigestUtils.md5Hex(part)));
+        }
+        return LargeFileUploader.getMpuETag(partETags);
+    }
+
+    @Test
+    public void testUnverifiableETags() {
+        Assert.assertNull(LargeFileDownloadVerifier.forObject(null, data.length));
+        Assert.assertNull(LargeFileDownloadVerifier.forObject("not-an-md5", data.length));
+        // no candidate part size results in 10 parts
+        Assert.assertNull(LargeFileDownloadVerifier.forObject(getMpuETag(), data.length, 500, 2000));
+    }
+
+    @Test
+    public void testSinglePart() throws Exception {
+        FileChannel channel = raFile.getChannel();
+        LargeFileDownloadVerifier verifier = LargeFileDownloadVerifier.forObject("\"" + DigestUtils.md5Hex(data) + "\"", data.length);
+        Assert.assertNotNull(verifier);
+        Assert.assertEquals(0, verifier.getPartCount());
+
+        // written out of order
+        verifier.markWritten(3000, 3000);
+        verifier.hashWritten(channel);
+        verifier.markWritten(0, 3000);
+        verifier.hashWritten(channel);
+        verifier.markWritten(6000, data.length - 6000);
+        verifier.verify(channel);
+    }
+
+    @Test
+    public void testMultipartStreamed() throws Exception {
+        FileChannel channel = raFile.getChannel();
+        LargeFileDownloadVerifier verifier = LargeFileDownloadVerifier.forObject(getMpuETag(), data.length, 500, PART_SIZE);
+        Assert.assertNotNull(verifier);
+        Assert.assertEquals(10, verifier.getPartCount());
+        Assert.assertEquals(PART_SIZE, verifier.getSegmentSize());
+
+        for (int offset = data.length - (data.length % PART_SIZE); offset >= 0; offset -= PART_SIZE) {
+            int length = Math.min(PART_SIZE, data.length - offset);
+            Assert.assertTrue(verifier.isSegment(offset, length));
+            verifier.segmentHashed(offset, DigestUtils.md5(Arrays.copyOfRange(data, offset, offset + length)));
+            verifier.markWritten(offset, length);
+            verifier.hashWritten(channel);
+        }
+        verifier.verify(channel);
+    }
+
+    @Test
+    public void testMultipartUnaligned() throws Exception {
+        FileChannel channel = raFile.getChannel();
+        LargeFileDownloadVerifier verifier = LargeFileDownloadVerifier.forObject(getMpuETag(), data.length, PART_SIZE);
+        Assert.assertFalse(verifier.isSegment(0, 1500));
+
+        // download parts of 1500 bytes span the uploaded parts
+        for (int offset = 0; offset < data.length; offset += 1500) {
+            verifier.markWritten(offset, Math.min(1500, data.length - offset));
+        }
+        verifier.verify(channel);
+    }
+
+    @Test
+    public void testCorruptData() throws Exception {
+        FileChannel channel = raFile.getChannel();
+        LargeFileDownloadVerifier verifier = LargeFileDownloadVerifier.forObject(getMpuETag(), data.length, PART_SIZE);
+        raFile.seek(4321);
+        raFile.write(data[4321] + 1);
+        verifier.markWritten(0, data.length);
+        try {
+            verifier.verify(channel);
+            Assert.fail("corrupt data should fail verification");
+        } catch (ChecksumError e) {
+            Assert.assertEquals(getMpuETag(), e.getExpectedValue());
+        }
+    }
+
+    @Test
+    public void testMissingData() throws Exception {
+        FileChannel channel = raFile.getChannel();
+        LargeFileDownloadVerifier verifier = LargeFileDownloadVerifier.forObject(DigestUtils.md5Hex(data), data.length);
+        verifier.markWritten(0, 1000);
+        verifier.markWritten(2000, data.length - 2000);
+        try {
+            verifier.verify(channel);
+            Assert.fail("a gap in the data should fail verification");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
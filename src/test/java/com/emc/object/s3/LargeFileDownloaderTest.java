@@ -26,22 +26,32 @@
  */
 package com.emc.object.s3;
 
+import com.emc.object.s3.bean.GetObjectResult;
 import com.emc.object.s3.jersey.S3JerseyClient;
+import com.emc.object.s3.request.GetObjectRequest;
 import com.emc.object.util.ProgressListener;
 import com.emc.rest.util.StreamUtil;
 import com.emc.util.RandomInputStream;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.xml.bind.DatatypeConverter;
 import java.io.*;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class LargeFileDownloaderTest extends AbstractS3ClientTest {
+    private static final Logger log = LoggerFactory.getLogger(LargeFileDownloaderTest.class);
+
     static final long FILE_SIZE = 20 * 1024 * 1024; // 20MB
 
     DigestInputStream dis;
@@ -136,6 +146,317 @@ public class LargeFileDownloaderTest extends AbstractS3ClientTest {
         Assert.assertEquals(md5Hex, DatatypeConverter.printHexBinary(dis.getMessageDigest().digest()).toLowerCase());
     }
 
+    @Test
+    public void testAdaptiveTransfer() throws Exception {
+        AdaptiveTransferController controller = new AdaptiveTransferController().withMaxConcurrency(4);
+        LargeFileDownloader lfd = new LargeFileDownloader(client, getTestBucket(), key, destFile);
+        lfd.withParallelThreshold(FILE_SIZE).withPartSize(LargeFileDownloader.MIN_PART_SIZE).withThreads(2)
+                .withTransferController(controller);
+        lfd.download();
+
+        Assert.assertEquals(FILE_SIZE, lfd.getBytesTransferred());
+        Assert.assertTrue(controller.getConcurrency() >= 1 && controller.getConcurrency() <= 4);
+
+        // verify content
+        DigestInputStream dis = new DigestInputStream(new FileInputStream(destFile), MessageDigest.getInstance("MD5"));
+        StreamUtil.copy(dis, new NullStream(), destFile.length());
+        Assert.assertEquals(md5Hex, DatatypeConverter.printHexBinary(dis.getMessageDigest().digest()).toLowerCase());
+    }
+
+    @Test
+    public void testWritePaths() throws Exception {
+        long partSize = LargeFileDownloader.MIN_PART_SIZE;
+
+        // buffer size does not line up with parts
+        LargeFileDownloader lfd = new LargeFileDownloader(client, getTestBucket(), key, destFile);
+        lfd.withParallelThreshold(FILE_SIZE).withPartSize(partSize).withWriteBufferSize(100 * 1000);
+        lfd.download();
+
+        DigestInputStream dis = new DigestInputStream(new FileInputStream(destFile), MessageDigest.getInstance("MD5"));
+        StreamUtil.copy(dis, new NullStream(), destFile.length());
+        Assert.assertEquals(md5Hex, DatatypeConverter.printHexBinary(dis.getMessageDigest().digest()).toLowerCase());
+
+        // memory-mapped
+        File mappedFile = File.createTempFile("lfd-mapped", null);
+        mappedFile.deleteOnExit();
+        lfd = new LargeFileDownloader(client, getTestBucket(), key, mappedFile);
+        lfd.withParallelThreshold(FILE_SIZE).withPartSize(partSize).withUseMemoryMappedWrites(true);
+        lfd.download();
+
+        Assert.assertEquals(FILE_SIZE, lfd.getBytesTransferred());
+        dis = new DigestInputStream(new FileInputStream(mappedFile), MessageDigest.getInstance("MD5"));
+        StreamUtil.copy(dis, new NullStream(), mappedFile.length());
+        Assert.assertEquals(md5Hex, DatatypeConverter.printHexBinary(dis.getMessageDigest().digest()).toLowerCase());
+    }
+
+    @Test
+    public void testVerifyChecksum() throws Exception {
+        // the object was uploaded in 5 parts; the download part size should be lined up with them
+        LargeFileDownloader lfd = new LargeFileDownloader(client, getTestBucket(), key, destFile);
+        lfd.withParallelThreshold(FILE_SIZE).withPartSize(LargeFileDownloader.MIN_PART_SIZE)
+                .withUploadPartSize(FILE_SIZE / 5).withVerifyChecksum(true);
+        lfd.download();
+        Assert.assertEquals(FILE_SIZE / 5, lfd.getPartSize());
+
+        // single-part object
+        String key = "lfd-verify-single";
+        byte[] data = new byte[(int) FILE_SIZE + 179];
+        new Random().nextBytes(data);
+        client.putObject(getTestBucket(), key, data, null);
+        lfd = new LargeFileDownloader(client, getTestBucket(), key, destFile);
+        lfd.withParallelThreshold(FILE_SIZE).withPartSize(LargeFileDownloader.MIN_PART_SIZE).withVerifyChecksum(true);
+        lfd.download();
+        Assert.assertEquals(data.length, destFile.length());
+    }
+
+    @Test
+    public void testSkipHeadRequest() throws Exception {
+        LargeFileDownloader lfd = new LargeFileDownloader(client, getTestBucket(), key, destFile);
+        lfd.withParallelThreshold(FILE_SIZE).withPartSize(LargeFileDownloader.MIN_PART_SIZE).withSkipHeadRequest(true);
+        lfd.download();
+
+        Assert.assertEquals(FILE_SIZE, (long) lfd.getObjectSize());
+        Assert.assertEquals(FILE_SIZE, lfd.getBytesTransferred());
+        DigestInputStream dis = new DigestInputStream(new FileInputStream(destFile), MessageDigest.getInstance("MD5"));
+        StreamUtil.copy(dis, new NullStream(), destFile.length());
+        Assert.assertEquals(md5Hex, DatatypeConverter.printHexBinary(dis.getMessageDigest().digest()).toLowerCase());
+
+        // below the threshold, the rest of the object is read after the first part
+        lfd = new LargeFileDownloader(client, getTestBucket(), key, destFile);
+        lfd.withParallelThreshold(FILE_SIZE + 1).withPartSize(LargeFileDownloader.MIN_PART_SIZE).withSkipHeadRequest(true);
+        lfd.download();
+
+        dis = new DigestInputStream(new FileInputStream(destFile), MessageDigest.getInstance("MD5"));
+        StreamUtil.copy(dis, new NullStream(), destFile.length());
+        Assert.assertEquals(md5Hex, DatatypeConverter.printHexBinary(dis.getMessageDigest().digest()).toLowerCase());
+
+        // empty objects fall back to a HEAD request
+        client.putObject(getTestBucket(), "lfd-empty", new byte[0], null);
+        lfd = new LargeFileDownloader(client, getTestBucket(), "lfd-empty", destFile).withSkipHeadRequest(true);
+        lfd.download();
+        Assert.assertEquals(0, destFile.length());
+    }
+
+    /**
+     * Not a strict benchmark; reports the end-to-end time to download the object through each write path. A 32KB
+     * write buffer approximates the old behavior of one write per socket read
+     */
+    @Test
+    public void testWritePathTiming() throws Exception {
+        long partSize = LargeFileDownloader.MIN_PART_SIZE;
+
+        // warm up
+        new LargeFileDownloader(client, getTestBucket(), key, destFile).withParallelThreshold(FILE_SIZE)
+                .withPartSize(partSize).download();
+
+        long smallBufferMs = timeDownload(new LargeFileDownloader(client, getTestBucket(), key, destFile)
+                .withParallelThreshold(FILE_SIZE).withPartSize(partSize).withWriteBufferSize(32 * 1024));
+        long bufferedMs = timeDownload(new LargeFileDownloader(client, getTestBucket(), key, destFile)
+                .withParallelThreshold(FILE_SIZE).withPartSize(partSize));
+        long mappedMs = timeDownload(new LargeFileDownloader(client, getTestBucket(), key, destFile)
+                .withParallelThreshold(FILE_SIZE).withPartSize(partSize).withUseMemoryMappedWrites(true));
+
+        log.info(String.format("download of %,d bytes - 32KB buffer: %,dms, %,dKB buffer: %,dms, mapped: %,dms",
+                FILE_SIZE, smallBufferMs, LargeFileDownloader.DEFAULT_WRITE_BUFFER_SIZE / 1024, bufferedMs, mappedMs));
+    }
+
+    // returns wall time in milliseconds, after checking the downloaded content
+    private long timeDownload(LargeFileDownloader lfd) throws Exception {
+        long start = System.nanoTime();
+        lfd.download();
+        long durationMs = (System.nanoTime() - start) / 1000000;
+
+        Assert.assertEquals(FILE_SIZE, lfd.getBytesTransferred());
+        DigestInputStream dis = new DigestInputStream(new FileInputStream(destFile), MessageDigest.getInstance("MD5"));
+        StreamUtil.copy(dis, new NullStream(), destFile.length());
+        Assert.assertEquals(md5Hex, DatatypeConverter.printHexBinary(dis.getMessageDigest().digest()).toLowerCase());
+        return durationMs;
+    }
+
+    @Test
+    public void testPauseAndResume() throws Exception {
+        File checkpointFile = new File(destFile.getPath() + ".checkpoint");
+        checkpointFile.deleteOnExit();
+        long partSize = LargeFileDownloader.MIN_PART_SIZE;
+
+        LargeFileDownloader lfd = new LargeFileDownloader(client, getTestBucket(), key, destFile);
+        lfd.withParallelThreshold(FILE_SIZE).withPartSize(partSize).withThreads(1).withCheckpointFile(checkpointFile);
+        LargeFileDownload download = lfd.downloadAsync();
+        while (lfd.getBytesTransferred() == 0) Thread.sleep(50);
+        download.pause();
+
+        long transferred = lfd.getBytesTransferred();
+        Assert.assertTrue(transferred < FILE_SIZE);
+        Assert.assertTrue(checkpointFile.exists());
+
+        // resume with a new downloader (only the remaining parts should be transferred)
+        lfd = new LargeFileDownloader(client, getTestBucket(), key, destFile);
+        lfd.withParallelThreshold(FILE_SIZE).withPartSize(partSize).withCheckpointFile(checkpointFile);
+        lfd.download();
+
+        Assert.assertTrue(lfd.getBytesTransferred() < FILE_SIZE);
+        Assert.assertEquals(FILE_SIZE, lfd.getBytesTransferred() + transferred);
+        Assert.assertFalse(checkpointFile.exists());
+
+        // verify content
+        DigestInputStream dis = new DigestInputStream(new FileInputStream(destFile), MessageDigest.getInstance("MD5"));
+        StreamUtil.copy(dis, new NullStream(), destFile.length());
+        Assert.assertEquals(md5Hex, DatatypeConverter.printHexBinary(dis.getMessageDigest().digest()).toLowerCase());
+    }
+
+    @Test
+    public void testPartResume() throws Exception {
+        // break the first stream of every part halfway through
+        final long partSize = LargeFileDownloader.MIN_PART_SIZE;
+        final Set<Long> brokenParts = Collections.synchronizedSet(new HashSet<Long>());
+        S3Client breakingClient = new S3JerseyClient(createS3Config()) {
+            @Override
+            public <T> GetObjectResult<T> getObject(GetObjectRequest request, Class<T> objectType) {
+                GetObjectResult<T> result = super.getObject(request, objectType);
+                long first = request.getRange().getFirst();
+                if (first % partSize == 0 && brokenParts.add(first)) {
+                    final InputStream is = (InputStream) result.getObject();
+                    result.setObject(objectType.cast(new FilterInputStream(is) {
+                        long remaining = partSize / 2;
+
+                        @Override
+                        public int read(byte[] b, int off, int len) throws IOException {
+                            if (remaining <= 0) throw new IOException("connection reset (simulated)");
+                            int count = super.read(b, off, (int) Math.min(len, remaining));
+                            if (count > 0) remaining -= count;
+                            return count;
+                        }
+                    }));
+                }
+                return result;
+            }
+        };
+
+        try {
+            LargeFileDownloader lfd = new LargeFileDownloader(breakingClient, getTestBucket(), key, destFile);
+            lfd.withParallelThreshold(FILE_SIZE).withPartSize(partSize).withInitialPartRetryDelay(0);
+            lfd.download();
+
+            // each part was resumed once, and only the remainder was transferred again
+            Assert.assertEquals(FILE_SIZE / partSize, lfd.getTransferStatistics().getPartCount());
+            Assert.assertEquals(FILE_SIZE, lfd.getBytesTransferred());
+        } finally {
+            breakingClient.destroy();
+        }
+
+        // verify content
+        DigestInputStream dis = new DigestInputStream(new FileInputStream(destFile), MessageDigest.getInstance("MD5"));
+        StreamUtil.copy(dis, new NullStream(), destFile.length());
+        Assert.assertEquals(md5Hex, DatatypeConverter.printHexBinary(dis.getMessageDigest().digest()).toLowerCase());
+
+        // with no resumes, the download fails
+        brokenParts.clear();
+        breakingClient = new S3JerseyClient(createS3Config()) {
+            @Override
+            public <T> GetObjectResult<T> getObject(GetObjectRequest request, Class<T> objectType) {
+                GetObjectResult<T> result = super.getObject(request, objectType);
+                result.setObject(objectType.cast(new FilterInputStream((InputStream) result.getObject()) {
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        throw new IOException("connection reset (simulated)");
+                    }
+                }));
+                return result;
+            }
+        };
+        try {
+            new LargeFileDownloader(breakingClient, getTestBucket(), key, destFile)
+                    .withParallelThreshold(FILE_SIZE).withPartSize(partSize).withPartRetryLimit(0).download();
+            Assert.fail("a broken part should fail the download when resume is disabled");
+        } catch (RuntimeException e) {
+            // expected
+        } finally {
+            breakingClient.destroy();
+        }
+    }
+
+    @Test
+    public void testPartFailureStopsOtherParts() throws Exception {
+        final long partSize = LargeFileDownloader.MIN_PART_SIZE;
+        final AtomicLong otherPartRequests = new AtomicLong();
+        // the first part fails for good, while the streams of all other parts keep breaking (so they keep resuming)
+        S3Client failingClient = new S3JerseyClient(createS3Config()) {
+            @Override
+            public <T> GetObjectResult<T> getObject(GetObjectRequest request, Class<T> objectType) {
+                if (request.getRange().getFirst() == 0) {
+                    try {
+                        Thread.sleep(1000); // let the other parts start resuming
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    throw new S3Exception("access denied (simulated)", 403);
+                }
+                otherPartRequests.incrementAndGet();
+                GetObjectResult<T> result = super.getObject(request, objectType);
+                result.setObject(objectType.cast(new FilterInputStream((InputStream) result.getObject()) {
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        throw new IOException("connection reset (simulated)");
+                    }
+                }));
+                return result;
+            }
+        };
+
+        try {
+            try {
+                new LargeFileDownloader(failingClient, getTestBucket(), key, destFile)
+                        .withParallelThreshold(FILE_SIZE).withPartSize(partSize)
+                        .withInitialPartRetryDelay(200).withPartRetryLimit(10).download();
+                Assert.fail("a failed part should fail the download");
+            } catch (RuntimeException e) {
+                // expected
+            }
+            Assert.assertTrue(otherPartRequests.get() > 0);
+
+            // once the download has failed, the other parts should stop resuming
+            Thread.sleep(500);
+            long requests = otherPartRequests.get();
+            Thread.sleep(3000);
+            Assert.assertEquals(requests, otherPartRequests.get());
+        } finally {
+            failingClient.destroy();
+        }
+    }
+
+    @Test
+    public void testCancelBelowThreshold() throws Exception {
+        LargeFileDownloader lfd = new LargeFileDownloader(client, getTestBucket(), key, destFile);
+        lfd.withParallelThreshold(FILE_SIZE + 1);
+        // slow the download down, so it can be cancelled midway
+        lfd.setProgressListener(new ProgressListener() {
+            @Override
+            public void progress(long completed, long total) {
+            }
+
+            @Override
+            public void transferred(long size) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        LargeFileDownload download = lfd.downloadAsync();
+        while (lfd.getBytesTransferred() == 0) Thread.sleep(50);
+        download.cancel();
+
+        try {
+            download.waitForCompletion();
+            Assert.fail("a cancelled download should not complete");
+        } catch (CancellationException e) {
+            // expected
+        }
+        Assert.assertTrue(lfd.getBytesTransferred() < FILE_SIZE);
+        Assert.assertFalse(destFile.exists());
+    }
+
     @Test
     public void testBelowThreshold() throws Exception {
         final AtomicLong bytesTransferred = new AtomicLong(), bytesCompleted = new AtomicLong(), bytesTotal = new AtomicLong();
@@ -49,11 +49,13 @@ import org.junit.Test;
 
 import javax.xml.bind.DatatypeConverter;
 import java.io.*;
+import java.nio.file.Files;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class LargeFileUploaderTest extends AbstractS3ClientTest {
@@ -201,6 +203,55 @@ public class LargeFileUploaderTest extends AbstractS3ClientTest {
         Assert.assertEquals(objectMetadata.getUserMetadata(), client.getObjectMetadata(getTestBucket(), key).getUserMetadata());
     }
 
+    @Test
+    public void testStreamWithVirtualThreads() {
+        String key = "large-file-uploader-stream-virtual.bin";
+        int size = 20 * 1024 * 1024 + 123; // > 20MB
+        byte[] data = new byte[size];
+        new Random().nextBytes(data);
+
+        // without read-ahead, parts must be read from the stream (and uploaded) strictly in order
+        LargeFileUploader uploader = new TestLargeFileUploader(client, getTestBucket(), key,
+                new ByteArrayInputStream(data), size).withUseVirtualThreads(true);
+        uploader.setPartSize(LargeFileUploader.MIN_PART_SIZE);
+        uploader.doMultipartUpload();
+
+        Assert.assertEquals(size, uploader.getBytesTransferred());
+        Assert.assertArrayEquals(data, client.readObject(getTestBucket(), key, byte[].class));
+
+        client.deleteObject(getTestBucket(), key);
+
+        uploader = new TestLargeFileUploader(client, getTestBucket(), key, new ByteArrayInputStream(data), size)
+                .withUseVirtualThreads(true);
+        uploader.setPartSize(LargeFileUploader.MIN_PART_SIZE);
+        uploader.doByteRangeUpload();
+
+        Assert.assertArrayEquals(data, client.readObject(getTestBucket(), key, byte[].class));
+    }
+
+    @Test
+    public void testStreamReadAhead() {
+        String key = "large-file-uploader-stream-read-ahead.bin";
+        int size = 20 * 1024 * 1024 + 123; // > 20MB
+        byte[] data = new byte[size];
+        new Random().nextBytes(data);
+        ByteProgressListener pl = new ByteProgressListener();
+
+        // buffer up to 4 parts at a time
+        LargeFileUploader uploader = new TestLargeFileUploader(client, getTestBucket(), key,
+                new ByteArrayInputStream(data), size).withProgressListener(pl);
+        uploader.withPartSize(LargeFileUploader.MIN_PART_SIZE).withThreads(4)
+                .withStreamBufferSize(4 * LargeFileUploader.MIN_PART_SIZE);
+
+        // multipart
+        uploader.doMultipartUpload();
+
+        Assert.assertEquals(size, uploader.getBytesTransferred());
+        Assert.assertEquals(size, pl.completed.get());
+        Assert.assertTrue(uploader.getETag().contains("-")); // hyphen signifies multipart / updated object
+        Assert.assertArrayEquals(data, client.readObject(getTestBucket(), key, byte[].class));
+    }
+
     @Test
     public void testAboveThreshold() throws Exception {
         String key = "lfu-mpu-test";
@@ -358,6 +409,158 @@ public class LargeFileUploaderTest extends AbstractS3ClientTest {
         Assert.assertEquals(mockMultipartSource.getMpuETag(), client.getObjectMetadata(getTestBucket(), key).getETag());
     }
 
+    @Test
+    public void testPartRetry() {
+        String key = "testPartRetry";
+        // fail the first attempt of every part, alternating between server and I/O errors
+        final Set<Integer> failedParts = Collections.synchronizedSet(new HashSet<Integer>());
+        S3Client failingClient = new S3JerseyClient(createS3Config()) {
+            @Override
+            public MultipartPartETag uploadPart(UploadPartRequest request) {
+                int partNumber = request.getPartNumber();
+                if (failedParts.add(partNumber)) {
+                    // send some of the part before failing, so the failed attempt moves progress
+                    try {
+                        ((InputStream) request.getObject()).read(new byte[1024]);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                    if (partNumber % 2 == 0) throw new S3Exception("internal error (simulated)", 500);
+                    throw new RuntimeException(new IOException("connection reset (simulated)"));
+                }
+                return super.uploadPart(request);
+            }
+        };
+
+        MockMultipartSource mockMultipartSource = new MockMultipartSource();
+        ByteProgressListener pl = new ByteProgressListener();
+        try {
+            LargeFileUploader lfu = new TestLargeFileUploader(failingClient, getTestBucket(), key, mockMultipartSource)
+                    .withPartSize(mockMultipartSource.getPartSize()).withMpuThreshold((int) mockMultipartSource.getTotalSize())
+                    .withInitialPartRetryDelay(0).withProgressListener(pl);
+            lfu.doMultipartUpload();
+
+            // data from the failed attempts is not counted twice
+            Assert.assertEquals(mockMultipartSource.getTotalSize(), lfu.getBytesTransferred());
+            Assert.assertEquals(mockMultipartSource.getTotalSize(), pl.completed.get());
+            Assert.assertTrue(pl.transferred.get() > mockMultipartSource.getTotalSize());
+
+            // every part was reopened once
+            Assert.assertEquals(5, failedParts.size());
+            Assert.assertEquals(5, lfu.getTransferStatistics().getPartCount());
+            Assert.assertEquals(0, lfu.getTransferStatistics().getFailedPartCount());
+            for (PartTransferMetrics part : lfu.getTransferStatistics().getParts()) {
+                Assert.assertEquals(1, part.getResumeCount());
+            }
+        } finally {
+            failingClient.destroy();
+        }
+        Assert.assertArrayEquals(mockMultipartSource.getTotalBytes(), client.readObject(getTestBucket(), key, byte[].class));
+
+        // client errors are not retried
+        failingClient = new S3JerseyClient(createS3Config()) {
+            @Override
+            public MultipartPartETag uploadPart(UploadPartRequest request) {
+                throw new S3Exception("access denied (simulated)", 403);
+            }
+        };
+        try {
+            new TestLargeFileUploader(failingClient, getTestBucket(), key + "-denied", mockMultipartSource)
+                    .withPartSize(mockMultipartSource.getPartSize()).withMpuThreshold((int) mockMultipartSource.getTotalSize())
+                    .withInitialPartRetryDelay(0).doMultipartUpload();
+            Assert.fail("a 403 should not be retried");
+        } catch (RuntimeException e) {
+            Throwable t = e;
+            while (t.getCause() != null) t = t.getCause();
+            Assert.assertTrue(t instanceof S3Exception);
+            Assert.assertEquals(403, ((S3Exception) t).getHttpCode());
+        } finally {
+            failingClient.destroy();
+        }
+
+        // with no retries, the upload fails
+        failedParts.clear();
+        failingClient = new S3JerseyClient(createS3Config()) {
+            @Override
+            public MultipartPartETag uploadPart(UploadPartRequest request) {
+                if (failedParts.add(request.getPartNumber())) throw new S3Exception("internal error (simulated)", 500);
+                return super.uploadPart(request);
+            }
+        };
+        try {
+            new TestLargeFileUploader(failingClient, getTestBucket(), key + "-noretry", mockMultipartSource)
+                    .withPartSize(mockMultipartSource.getPartSize()).withMpuThreshold((int) mockMultipartSource.getTotalSize())
+                    .withPartRetryLimit(0).doMultipartUpload();
+            Assert.fail("a failed part should fail the upload when part retries are disabled");
+        } catch (RuntimeException e) {
+            Throwable t = e;
+            while (t.getCause() != null) t = t.getCause();
+            Assert.assertTrue(t instanceof S3Exception);
+            Assert.assertEquals(500, ((S3Exception) t).getHttpCode());
+        } finally {
+            failingClient.destroy();
+        }
+    }
+
+    @Test
+    public void testSpeculativeUpload() {
+        String key = "testSpeculativeUpload";
+        final long slowPartDelayMs = 10000;
+        // the first attempt of the last part stalls
+        final AtomicBoolean stalled = new AtomicBoolean();
+        MockMultipartSource mockMultipartSource = new MockMultipartSource() {
+            @Override
+            public InputStream getPartDataStream(long offset, long length) {
+                InputStream is = super.getPartDataStream(offset, length);
+                if (offset + length < getTotalSize() || !stalled.compareAndSet(false, true)) return is;
+                return new FilterInputStream(is) {
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        try {
+                            Thread.sleep(slowPartDelayMs);
+                        } catch (InterruptedException e) {
+                            throw new InterruptedIOException();
+                        }
+                        return super.read(b, off, len);
+                    }
+                };
+            }
+        };
+        StragglerDetector detector = new StragglerDetector().withMinStragglerTimeMs(500);
+        LargeFileUploader lfu = new TestLargeFileUploader(client, getTestBucket(), key, mockMultipartSource)
+                .withPartSize(mockMultipartSource.getPartSize()).withMpuThreshold((int) mockMultipartSource.getTotalSize())
+                .withStragglerDetector(detector);
+
+        long start = System.currentTimeMillis();
+        lfu.doMultipartUpload();
+        long duration = System.currentTimeMillis() - start;
+
+        // the duplicate of the stalled part should have finished first
+        Assert.assertTrue(stalled.get());
+        Assert.assertEquals(1, detector.getSpeculatedPartCount());
+        Assert.assertTrue("upload waited on the stalled part (" + duration + "ms)", duration < slowPartDelayMs);
+        Assert.assertArrayEquals(mockMultipartSource.getTotalBytes(), client.readObject(getTestBucket(), key, byte[].class));
+        Assert.assertEquals(mockMultipartSource.getMpuETag(), client.getObjectMetadata(getTestBucket(), key).getETag());
+    }
+
+    @Test
+    public void testAdaptiveTransfer() {
+        String key = "testAdaptiveTransfer";
+        MockMultipartSource mockMultipartSource = new MockMultipartSource();
+        AdaptiveTransferController controller = new AdaptiveTransferController().withMaxConcurrency(4);
+        LargeFileUploader lfu = new TestLargeFileUploader(client, getTestBucket(), key, mockMultipartSource)
+                .withPartSize(100 * 1024L).withThreads(2).withTransferController(controller);
+        lfu.doMultipartUpload();
+
+        Assert.assertEquals(mockMultipartSource.getTotalSize(), lfu.getBytesTransferred());
+        Assert.assertTrue(lfu.getETag().contains("-")); // hyphen signifies multipart / updated object
+        Assert.assertArrayEquals(mockMultipartSource.getTotalBytes(), client.readObject(getTestBucket(), key, byte[].class));
+
+        // controller should report settled values within its bounds
+        Assert.assertTrue(controller.getConcurrency() >= 1 && controller.getConcurrency() <= 4);
+        Assert.assertTrue(controller.getPartSize() >= 100 * 1024L);
+    }
+
     @Test
     public void testResumeWithPartList() {
         String bucket = getTestBucket();
@@ -556,6 +759,87 @@ public class LargeFileUploaderTest extends AbstractS3ClientTest {
         Assert.assertEquals(mockMultipartSource.getTotalSize(), pl.total.get());
     }
 
+    @Test
+    public void testJournalResume() throws Exception {
+        String key = "lfu-journal-resume";
+        long partSize = 100 * 1024;
+        byte[] data = new byte[(int) (5 * partSize) + 123]; // 6 parts
+        new Random().nextBytes(data);
+        File file = File.createTempFile("lfu-journal-source", null);
+        file.deleteOnExit();
+        Files.write(file.toPath(), data);
+        File journalFile = File.createTempFile("lfu-journal", null);
+        journalFile.deleteOnExit();
+        Assert.assertTrue(journalFile.delete());
+
+        // simulate a crash after 3 parts are uploaded (parts are uploaded in order with 1 thread)
+        LargeFileUploader lfu = new TestLargeFileUploader(client, getTestBucket(), key, file) {
+            @Override
+            protected MultipartPartETag uploadPart(String uploadId, int partNumber, InputStream is, long length,
+                                                   PartTransferMetrics partMetrics) {
+                if (partNumber > 3) throw new S3Exception("simulated failure", 400);
+                return super.uploadPart(uploadId, partNumber, is, length, partMetrics);
+            }
+        }.withPartSize(partSize).withMpuThreshold(partSize).withThreads(1)
+                .withAbortMpuOnFailure(false).withJournalFile(journalFile);
+        try {
+            lfu.doMultipartUpload();
+            Assert.fail("upload should have failed");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        Assert.assertTrue(journalFile.exists());
+
+        // a different source of the same size must not resume from the journal
+        File otherFile = File.createTempFile("lfu-journal-other", null);
+        otherFile.deleteOnExit();
+        Files.write(otherFile.toPath(), data);
+        try {
+            new TestLargeFileUploader(client, getTestBucket(), key, otherFile).withPartSize(partSize)
+                    .withMpuThreshold(partSize).withJournalFile(journalFile).doMultipartUpload();
+            Assert.fail("journal should not match a different source");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        // neither can the same source once it has been modified
+        long lastModified = file.lastModified();
+        Assert.assertTrue(file.setLastModified(lastModified - 60000));
+        try {
+            new TestLargeFileUploader(client, getTestBucket(), key, file).withPartSize(partSize)
+                    .withMpuThreshold(partSize).withJournalFile(journalFile).doMultipartUpload();
+            Assert.fail("journal should not match a modified source");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        Assert.assertTrue(file.setLastModified(lastModified));
+
+        // a source without a file identity cannot use a journal at all
+        try {
+            new TestLargeFileUploader(client, getTestBucket(), key, new MockMultipartSource())
+                    .withJournalFile(journalFile).doMultipartUpload();
+            Assert.fail("journal should require a file source");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+
+        // resume: only the remaining 3 parts are uploaded
+        final AtomicLong uploadedParts = new AtomicLong();
+        lfu = new TestLargeFileUploader(client, getTestBucket(), key, file) {
+            @Override
+            protected MultipartPartETag uploadPart(String uploadId, int partNumber, InputStream is, long length,
+                                                   PartTransferMetrics partMetrics) {
+                uploadedParts.incrementAndGet();
+                return super.uploadPart(uploadId, partNumber, is, length, partMetrics);
+            }
+        }.withPartSize(partSize).withMpuThreshold(partSize).withJournalFile(journalFile);
+        lfu.doMultipartUpload();
+
+        Assert.assertEquals(3, uploadedParts.get());
+        Assert.assertFalse(journalFile.exists());
+        Assert.assertArrayEquals(data, client.readObject(getTestBucket(), key, byte[].class));
+    }
+
     @Test
     public void testPauseResume() throws Exception {
         String bucket = getTestBucket();
@@ -697,6 +981,32 @@ public class LargeFileUploaderTest extends AbstractS3ClientTest {
         Assert.assertEquals(0, client.listMultipartUploads(getTestBucket()).getUploads().size());
     }
 
+    @Test
+    public void testAbortSpeculativeUpload() throws Exception {
+        String key = "mpu-abort-speculative";
+        MockMultipartSource mockMultipartSource = new MockMultipartSource();
+        mockMultipartSource.setPartDelayMs(2000);
+
+        // with 2 threads, most parts are still queued when the upload is aborted
+        LargeFileUploader lfu = new TestLargeFileUploader(client, getTestBucket(), key, mockMultipartSource)
+                .withPartSize(mockMultipartSource.getPartSize()).withMpuThreshold(mockMultipartSource.getTotalSize())
+                .withThreads(2).withStragglerDetector(new StragglerDetector());
+        LargeFileUpload upload = lfu.uploadAsync();
+
+        Thread.sleep(1000);
+        upload.abort();
+
+        // the queued parts will never run, but the upload should still finish
+        try {
+            upload.waitForCompletion(10, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            Assert.fail("upload did not finish after abort");
+        } catch (RuntimeException e) {
+            // failing is ok, as long as it finishes
+        }
+        Assert.assertEquals(0, client.listMultipartUploads(getTestBucket()).getUploads().size());
+    }
+
     static class NullStream extends OutputStream {
         @Override
         public void write(int b) {
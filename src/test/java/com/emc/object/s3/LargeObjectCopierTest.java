@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.object.Range;
+import com.emc.object.s3.jersey.S3JerseyClient;
+import com.emc.object.s3.lfu.LargeFileUploaderResumeContext;
+import com.emc.object.s3.request.CopyPartRequest;
+import com.emc.object.s3.request.PutObjectRequest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class LargeObjectCopierTest extends AbstractS3ClientTest {
+    @Override
+    protected String getTestBucketPrefix() {
+        return "loc-test";
+    }
+
+    @Override
+    protected S3Client createS3Client() throws Exception {
+        return new S3JerseyClient(createS3Config());
+    }
+
+    private byte[] createSource(String key) {
+        byte[] data = new byte[20 * 1024 * 1024 + 31]; // > 20MB
+        new Random().nextBytes(data);
+        S3ObjectMetadata metadata = new S3ObjectMetadata().withContentType("application/x-test").addUserMetadata("foo", "bar");
+        client.putObject(new PutObjectRequest(getTestBucket(), key, data).withObjectMetadata(metadata));
+        return data;
+    }
+
+    @Test
+    public void testMultipartCopy() {
+        byte[] data = createSource("loc-source");
+
+        LargeObjectCopier copier = new LargeObjectCopier(client, getTestBucket(), "loc-source", getTestBucket(), "loc-target")
+                .withPartSize(LargeObjectCopier.MIN_PART_SIZE).withMpuThreshold(LargeObjectCopier.MIN_PART_SIZE);
+        copier.copy();
+
+        Assert.assertEquals(data.length, copier.getBytesCopied());
+        Assert.assertTrue(copier.getETag().contains("-")); // hyphen signifies multipart
+        Assert.assertArrayEquals(data, client.readObject(getTestBucket(), "loc-target", byte[].class));
+
+        // source metadata should be copied
+        S3ObjectMetadata metadata = client.getObjectMetadata(getTestBucket(), "loc-target");
+        Assert.assertEquals("application/x-test", metadata.getContentType());
+        Assert.assertEquals("bar", metadata.getUserMetadata("foo"));
+    }
+
+    @Test
+    public void testSingleCopy() {
+        byte[] data = createSource("loc-source");
+
+        LargeObjectCopier copier = new LargeObjectCopier(client, getTestBucket(), "loc-source", getTestBucket(), "loc-target")
+                .withMpuThreshold(data.length + 1);
+        copier.copy();
+
+        Assert.assertFalse(copier.getETag().contains("-"));
+        Assert.assertArrayEquals(data, client.readObject(getTestBucket(), "loc-target", byte[].class));
+    }
+
+    @Test
+    public void testResumeCopy() {
+        byte[] data = createSource("loc-source");
+        long partSize = LargeObjectCopier.MIN_PART_SIZE;
+
+        // start an MPU and copy only the first part
+        String uploadId = client.initiateMultipartUpload(getTestBucket(), "loc-target");
+        client.copyPart(new CopyPartRequest(getTestBucket(), "loc-source",
+                getTestBucket(), "loc-target", uploadId, 1).withSourceRange(Range.fromOffsetLength(0, partSize)));
+
+        LargeObjectCopier copier = new LargeObjectCopier(client, getTestBucket(), "loc-source", getTestBucket(), "loc-target")
+                .withPartSize(partSize).withMpuThreshold(partSize)
+                .withResumeContext(new LargeFileUploaderResumeContext().withUploadId(uploadId).withVerifyPartsFoundInTarget(false));
+        copier.copy();
+
+        Assert.assertArrayEquals(data, client.readObject(getTestBucket(), "loc-target", byte[].class));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.object.s3.bean.CannedAcl;
+import com.emc.object.s3.jersey.S3JerseyClient;
+import com.emc.object.util.RequestMetrics;
+import com.emc.object.util.RequestStats;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MetricsFilterTest extends AbstractS3ClientTest {
+    private final RequestMetrics requestMetrics = new RequestMetrics();
+
+    @Override
+    protected String getTestBucketPrefix() {
+        return "s3-metrics-test";
+    }
+
+    @Override
+    protected S3Client createS3Client() throws Exception {
+        return new S3JerseyClient(createS3Config().withRequestMetrics(requestMetrics));
+    }
+
+    @Test
+    public void testRequestMetrics() {
+        requestMetrics.reset();
+        String key = "metrics-object";
+        client.putObject(getTestBucket(), key, "Hello Metrics!", "text/plain");
+        for (int i = 0; i < 10; i++) client.readObject(getTestBucket(), key, String.class);
+        client.getObjectMetadata(getTestBucket(), key);
+        client.setObjectAcl(getTestBucket(), key, CannedAcl.Private);
+        client.listMultipartUploads(getTestBucket());
+        try {
+            client.readObject(getTestBucket(), "does-not-exist", String.class);
+            Assert.fail("reading a missing object should fail");
+        } catch (S3Exception e) {
+            // expected
+        }
+
+        RequestStats get = requestMetrics.getStats("GET");
+        Assert.assertNotNull(get);
+        Assert.assertEquals(11, get.getCount());
+        Assert.assertEquals(1, get.getErrorCount());
+        Assert.assertTrue(get.getP50Nanos() > 0);
+        Assert.assertTrue(get.getP999Nanos() >= get.getP50Nanos());
+
+        Assert.assertEquals(1, requestMetrics.getStats("PUT").getCount());
+        Assert.assertEquals(1, requestMetrics.getStats("HEAD").getCount());
+        Assert.assertEquals(1, requestMetrics.getStats("PUT ?acl").getCount());
+        Assert.assertEquals(1, requestMetrics.getStats("GET ?uploads").getCount());
+
+        // every request went to a known host
+        for (RequestStats stats : requestMetrics.getStatsByHost()) {
+            Assert.assertNotNull(stats.getHost());
+        }
+        for (RequestStats stats : requestMetrics.getStatsByStatusClass()) {
+            if ("GET".equals(stats.getOperation()) && stats.getStatusClass() == 4)
+                Assert.assertEquals(1, stats.getCount());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.object.s3.jersey.S3JerseyClient;
+import com.emc.object.s3.request.PutObjectRequest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+public class ParallelObjectInputStreamTest extends AbstractS3ClientTest {
+    @Override
+    protected String getTestBucketPrefix() {
+        return "pois-test";
+    }
+
+    @Override
+    protected S3Client createS3Client() throws Exception {
+        return new S3JerseyClient(createS3Config());
+    }
+
+    private byte[] createObject(String key, int size) {
+        byte[] data = new byte[size];
+        new Random().nextBytes(data);
+        client.putObject(new PutObjectRequest(getTestBucket(), key, data));
+        return data;
+    }
+
+    private byte[] readFully(InputStream is, int bufferSize) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[bufferSize];
+        int count;
+        while ((count = is.read(buffer)) != -1) {
+            baos.write(buffer, 0, count);
+        }
+        return baos.toByteArray();
+    }
+
+    @Test
+    public void testParallelRead() throws Exception {
+        String key = "pois-object";
+        byte[] data = createObject(key, 5 * 1024 * 1024 + 17); // last range is short
+
+        try (ParallelObjectInputStream is = new ParallelObjectInputStream(client, getTestBucket(), key)
+                .withRangeSize(256 * 1024).withReadAhead(3)) {
+            // read with a buffer that does not line up with range boundaries
+            Assert.assertArrayEquals(data, readFully(is, 100 * 1000));
+            Assert.assertEquals(-1, is.read());
+        }
+    }
+
+    @Test
+    public void testSingleByteReads() throws Exception {
+        String key = "pois-object";
+        byte[] data = createObject(key, 1024 * 1024 + 3);
+
+        try (ParallelObjectInputStream is = new ParallelObjectInputStream(client, getTestBucket(), key)
+                .withRangeSize(64 * 1024).withObjectSize((long) data.length)) {
+            for (int i = 0; i < data.length; i++) {
+                Assert.assertEquals(data[i] & 0xff, is.read());
+            }
+            Assert.assertEquals(-1, is.read());
+        }
+    }
+
+    @Test
+    public void testEmptyObject() throws Exception {
+        String key = "pois-empty";
+        createObject(key, 0);
+
+        try (ParallelObjectInputStream is = new ParallelObjectInputStream(client, getTestBucket(), key)) {
+            Assert.assertEquals(-1, is.read());
+        }
+    }
+
+    @Test
+    public void testCloseBeforeEnd() throws Exception {
+        String key = "pois-object";
+        createObject(key, 2 * 1024 * 1024);
+
+        ParallelObjectInputStream is = new ParallelObjectInputStream(client, getTestBucket(), key)
+                .withRangeSize(128 * 1024);
+        Assert.assertTrue(is.read(new byte[1000]) > 0);
+        is.close();
+        try {
+            is.read();
+            Assert.fail("read after close should fail");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testConfigAfterStart() throws Exception {
+        String key = "pois-object";
+        createObject(key, 1024);
+
+        try (ParallelObjectInputStream is = new ParallelObjectInputStream(client, getTestBucket(), key)) {
+            is.read();
+            try {
+                is.setRangeSize(1024);
+                Assert.fail("configuration after the first read should fail");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+    }
+}
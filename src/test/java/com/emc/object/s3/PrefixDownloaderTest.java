@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.object.s3.bean.ListObjectsResult;
+import com.emc.object.s3.jersey.S3JerseyClient;
+import com.emc.object.s3.request.ListObjectsRequest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class PrefixDownloaderTest extends AbstractS3ClientTest {
+    @Override
+    protected String getTestBucketPrefix() {
+        return "prefix-downloader-test";
+    }
+
+    @Override
+    protected S3Client createS3Client() throws Exception {
+        return new S3JerseyClient(createS3Config());
+    }
+
+    @Test
+    public void testPrefixDownload() throws Exception {
+        Random random = new Random();
+        Map<String, byte[]> expected = new HashMap<>();
+
+        // small objects in a few "subdirectories"
+        for (int i = 0; i < 50; i++) {
+            String relativePath = "dir" + (i % 3) + "/object" + i;
+            byte[] data = new byte[random.nextInt(10 * 1024)];
+            random.nextBytes(data);
+            client.putObject(getTestBucket(), "prefix/" + relativePath, data, null);
+            expected.put(relativePath, data);
+        }
+
+        // one large object
+        byte[] largeData = new byte[10 * 1024 * 1024 + 17];
+        random.nextBytes(largeData);
+        client.putObject(getTestBucket(), "prefix/large.bin", largeData, null);
+        expected.put("large.bin", largeData);
+
+        // outside of the prefix, and a directory placeholder
+        client.putObject(getTestBucket(), "other/object", new byte[10], null);
+        client.putObject(getTestBucket(), "prefix/dir0/", new byte[0], null);
+
+        long totalSize = 0;
+        for (byte[] data : expected.values()) totalSize += data.length;
+
+        Path dir = Files.createTempDirectory("prefix-downloader-test");
+        PrefixDownloader downloader = new PrefixDownloader(client, getTestBucket(), "prefix/", dir.toFile())
+                .withThreads(4).withLargeObjectThreshold(5 * 1024 * 1024).withPartSize(LargeFileDownloader.MIN_PART_SIZE);
+        downloader.download();
+
+        Assert.assertEquals(0, downloader.getFailures().size());
+        Assert.assertEquals(expected.size(), downloader.getObjectsCompleted());
+        Assert.assertEquals(totalSize, downloader.getTotalBytes());
+        Assert.assertEquals(totalSize, downloader.getBytesTransferred());
+        for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+            Assert.assertArrayEquals(entry.getValue(), Files.readAllBytes(dir.resolve(entry.getKey())));
+        }
+        Assert.assertFalse(Files.exists(dir.resolve("other")));
+    }
+
+    @Test
+    public void testMultiplePages() throws Exception {
+        for (int i = 0; i < 25; i++) {
+            client.putObject(getTestBucket(), "page/object" + i, new byte[]{(byte) i}, null);
+        }
+        // use small pages, so listing is pipelined with downloads
+        S3Client pagingClient = new S3JerseyClient(createS3Config()) {
+            @Override
+            public ListObjectsResult listObjects(ListObjectsRequest request) {
+                return super.listObjects(request.withMaxKeys(10));
+            }
+        };
+
+        Path dir = Files.createTempDirectory("prefix-downloader-test");
+        PrefixDownloader downloader = new PrefixDownloader(pagingClient, getTestBucket(), "page/", dir.toFile()).withThreads(2);
+        try {
+            downloader.download();
+        } finally {
+            pagingClient.destroy();
+        }
+
+        Assert.assertEquals(0, downloader.getFailures().size());
+        Assert.assertEquals(25, downloader.getObjectsCompleted());
+        for (int i = 0; i < 25; i++) {
+            Assert.assertArrayEquals(new byte[]{(byte) i}, Files.readAllBytes(dir.resolve("object" + i)));
+        }
+    }
+}
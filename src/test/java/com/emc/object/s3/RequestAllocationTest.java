@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.object.AbstractJerseyClient;
+import com.emc.object.ObjectRequest;
+import com.emc.object.Range;
+import com.emc.object.s3.jersey.AuthorizationFilter;
+import com.emc.object.s3.request.GetObjectRequest;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import com.sun.jersey.core.header.InBoundHeaders;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+
+public class RequestAllocationTest {
+    private static final Logger log = LoggerFactory.getLogger(RequestAllocationTest.class);
+
+    private static final int ITERATIONS = 20000;
+
+    /**
+     * Not a strict benchmark; reports the bytes allocated to build and sign a request (the request goes to a stub
+     * handler, so nothing is sent and no response is read)
+     */
+    @Test
+    public void testAllocationPerRequest() throws Exception {
+        S3Config pathConfig = new S3Config(new URI("http://127.0.0.1:9020")).withIdentity("user").withSecretKey("secret");
+        S3Config vHostConfig = new S3Config(new URI("http://s3.company.com")).withUseVHost(true)
+                .withIdentity("user").withSecretKey("secret");
+
+        long v2Path = allocatedBytesPerRequest(new S3Config(pathConfig).withUseV2Signer(true));
+        long v2VHost = allocatedBytesPerRequest(new S3Config(vHostConfig).withUseV2Signer(true));
+        long v4Path = allocatedBytesPerRequest(new S3Config(pathConfig).withUseV2Signer(false));
+        log.info(String.format("allocated bytes per buildRequest+sign - V2: %,d, V2 vhost: %,d, V4: %,d",
+                v2Path, v2VHost, v4Path));
+    }
+
+    private long allocatedBytesPerRequest(S3Config s3Config) {
+        Client client = Client.create();
+        // order of execution is reversed from this order
+        final ClientResponse response = new ClientResponse(200, new InBoundHeaders(),
+                new ByteArrayInputStream(new byte[0]), client.getMessageBodyWorkers());
+        client.addFilter(new ClientFilter() {
+            @Override
+            public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+                return response;
+            }
+        });
+        client.addFilter(new AuthorizationFilter(s3Config));
+        TestClient testClient = new TestClient(s3Config);
+
+        // warm up
+        for (int i = 0; i < ITERATIONS; i++) testClient.execute(client, newRequest(i));
+
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long start = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            Assert.assertSame(response, testClient.execute(client, newRequest(i)));
+        }
+        return (threadMXBean.getThreadAllocatedBytes(threadId) - start) / ITERATIONS;
+    }
+
+    // a typical ranged read of a part
+    private ObjectRequest newRequest(int i) {
+        return new GetObjectRequest("alloc-bucket", "some/prefix/object-" + (i % 16) + ".bin")
+                .withRange(Range.fromOffsetLength(i * 1024L, 1024));
+    }
+
+    static class TestClient extends AbstractJerseyClient {
+        TestClient(S3Config s3Config) {
+            super(s3Config);
+        }
+
+        ClientResponse execute(Client client, ObjectRequest request) {
+            return executeRequest(client, request);
+        }
+    }
+}
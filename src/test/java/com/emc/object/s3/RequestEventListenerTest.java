@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.object.s3.jersey.S3JerseyClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class RequestEventListenerTest extends AbstractS3ClientTest {
+    private final EventCollector collector = new EventCollector();
+
+    @Override
+    protected String getTestBucketPrefix() {
+        return "s3-request-event-test";
+    }
+
+    @Override
+    protected S3Client createS3Client() throws Exception {
+        return new S3JerseyClient(createS3Config().withRequestEventListener(collector));
+    }
+
+    @Test
+    public void testRequestLifecycle() {
+        String key = "event-object";
+
+        collector.clear();
+        client.putObject(getTestBucket(), key, "Hello Events!", "text/plain");
+        Assert.assertEquals(Arrays.asList(RequestEvent.ATTEMPT_STARTED, RequestEvent.REQUEST_SENT,
+                RequestEvent.RESPONSE_RECEIVED, RequestEvent.RESPONSE_READ), collector.getEvents());
+        RequestTimeline put = collector.getTimelines().get(0);
+        Assert.assertEquals("PUT", put.getMethod());
+        Assert.assertEquals(1, put.getAttempt());
+        Assert.assertEquals(200, put.getStatusCode());
+        Assert.assertNotNull(put.getHost());
+        Assert.assertTrue(put.getStartNanos() <= put.getRequestSentNanos());
+        Assert.assertTrue(put.getRequestSentNanos() <= put.getResponseNanos());
+        Assert.assertTrue(put.getResponseNanos() <= put.getCompletedNanos());
+        Assert.assertTrue(put.getTotalNanos() > 0);
+
+        collector.clear();
+        Assert.assertEquals("Hello Events!", client.readObject(getTestBucket(), key, String.class));
+        Assert.assertEquals(Arrays.asList(RequestEvent.ATTEMPT_STARTED, RequestEvent.RESPONSE_RECEIVED,
+                RequestEvent.RESPONSE_READ), collector.getEvents());
+        RequestTimeline get = collector.getTimelines().get(0);
+        Assert.assertTrue(get.getTimeToFirstByteNanos() > 0);
+        Assert.assertTrue(get.getBodyReadNanos() >= 0);
+        // the connection from the PUT was pooled
+        if (get.getConnectedNanos() > 0) Assert.assertTrue(get.isConnectionReused());
+
+        collector.clear();
+        try {
+            client.readObject(getTestBucket(), "does-not-exist", String.class);
+            Assert.fail("reading a missing object should fail");
+        } catch (S3Exception e) {
+            Assert.assertEquals(404, e.getHttpCode());
+        }
+        Assert.assertEquals(Arrays.asList(RequestEvent.ATTEMPT_STARTED, RequestEvent.ATTEMPT_FAILED), collector.getEvents());
+        Assert.assertEquals(404, collector.getTimelines().get(1).getStatusCode());
+        Assert.assertNotNull(collector.getTimelines().get(1).getError());
+    }
+
+    @Test
+    public void testRetryEvents() {
+        EventCollector retryCollector = new EventCollector();
+        S3Client faultyClient = new S3JerseyClient(createS3Config().withRequestEventListener(retryCollector)
+                .withFaultInjectionRate(1.0f).withRetryLimit(1).withInitialRetryDelay(10));
+        try {
+            faultyClient.getObjectMetadata(getTestBucket(), "any-object");
+            Assert.fail("injected faults should fail the request");
+        } catch (S3Exception e) {
+            Assert.assertEquals(500, e.getHttpCode());
+        } finally {
+            faultyClient.destroy();
+        }
+
+        Assert.assertEquals(Arrays.asList(RequestEvent.ATTEMPT_STARTED, RequestEvent.ATTEMPT_FAILED,
+                RequestEvent.RETRY_SCHEDULED, RequestEvent.ATTEMPT_STARTED, RequestEvent.ATTEMPT_FAILED),
+                retryCollector.getEvents());
+        List<RequestTimeline> timelines = retryCollector.getTimelines();
+        Assert.assertEquals(1, timelines.get(0).getAttempt());
+        Assert.assertEquals(10, timelines.get(2).getRetryDelayMs());
+        Assert.assertEquals(2, timelines.get(3).getAttempt());
+        Assert.assertEquals(500, timelines.get(4).getStatusCode());
+    }
+
+    static class EventCollector implements RequestEventListener {
+        private final List<RequestEvent> events = Collections.synchronizedList(new ArrayList<RequestEvent>());
+        private final List<RequestTimeline> timelines = Collections.synchronizedList(new ArrayList<RequestTimeline>());
+
+        @Override
+        public void requestEvent(RequestEvent event, RequestTimeline timeline) {
+            events.add(event);
+            timelines.add(timeline);
+        }
+
+        void clear() {
+            events.clear();
+            timelines.clear();
+        }
+
+        List<RequestEvent> getEvents() {
+            return new ArrayList<>(events);
+        }
+
+        List<RequestTimeline> getTimelines() {
+            return new ArrayList<>(timelines);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.object.s3.bean.ListObjectsResult;
+import com.emc.object.s3.bean.S3Object;
+import com.emc.object.s3.jersey.S3JerseyClient;
+import com.emc.object.s3.request.GetObjectMetadataRequest;
+import com.emc.object.s3.request.PutObjectRequest;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class S3AsyncClientTest extends AbstractS3ClientTest {
+    @Override
+    protected String getTestBucketPrefix() {
+        return "s3-async-client-test";
+    }
+
+    @Override
+    protected S3Client createS3Client() throws Exception {
+        return new S3JerseyClient(createS3Config());
+    }
+
+    @Test
+    public void testObjectOperations() {
+        try (S3AsyncClient asyncClient = new S3AsyncClient(client)) {
+            List<CompletableFuture<?>> puts = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                puts.add(asyncClient.putObject(new PutObjectRequest(getTestBucket(), "async/object" + i, new byte[]{(byte) i})));
+            }
+            CompletableFuture.allOf(puts.toArray(new CompletableFuture[0])).join();
+
+            Set<String> keys = new HashSet<>();
+            for (S3Object object : asyncClient.listObjects(getTestBucket(), "async/").join().getObjects()) {
+                keys.add(object.getKey());
+            }
+            Assert.assertEquals(20, keys.size());
+
+            Assert.assertEquals(1, asyncClient.getObjectMetadata(getTestBucket(), "async/object5").join().getContentLength().longValue());
+            Assert.assertArrayEquals(new byte[]{7}, asyncClient.readObject(getTestBucket(), "async/object7", byte[].class).join());
+
+            // dependent stages can issue more requests
+            ListObjectsResult result = asyncClient.deleteObject(getTestBucket(), "async/object0")
+                    .thenCompose(v -> asyncClient.listObjects(getTestBucket(), "async/")).join();
+            Assert.assertEquals(19, result.getObjects().size());
+            Assert.assertEquals(0, asyncClient.getInFlightCount());
+        }
+    }
+
+    @Test
+    public void testErrors() {
+        try (S3AsyncClient asyncClient = new S3AsyncClient(client)) {
+            asyncClient.readObject(getTestBucket(), "does-not-exist", byte[].class).join();
+            Assert.fail("reading a missing object should fail");
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof S3Exception);
+            Assert.assertEquals(404, ((S3Exception) e.getCause()).getHttpCode());
+        }
+    }
+
+    @Test
+    public void testInFlightWindow() {
+        client.putObject(getTestBucket(), "window/object", new byte[]{1}, null);
+
+        final int maxInFlight = 4;
+        final AtomicInteger concurrent = new AtomicInteger(), maxConcurrent = new AtomicInteger();
+        S3Client slowClient = new S3JerseyClient(createS3Config()) {
+            @Override
+            public S3ObjectMetadata getObjectMetadata(GetObjectMetadataRequest request) {
+                int current = concurrent.incrementAndGet();
+                maxConcurrent.accumulateAndGet(current, Math::max);
+                try {
+                    Thread.sleep(50);
+                    return super.getObjectMetadata(request);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    concurrent.decrementAndGet();
+                }
+            }
+        };
+
+        try (S3AsyncClient asyncClient = new S3AsyncClient(slowClient, maxInFlight)) {
+            List<CompletableFuture<S3ObjectMetadata>> heads = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                heads.add(asyncClient.getObjectMetadata(new GetObjectMetadataRequest(getTestBucket(), "window/object")));
+                Assert.assertTrue(asyncClient.getInFlightCount() <= maxInFlight);
+            }
+            for (CompletableFuture<S3ObjectMetadata> head : heads) {
+                Assert.assertEquals(1, head.join().getContentLength().longValue());
+            }
+        } finally {
+            slowClient.destroy();
+        }
+
+        Assert.assertTrue(maxConcurrent.get() <= maxInFlight);
+    }
+}
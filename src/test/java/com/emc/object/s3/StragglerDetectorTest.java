@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+public class StragglerDetectorTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testNoStragglersUntilMostPartsComplete() {
+        StragglerDetector detector = new StragglerDetector().withMinStragglerTimeMs(0);
+        detector.start();
+        for (int partNumber = 1; partNumber <= 4; partNumber++) detector.partStarted(partNumber, 0);
+        detector.partCompleted(1, 100 * MS);
+        detector.partCompleted(2, 100 * MS);
+
+        // only half of the parts are done
+        Assert.assertEquals(Collections.emptyList(), detector.findStragglers(4, 10000 * MS));
+
+        detector.partCompleted(3, 100 * MS);
+        Assert.assertEquals(Collections.singletonList(4), detector.findStragglers(4, 10000 * MS));
+    }
+
+    @Test
+    public void testStragglerThreshold() {
+        StragglerDetector detector = new StragglerDetector().withMinStragglerTimeMs(0).withMinCompletedFraction(0.5);
+        detector.start();
+        for (int partNumber = 1; partNumber <= 4; partNumber++) detector.partStarted(partNumber, 0);
+        detector.partCompleted(1, 100 * MS);
+        detector.partCompleted(2, 100 * MS);
+
+        // not yet 3x the median
+        Assert.assertEquals(Collections.emptyList(), detector.findStragglers(4, 300 * MS));
+        Assert.assertEquals(Arrays.asList(3, 4), detector.findStragglers(4, 301 * MS));
+
+        // parts are only speculated once
+        Assert.assertEquals(Collections.emptyList(), detector.findStragglers(4, 1000 * MS));
+        Assert.assertEquals(2, detector.getSpeculatedPartCount());
+    }
+
+    @Test
+    public void testMinStragglerTime() {
+        StragglerDetector detector = new StragglerDetector().withMinStragglerTimeMs(2000).withMinCompletedFraction(0.5);
+        detector.start();
+        detector.partStarted(1, 0);
+        detector.partStarted(2, 0);
+        detector.partCompleted(1, 10 * MS);
+
+        // well beyond the median, but parts this short are not worth duplicating
+        Assert.assertEquals(Collections.emptyList(), detector.findStragglers(2, 1000 * MS));
+        Assert.assertEquals(Collections.singletonList(2), detector.findStragglers(2, 2001 * MS));
+    }
+
+    @Test
+    public void testMaxSpeculativeParts() {
+        StragglerDetector detector = new StragglerDetector().withMinStragglerTimeMs(0).withMinCompletedFraction(0.1)
+                .withMaxSpeculativeParts(1);
+        detector.start();
+        for (int partNumber = 1; partNumber <= 10; partNumber++) detector.partStarted(partNumber, 0);
+        detector.partCompleted(1, 10 * MS);
+
+        Assert.assertEquals(Collections.singletonList(2), detector.findStragglers(10, 1000 * MS));
+        Assert.assertEquals(Collections.emptyList(), detector.findStragglers(10, 1000 * MS));
+    }
+
+    @Test
+    public void testRestartedAndFailedParts() {
+        StragglerDetector detector = new StragglerDetector().withMinStragglerTimeMs(0).withMinCompletedFraction(0.5);
+        detector.start();
+        detector.partStarted(1, 0);
+        detector.partStarted(2, 0);
+        detector.partStarted(3, 0);
+        detector.partCompleted(1, 10 * MS);
+        detector.partCompleted(2, 10 * MS);
+
+        // a later attempt does not reset the part's start time
+        detector.partStarted(3, 35 * MS);
+        Assert.assertEquals(Collections.singletonList(3), detector.findStragglers(3, 40 * MS));
+
+        // failed parts are no longer running
+        detector.start();
+        detector.partStarted(1, 0);
+        detector.partStarted(2, 0);
+        detector.partCompleted(1, 10 * MS);
+        detector.partFailed(2);
+        Assert.assertEquals(Collections.emptyList(), detector.findStragglers(2, 1000 * MS));
+    }
+}
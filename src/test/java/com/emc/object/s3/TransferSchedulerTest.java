@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TransferSchedulerTest {
+    private TransferScheduler scheduler;
+
+    @Before
+    public void createScheduler() {
+        scheduler = new TransferScheduler(2);
+    }
+
+    @After
+    public void closeScheduler() {
+        scheduler.close();
+    }
+
+    @Test
+    public void testGlobalLimit() throws Exception {
+        AtomicInteger running = new AtomicInteger(), maxRunning = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ExecutorService executor = scheduler.newTransferExecutor();
+            for (int j = 0; j < 5; j++) {
+                futures.add(executor.submit(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(10);
+                    running.decrementAndGet();
+                    return null;
+                }));
+            }
+        }
+        for (Future<?> future : futures) future.get();
+        Assert.assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    public void testNewTransferIsNotStarved() throws Exception {
+        ExecutorService large = scheduler.newTransferExecutor();
+        List<Future<?>> largeFutures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            largeFutures.add(large.submit(() -> {
+                Thread.sleep(10);
+                return null;
+            }));
+        }
+
+        Thread.sleep(50);
+        ExecutorService small = scheduler.newTransferExecutor();
+        long start = System.nanoTime();
+        Future<?> smallFuture = small.submit(() -> {
+        });
+        smallFuture.get();
+        // the small transfer should get the next free slot (not wait for ~500ms of large parts)
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 200);
+
+        for (Future<?> future : largeFutures) future.get();
+    }
+
+    @Test
+    public void testWeights() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        ExecutorService blocker = scheduler.newTransferExecutor();
+        // occupy both slots until all tasks are queued
+        Future<?> b1 = blocker.submit(() -> {
+            gate.await();
+            return null;
+        });
+        Future<?> b2 = blocker.submit(() -> {
+            gate.await();
+            return null;
+        });
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService heavy = scheduler.newTransferExecutor(3), light = scheduler.newTransferExecutor(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(heavy.submit(() -> order.add("heavy")));
+            futures.add(light.submit(() -> order.add("light")));
+        }
+        gate.countDown();
+        b1.get();
+        b2.get();
+        for (Future<?> future : futures) future.get();
+
+        // while both are competing, heavy should get ~3x the share of light
+        int heavyCount = Collections.frequency(order.subList(0, 16), "heavy");
+        Assert.assertTrue("heavy got " + heavyCount + " of 16", heavyCount >= 11 && heavyCount <= 13);
+    }
+
+    @Test
+    public void testShutdownNowIsolated() throws Exception {
+        ExecutorService first = scheduler.newTransferExecutor(), second = scheduler.newTransferExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        Future<?> interrupted = first.submit(() -> {
+            started.countDown();
+            Thread.sleep(10000);
+            return null;
+        });
+        for (int i = 0; i < 5; i++) {
+            first.submit(() -> {
+                Thread.sleep(10000);
+                return null;
+            });
+        }
+        Future<String> other = second.submit(() -> "ok");
+
+        started.await();
+        List<Runnable> queued = first.shutdownNow();
+        Assert.assertTrue(queued.size() > 0);
+        Assert.assertTrue(first.awaitTermination(5, TimeUnit.SECONDS));
+        try {
+            interrupted.get();
+            Assert.fail("task should have been interrupted");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof InterruptedException);
+        }
+        Assert.assertEquals("ok", other.get(5, TimeUnit.SECONDS));
+        Assert.assertFalse(second.isShutdown());
+
+        try {
+            first.submit(() -> {
+            });
+            Assert.fail("shut down executor should reject tasks");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.object.util.ProgressListener;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TransferStatisticsTest {
+    @Test
+    public void testPartMetrics() throws Exception {
+        PartTransferMetrics metrics = new PartTransferMetrics(3, 2048, 1024);
+        Thread.sleep(20);
+        metrics.started();
+        Thread.sleep(20);
+        ProgressListener listener = metrics.monitor(null);
+        listener.transferred(512);
+        Thread.sleep(20);
+        listener.transferred(512);
+        metrics.completed("abc");
+
+        Assert.assertEquals(3, metrics.getPartNumber());
+        Assert.assertEquals(1024, metrics.getBytesTransferred());
+        Assert.assertTrue(metrics.getQueueWaitNanos() >= 20_000_000L);
+        Assert.assertTrue(metrics.getTimeToFirstByteNanos() >= 20_000_000L);
+        Assert.assertTrue(metrics.getTransferNanos() >= 20_000_000L);
+        Assert.assertTrue(metrics.getThroughput() > 0);
+        Assert.assertEquals("abc", metrics.getETag());
+        Assert.assertNull(metrics.getError());
+    }
+
+    @Test
+    public void testPercentiles() throws Exception {
+        TransferStatistics statistics = new TransferStatistics();
+        statistics.partTransferred(part(1, "host1", 10, null));
+        statistics.partTransferred(part(2, "host2", 200, null));
+        statistics.partTransferred(part(3, "host2", 10, new RuntimeException("failed")));
+
+        Assert.assertEquals(3, statistics.getPartCount());
+        Assert.assertEquals(1, statistics.getFailedPartCount());
+        Assert.assertEquals(6, statistics.getTotalRetries());
+        Assert.assertEquals(2, statistics.getHosts().size());
+
+        // failed parts are excluded
+        double slow = statistics.getThroughputPercentile(50), fast = statistics.getThroughputPercentile(100);
+        Assert.assertTrue(fast > slow * 2);
+        Assert.assertEquals(slow, statistics.getThroughputPercentile(0), 0);
+        Assert.assertEquals(slow, statistics.getThroughputPercentile("host2", 100), 0);
+        Assert.assertEquals(fast, statistics.getThroughputPercentile("host1", 50), 0);
+        Assert.assertEquals(0, statistics.getThroughputPercentile("host3", 50), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadPercentile() {
+        new TransferStatistics().getThroughputPercentile(101);
+    }
+
+    private PartTransferMetrics part(int partNumber, String host, long transferMs, Throwable error) throws Exception {
+        PartTransferMetrics metrics = new PartTransferMetrics(partNumber, 0, 1024 * 1024);
+        metrics.started();
+        metrics.setHost(host);
+        metrics.setRetryCount(partNumber);
+        Thread.sleep(transferMs);
+        if (error == null) metrics.completed("etag" + partNumber);
+        else metrics.failed(error);
+        return metrics;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3;
+
+import com.emc.rest.smart.ecs.Vdc;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class VdcStripeBalancerTest {
+    private static final long PART_SIZE = 1024 * 1024;
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void testNoVdcs() {
+        try {
+            new VdcStripeBalancer(Collections.<Vdc>emptyList());
+            Assert.fail("a balancer with no VDCs should fail");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testEvenSpreadBeforeMeasurement() {
+        Vdc vdc1 = new Vdc("vdc1-host"), vdc2 = new Vdc("vdc2-host"), vdc3 = new Vdc("vdc3-host");
+        VdcStripeBalancer balancer = new VdcStripeBalancer(Arrays.asList(vdc1, vdc2, vdc3));
+
+        // with nothing measured, parts go to the VDC with the fewest bytes in flight
+        Assert.assertEquals(vdc1, balancer.acquire(PART_SIZE));
+        Assert.assertEquals(vdc2, balancer.acquire(PART_SIZE));
+        Assert.assertEquals(vdc3, balancer.acquire(PART_SIZE));
+        Assert.assertEquals(vdc1, balancer.acquire(PART_SIZE));
+    }
+
+    @Test
+    public void testSlowVdcGetsFewerParts() {
+        Vdc fast = new Vdc("fast-host"), slow = new Vdc("slow-host");
+        VdcStripeBalancer balancer = new VdcStripeBalancer(Arrays.asList(fast, slow));
+
+        // fast is 4x faster than slow
+        Assert.assertEquals(fast, balancer.acquire(PART_SIZE));
+        Assert.assertEquals(slow, balancer.acquire(PART_SIZE));
+        balancer.partCompleted(fast, PART_SIZE, SECOND);
+        balancer.partCompleted(slow, PART_SIZE, 4 * SECOND);
+        Assert.assertEquals(PART_SIZE, balancer.getThroughput(fast));
+        Assert.assertEquals(PART_SIZE / 4, balancer.getThroughput(slow));
+
+        int fastParts = 0, slowParts = 0;
+        for (int i = 0; i < 10; i++) {
+            if (balancer.acquire(PART_SIZE) == fast) fastParts++;
+            else slowParts++;
+        }
+        Assert.assertEquals(8, fastParts);
+        Assert.assertEquals(2, slowParts);
+    }
+
+    @Test
+    public void testFailureAndCancel() {
+        Vdc vdc1 = new Vdc("vdc1-host"), vdc2 = new Vdc("vdc2-host");
+        VdcStripeBalancer balancer = new VdcStripeBalancer(Arrays.asList(vdc1, vdc2));
+
+        Assert.assertEquals(vdc1, balancer.acquire(PART_SIZE));
+        Assert.assertEquals(vdc2, balancer.acquire(PART_SIZE));
+        balancer.partCompleted(vdc1, PART_SIZE, SECOND);
+        balancer.partCompleted(vdc2, PART_SIZE, SECOND);
+
+        Assert.assertEquals(vdc1, balancer.acquire(PART_SIZE));
+        balancer.partFailed(vdc1, PART_SIZE);
+        Assert.assertEquals(PART_SIZE / 2, balancer.getThroughput(vdc1));
+        Assert.assertEquals(1, balancer.getPartsFailed(vdc1));
+
+        // a cancelled part only releases its bytes
+        Vdc vdc = balancer.acquire(PART_SIZE);
+        Assert.assertEquals(vdc2, vdc);
+        balancer.partCancelled(vdc, PART_SIZE);
+        Assert.assertEquals(PART_SIZE, balancer.getThroughput(vdc2));
+        Assert.assertEquals(0, balancer.getPartsFailed(vdc2));
+        Assert.assertEquals(1, balancer.getPartsCompleted(vdc2));
+        Assert.assertEquals(PART_SIZE, balancer.getBytesTransferred(vdc2));
+    }
+}
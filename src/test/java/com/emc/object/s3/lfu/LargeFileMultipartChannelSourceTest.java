@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3.lfu;
+
+import com.emc.util.RandomInputStream;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class LargeFileMultipartChannelSourceTest {
+    private static final Logger log = LoggerFactory.getLogger(LargeFileMultipartChannelSourceTest.class);
+
+    private static final int FILE_SIZE = 64 * 1024 * 1024; // 64MB
+    private static final int PART_SIZE = 4 * 1024 * 1024 + 17; // odd size, so parts don't align with buffers
+    private static final int BUFFER_SIZE = 8 * 1024; // same as Jersey's entity writer buffer
+
+    private File file;
+
+    @Before
+    public void createFile() throws Exception {
+        file = File.createTempFile("lfu-channel-source-test", null);
+        file.deleteOnExit();
+        try (InputStream is = new RandomInputStream(FILE_SIZE); OutputStream os = new FileOutputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = is.read(buffer)) != -1) os.write(buffer, 0, read);
+        }
+    }
+
+    @After
+    public void deleteFile() {
+        if (file != null) file.delete();
+    }
+
+    @Test
+    public void testParallelParts() throws Exception {
+        LargeFileMultipartFileSource fileSource = new LargeFileMultipartFileSource(file);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (LargeFileMultipartChannelSource channelSource = new LargeFileMultipartChannelSource(file)) {
+            Assert.assertEquals(FILE_SIZE, channelSource.getTotalSize());
+
+            List<Future<String[]>> futures = new ArrayList<>();
+            for (long offset = 0; offset < FILE_SIZE; offset += PART_SIZE) {
+                final long partOffset = offset, length = Math.min(PART_SIZE, FILE_SIZE - offset);
+                futures.add(executor.submit(() -> new String[]{
+                        md5Hex(fileSource.getPartDataStream(partOffset, length)),
+                        md5Hex(channelSource.getPartDataStream(partOffset, length))
+                }));
+            }
+            for (Future<String[]> future : futures) {
+                String[] md5s = future.get();
+                Assert.assertEquals(md5s[0], md5s[1]);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testReopenAfterClose() throws Exception {
+        LargeFileMultipartChannelSource channelSource = new LargeFileMultipartChannelSource(file);
+        String md5 = md5Hex(channelSource.getPartDataStream(PART_SIZE, PART_SIZE));
+        channelSource.close();
+        Assert.assertEquals(md5, md5Hex(channelSource.getPartDataStream(PART_SIZE, PART_SIZE)));
+        channelSource.close();
+    }
+
+    @Test
+    public void testSkip() throws Exception {
+        try (LargeFileMultipartChannelSource channelSource = new LargeFileMultipartChannelSource(file)) {
+            InputStream is = channelSource.getPartDataStream(0, PART_SIZE);
+            Assert.assertEquals(1000, is.skip(1000));
+            Assert.assertEquals(PART_SIZE - 1000, is.available());
+            Assert.assertEquals(md5Hex(channelSource.getPartDataStream(1000, PART_SIZE - 1000)), md5Hex(is));
+        }
+    }
+
+    /**
+     * Not a strict benchmark; reports the CPU time needed to read every part of the file through each source, the
+     * way the part uploads would
+     */
+    @Test
+    public void testCpuPerGb() throws Exception {
+        // warm up
+        readAllParts(new LargeFileMultipartFileSource(file));
+        try (LargeFileMultipartChannelSource channelSource = new LargeFileMultipartChannelSource(file)) {
+            readAllParts(channelSource);
+        }
+
+        long fileSourceCpu = readAllParts(new LargeFileMultipartFileSource(file));
+        long channelSourceCpu;
+        try (LargeFileMultipartChannelSource channelSource = new LargeFileMultipartChannelSource(file)) {
+            channelSourceCpu = readAllParts(channelSource);
+        }
+
+        double gb = (double) FILE_SIZE / (1024 * 1024 * 1024);
+        log.info(String.format("CPU per GB - file source: %,.1fms, channel source: %,.1fms",
+                fileSourceCpu / gb / 1000000, channelSourceCpu / gb / 1000000));
+    }
+
+    // returns CPU time in nanoseconds
+    private long readAllParts(LargeFileMultipartSource source) throws IOException {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0, start = threadMXBean.getCurrentThreadCpuTime();
+        for (long offset = 0; offset < FILE_SIZE; offset += PART_SIZE) {
+            try (InputStream is = source.getPartDataStream(offset, Math.min(PART_SIZE, FILE_SIZE - offset))) {
+                int read;
+                while ((read = is.read(buffer)) != -1) total += read;
+            }
+        }
+        Assert.assertEquals(FILE_SIZE, total);
+        return threadMXBean.getCurrentThreadCpuTime() - start;
+    }
+
+    private String md5Hex(InputStream is) throws IOException {
+        try (InputStream in = is) {
+            return DigestUtils.md5Hex(in);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.s3.lfu;
+
+import com.emc.object.s3.bean.MultipartPartETag;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+public class LargeFileUploadJournalTest {
+    private File file;
+
+    @Before
+    public void createFile() throws Exception {
+        file = File.createTempFile("lfu-journal-test", null);
+        file.deleteOnExit();
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        LargeFileUploadJournal journal = new LargeFileUploadJournal(file);
+        Assert.assertFalse(journal.load());
+        Assert.assertNull(journal.getUploadId());
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        LargeFileUploadJournal journal = new LargeFileUploadJournal(file);
+        journal.start("upload-1", 1024, "/data/source.bin", 4000, 12345);
+        journal.partCompleted(new MultipartPartETag(2, "\"etag-2\""));
+        journal.partCompleted(new MultipartPartETag(1, "\"etag-1\""));
+        journal.close();
+
+        journal = new LargeFileUploadJournal(file);
+        Assert.assertTrue(journal.load());
+        Assert.assertEquals("upload-1", journal.getUploadId());
+        Assert.assertEquals(1024, journal.getPartSize());
+        Assert.assertTrue(journal.matchesSource("/data/source.bin", 4000, 12345));
+        Assert.assertFalse(journal.matchesSource("/data/source.bin", 4000, 12346));
+        Assert.assertFalse(journal.matchesSource(null, 4000, 12345));
+
+        Map<Integer, MultipartPartETag> parts = journal.getParts();
+        Assert.assertEquals(2, parts.size());
+        Assert.assertEquals("\"etag-1\"", parts.get(1).getETag());
+        Assert.assertEquals("\"etag-2\"", parts.get(2).getETag());
+    }
+
+    @Test
+    public void testIncompleteRecord() throws Exception {
+        LargeFileUploadJournal journal = new LargeFileUploadJournal(file);
+        journal.start("upload-1", 1024, null, 4000, 0);
+        journal.partCompleted(new MultipartPartETag(1, "etag-1"));
+        journal.close();
+
+        // simulate a crash in the middle of writing a record
+        Files.write(file.toPath(), "part\t2\tet".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        journal = new LargeFileUploadJournal(file);
+        Assert.assertTrue(journal.load());
+        Assert.assertTrue(journal.matchesSource(null, 4000, 0));
+        Assert.assertEquals(1, journal.getParts().size());
+
+        // appending should replace the incomplete record
+        journal.partCompleted(new MultipartPartETag(2, "etag-2"));
+        journal.close();
+
+        journal = new LargeFileUploadJournal(file);
+        Assert.assertTrue(journal.load());
+        Assert.assertEquals("etag-2", journal.getParts().get(2).getETag());
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptJournal() throws Exception {
+        Files.write(file.toPath(), "garbage\n".getBytes(StandardCharsets.UTF_8));
+        new LargeFileUploadJournal(file).load();
+    }
+
+    @Test
+    public void testDelete() throws Exception {
+        LargeFileUploadJournal journal = new LargeFileUploadJournal(file);
+        journal.start("upload-1", 1024, null, 4000, 0);
+        journal.delete();
+        Assert.assertFalse(file.exists());
+        Assert.assertFalse(new LargeFileUploadJournal(file).load());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class BandwidthLimiterTest {
+    private static final ProgressListener NULL_LISTENER = new ProgressListener() {
+        @Override
+        public void progress(long completed, long total) {
+        }
+
+        @Override
+        public void transferred(long size) {
+        }
+    };
+
+    @Test
+    public void testUnlimited() throws Exception {
+        BandwidthLimiter limiter = new BandwidthLimiter(0);
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) limiter.acquire(1024 * 1024);
+        Assert.assertTrue(System.nanoTime() - start < 500_000_000L);
+    }
+
+    @Test
+    public void testSharedRate() throws Exception {
+        int threads = 4, size = 256 * 1024;
+        long rate = 1024 * 1024; // 1MB/s
+        BandwidthLimiter limiter = new BandwidthLimiter(rate).withMaxBurstBytes(64 * 1024);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    InputStream is = new ProgressInputStream(new ByteArrayInputStream(new byte[size]), NULL_LISTENER, limiter);
+                    byte[] buffer = new byte[16 * 1024];
+                    while (is.read(buffer) != -1) ;
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            // 1MB total at 1MB/s (less the burst allowance)
+            long expectedMs = (threads * size - limiter.getMaxBurstBytes()) * 1000 / rate;
+            Assert.assertTrue("too fast: " + elapsedMs + "ms", elapsedMs >= expectedMs - 50);
+            Assert.assertTrue("too slow: " + elapsedMs + "ms", elapsedMs < expectedMs + 1000);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRateChange() throws Exception {
+        BandwidthLimiter limiter = new BandwidthLimiter(100 * 1024).withMaxBurstBytes(0);
+        ProgressOutputStream os = new ProgressOutputStream(new ByteArrayOutputStream(), NULL_LISTENER, limiter);
+
+        // raising the limit should take effect immediately
+        limiter.setBytesPerSecond(100 * 1024 * 1024);
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) os.write(new byte[100 * 1024]);
+        Assert.assertTrue(System.nanoTime() - start < 500_000_000L);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class RequestMetricsTest {
+    private static final Logger log = LoggerFactory.getLogger(RequestMetricsTest.class);
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testHistogramBuckets() {
+        // bucket bounds are contiguous and every value falls in its own bucket
+        long lastUpperBound = -1;
+        for (int i = 0; LatencyHistogram.bucketUpperBound(i) < 1L << 40; i++) {
+            long upperBound = LatencyHistogram.bucketUpperBound(i);
+            Assert.assertEquals(i, LatencyHistogram.bucketIndex(lastUpperBound + 1));
+            Assert.assertEquals(i, LatencyHistogram.bucketIndex(upperBound));
+            lastUpperBound = upperBound;
+        }
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getPercentileNanos(50));
+        for (int i = 1; i <= 1000; i++) histogram.record(i * MS);
+
+        Assert.assertEquals(1000, histogram.getCount());
+        assertWithin(500 * MS, histogram.getPercentileNanos(50), 0.125);
+        assertWithin(990 * MS, histogram.getPercentileNanos(99), 0.125);
+        assertWithin(999 * MS, histogram.getPercentileNanos(99.9), 0.125);
+        assertWithin(500500 * MS / 1000, histogram.getMeanNanos(), 0.001);
+
+        // small values are exact
+        histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(7));
+        Assert.assertEquals(TimeUnit.MICROSECONDS.toNanos(7), histogram.getPercentileNanos(50));
+    }
+
+    @Test
+    public void testStatsSplits() {
+        RequestMetrics metrics = new RequestMetrics();
+        metrics.record("GET", "host1", 200, 10 * MS);
+        metrics.record("GET", "host1", 200, 20 * MS);
+        metrics.record("GET", "host2", 404, 30 * MS);
+        metrics.record("GET", "host2", 0, 40 * MS);
+        metrics.record("PUT ?acl", "host1", 200, 50 * MS);
+
+        List<RequestStats> stats = metrics.getStats();
+        Assert.assertEquals(2, stats.size());
+        RequestStats get = stats.get(0);
+        Assert.assertEquals("GET", get.getOperation());
+        Assert.assertNull(get.getHost());
+        Assert.assertEquals(RequestMetrics.ALL_STATUS_CLASSES, get.getStatusClass());
+        Assert.assertEquals(4, get.getCount());
+        Assert.assertEquals(2, get.getErrorCount());
+        Assert.assertEquals(0.5, get.getErrorRate(), 0.0001);
+        Assert.assertTrue(get.getThroughput() > 0);
+        Assert.assertEquals("PUT ?acl", stats.get(1).getOperation());
+
+        List<RequestStats> byHost = metrics.getStatsByHost();
+        Assert.assertEquals(3, byHost.size());
+        Assert.assertEquals("host1", byHost.get(0).getHost());
+        Assert.assertEquals(2, byHost.get(0).getCount());
+        Assert.assertEquals(0, byHost.get(0).getErrorCount());
+        Assert.assertEquals("host2", byHost.get(1).getHost());
+        Assert.assertEquals(2, byHost.get(1).getErrorCount());
+
+        List<RequestStats> byStatusClass = metrics.getStatsByStatusClass();
+        Assert.assertEquals(4, byStatusClass.size());
+        Assert.assertEquals(RequestMetrics.NO_RESPONSE, byStatusClass.get(0).getStatusClass());
+        Assert.assertEquals(2, byStatusClass.get(1).getStatusClass());
+        Assert.assertEquals(2, byStatusClass.get(1).getCount());
+        Assert.assertEquals(4, byStatusClass.get(2).getStatusClass());
+
+        Assert.assertNull(metrics.getStats("DELETE"));
+        metrics.reset();
+        Assert.assertTrue(metrics.getStats().isEmpty());
+    }
+
+    /**
+     * Not a strict benchmark; reports the time needed to record a request
+     */
+    @Test
+    public void testRecordingCost() {
+        RequestMetrics metrics = new RequestMetrics();
+        int iterations = 1000000;
+        // warm up
+        for (int i = 0; i < iterations; i++) metrics.record("GET", "host" + (i % 4), 200, i);
+
+        String[] hosts = {"host0", "host1", "host2", "host3"};
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) metrics.record("GET", hosts[i % 4], 200, i);
+        long nanosPerRecord = (System.nanoTime() - start) / iterations;
+        log.info(String.format("recording cost: %,dns per request", nanosPerRecord));
+        Assert.assertEquals(2 * iterations, metrics.getStats("GET").getCount());
+    }
+
+    private static void assertWithin(long expected, long actual, double tolerance) {
+        Assert.assertTrue("expected " + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected * tolerance);
+    }
+}
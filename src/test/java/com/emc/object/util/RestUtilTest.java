@@ -128,6 +128,30 @@ public class RestUtilTest {
         Assert.assertEquals(null, parameters.get("bogus"));
     }
 
+    @Test
+    public void testRequestDate() {
+        long skew = 3600000L; // 1 hour
+        long before = (System.currentTimeMillis() + skew) / 1000 * 1000;
+        String date = RestUtil.getRequestDate(skew);
+        long after = System.currentTimeMillis() + skew;
+
+        long time = RestUtil.headerParse(date).getTime();
+        Assert.assertTrue(time >= before && time <= after);
+
+        // a different skew must not be served from the cache
+        long unskewed = RestUtil.headerParse(RestUtil.getRequestDate(0)).getTime();
+        Assert.assertTrue(time - unskewed > skew - 2000);
+    }
+
+    @Test
+    public void testEncodedPath() throws Exception {
+        URI uri = RestUtil.buildUri("http", "foo.com", 80, "/bucket/[ a & b ]//c+d", "prefix=a%20b", null);
+        Assert.assertEquals("/bucket/%5B%20a%20&%20b%20%5D/%2Fc%2Bd", RestUtil.getEncodedPath(uri));
+
+        uri = RestUtil.buildUri("http", "foo.com", 80, "/bucket/f\u00e9o", null, null);
+        Assert.assertEquals("/bucket/f%C3%A9o", RestUtil.getEncodedPath(uri));
+    }
+
     @Test
     public void testReplacePath() throws Exception {
         String host = "http://foo.com";
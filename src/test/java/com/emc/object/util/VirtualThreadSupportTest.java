@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015-2022 Dell Technologies
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of EMC Corporation may not be used to endorse or promote
+ *    products derived from this software without specific prior written
+ *    permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS
+ * BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.emc.object.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class VirtualThreadSupportTest {
+    @Test
+    public void testAvailability() {
+        boolean expected;
+        try {
+            Thread.class.getMethod("ofVirtual");
+            expected = true;
+        } catch (NoSuchMethodException e) {
+            expected = false;
+        }
+        Assert.assertEquals(expected, VirtualThreadSupport.isAvailable());
+    }
+
+    @Test
+    public void testBoundedExecutor() throws Exception {
+        AtomicInteger running = new AtomicInteger(), maxRunning = new AtomicInteger();
+        ExecutorService executor = VirtualThreadSupport.newBoundedExecutor(3);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                futures.add(executor.submit(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(5);
+                    running.decrementAndGet();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+            Assert.assertEquals(3, maxRunning.get());
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSerialExecutorOrder() throws Exception {
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = VirtualThreadSupport.newBoundedExecutor(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                int index = i;
+                futures.add(executor.submit(() -> order.add(index)));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 200; i++) {
+            Assert.assertEquals(i, order.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testShutdownNowCancelsQueuedTasks() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        ExecutorService executor = VirtualThreadSupport.newBoundedExecutor(1);
+        Future<?> running = executor.submit(() -> {
+            started.countDown();
+            Thread.sleep(10000);
+            return null;
+        });
+        List<Future<?>> queued = new ArrayList<>();
+        for (int i = 0; i < 5; i++) queued.add(executor.submit(() -> null));
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        List<Runnable> neverStarted = executor.shutdownNow();
+        if (VirtualThreadSupport.isAvailable()) Assert.assertEquals(5, neverStarted.size());
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        // nothing waiting on a queued task is left hanging
+        for (Future<?> future : queued) {
+            if (neverStarted.contains(future)) Assert.assertTrue(future.isCancelled());
+        }
+        try {
+            running.get(5, TimeUnit.SECONDS);
+            Assert.fail("running task should have been interrupted");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof InterruptedException);
+        }
+    }
+}